@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate.benchmarks;
+
+import java.sql.Types;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import paillard.florent.springframework.simplejdbcupdate.SimpleJdbcUpdate;
+
+/**
+ * Throughput of the update of one row with {@link SimpleJdbcUpdate}, given
+ * Maps or {@link SqlParameterSource}s, compared with the same statement
+ * executed by a plain {@link JdbcTemplate} and a
+ * {@link NamedParameterJdbcTemplate}, on narrow and wide in-memory tables.
+ * 
+ * <p>
+ * Run with the GC profiler to get the allocation rate of each path:
+ * <code>java -jar target/benchmarks.jar UpdateBenchmark -prof gc</code>, or
+ * through {@link #main(String[])}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateBenchmark {
+
+	private static final String TABLE_NAME = "bench_table";
+
+	@Param({ "hsqldb", "h2" })
+	private String database;
+
+	@Param({ "5", "120" })
+	private int columnCount;
+
+	private SingleConnectionDataSource dataSource;
+
+	private SimpleJdbcUpdate simpleJdbcUpdate;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	private Map<String, Object> updatingValues;
+
+	private Map<String, Object> restrictingValues;
+
+	private SqlParameterSource updatingParameterSource;
+
+	private SqlParameterSource restrictingParameterSource;
+
+	private String sql;
+
+	private Object[] args;
+
+	private int[] argTypes;
+
+	private String namedSql;
+
+	private SqlParameterSource namedParameterSource;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if ("h2".equals(this.database)) {
+			this.dataSource = new SingleConnectionDataSource("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "", true);
+		}
+		else {
+			this.dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:bench", "sa", "", true);
+		}
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+
+		StringBuilder createString = new StringBuilder("CREATE TABLE " + TABLE_NAME + " (id INT PRIMARY KEY");
+		StringBuilder setClause = new StringBuilder();
+		StringBuilder namedSetClause = new StringBuilder();
+		this.updatingValues = new LinkedHashMap<String, Object>();
+		this.args = new Object[this.columnCount + 1];
+		this.argTypes = new int[this.columnCount + 1];
+		for (int i = 0; i < this.columnCount; i++) {
+			String columnName = "col_" + i;
+			boolean numeric = (i % 2 == 0);
+			createString.append(", ").append(columnName).append(numeric ? " INT" : " VARCHAR(50)");
+			setClause.append(i > 0 ? ", " : "").append(columnName).append(" = ?");
+			namedSetClause.append(i > 0 ? ", " : "").append(columnName).append(" = :").append(columnName);
+			Object value = (numeric ? (Object) Integer.valueOf(i) : "value " + i);
+			this.updatingValues.put(columnName, value);
+			this.args[i] = value;
+			this.argTypes[i] = (numeric ? Types.INTEGER : Types.VARCHAR);
+		}
+		createString.append(")");
+		this.jdbcTemplate.execute("DROP TABLE " + TABLE_NAME + " IF EXISTS");
+		this.jdbcTemplate.execute(createString.toString());
+		this.jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (id) VALUES (1)");
+
+		this.restrictingValues = Collections.<String, Object> singletonMap("id", 1);
+		this.updatingParameterSource = new MapSqlParameterSource(this.updatingValues);
+		this.restrictingParameterSource = new MapSqlParameterSource(this.restrictingValues);
+		this.args[this.columnCount] = 1;
+		this.argTypes[this.columnCount] = Types.INTEGER;
+		this.sql = "UPDATE " + TABLE_NAME + " SET " + setClause + " WHERE id = ?";
+		this.namedSql = "UPDATE " + TABLE_NAME + " SET " + namedSetClause + " WHERE id = :id";
+		this.namedParameterSource = new MapSqlParameterSource(this.updatingValues).addValue("id", 1);
+
+		this.simpleJdbcUpdate = new SimpleJdbcUpdate(this.dataSource).withTableName(TABLE_NAME)
+				.updatingColumns(this.updatingValues.keySet().toArray(new String[this.columnCount]))
+				.restrictingColumns("id");
+		this.simpleJdbcUpdate.compile();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.jdbcTemplate.execute("DROP TABLE " + TABLE_NAME);
+		this.dataSource.destroy();
+	}
+
+	@Benchmark
+	public int simpleJdbcUpdateWithMaps() {
+		return this.simpleJdbcUpdate.execute(this.updatingValues, this.restrictingValues);
+	}
+
+	@Benchmark
+	public int simpleJdbcUpdateWithSqlParameterSources() {
+		return this.simpleJdbcUpdate.execute(this.updatingParameterSource, this.restrictingParameterSource);
+	}
+
+	@Benchmark
+	public int jdbcTemplate() {
+		return this.jdbcTemplate.update(this.sql, this.args, this.argTypes);
+	}
+
+	@Benchmark
+	public int namedParameterJdbcTemplate() {
+		return this.namedParameterJdbcTemplate.update(this.namedSql, this.namedParameterSource);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(UpdateBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for {@link BulkUpdateDialect} implementations, limiting the
+ * number of rows of a statement according to a maximum number of parameters.
+ * 
+ * <p>
+ * Only the portable statements of staged bulk updates are rendered here: the
+ * staging table is loaded with a plain <code>INSERT</code> and dropped with a
+ * plain <code>DROP TABLE</code>. Temporary tables are declared differently by
+ * each database, so staged bulk updates are rejected unless a subclass
+ * overrides {@link #createStagingTableString}, as
+ * {@link HsqlBulkUpdateDialect} and {@link PostgresBulkUpdateDialect} do.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public abstract class AbstractBulkUpdateDialect implements BulkUpdateDialect {
+
+	/** Default maximum number of parameters of a statement */
+	public static final int DEFAULT_MAX_PARAMETERS_PER_STATEMENT = 1000;
+
+	/** Default prefix of the names of the staging tables of staged bulk updates */
+	public static final String DEFAULT_STAGING_TABLE_NAME_PREFIX = "bulk_update_stage_";
+
+	/** Sequence making the names of the staging tables unique */
+	private static final AtomicLong stagingTableSequence = new AtomicLong();
+
+	/** Alias of the updated table in the staged update statement */
+	protected static final String TABLE_ALIAS = "t";
+
+	/** Alias of the joined rows in the update statement */
+	protected static final String JOINED_ROWS_ALIAS = "v";
+
+	private int maxParametersPerStatement = DEFAULT_MAX_PARAMETERS_PER_STATEMENT;
+
+	private String stagingTableNamePrefix = DEFAULT_STAGING_TABLE_NAME_PREFIX;
+
+	/**
+	 * Set the maximum number of parameters of a statement. The default is
+	 * {@link #DEFAULT_MAX_PARAMETERS_PER_STATEMENT}.
+	 */
+	public void setMaxParametersPerStatement(int maxParametersPerStatement) {
+		Assert.isTrue(maxParametersPerStatement > 0, "Maximum number of parameters must be greater than 0");
+		this.maxParametersPerStatement = maxParametersPerStatement;
+	}
+
+	/**
+	 * Get the maximum number of parameters of a statement
+	 */
+	public int getMaxParametersPerStatement() {
+		return this.maxParametersPerStatement;
+	}
+
+	/**
+	 * Set the prefix of the names of the staging tables of staged bulk
+	 * updates, followed by a number distinct for each update. The default is
+	 * {@link #DEFAULT_STAGING_TABLE_NAME_PREFIX}.
+	 */
+	public void setStagingTableNamePrefix(String stagingTableNamePrefix) {
+		Assert.hasText(stagingTableNamePrefix, "Staging table name prefix must not be empty");
+		this.stagingTableNamePrefix = stagingTableNamePrefix;
+	}
+
+	/**
+	 * Get the prefix of the names of the staging tables of staged bulk updates
+	 */
+	public String getStagingTableNamePrefix() {
+		return this.stagingTableNamePrefix;
+	}
+
+	public int getMaxRowsPerStatement(int updatingColumnCount, int restrictingColumnCount) {
+		return Math.max(1, this.maxParametersPerStatement / getParameterCountPerRow(updatingColumnCount, restrictingColumnCount));
+	}
+
+	/**
+	 * Get the number of parameters needed by each updated row.
+	 * 
+	 * @param updatingColumnCount
+	 *            the number of columns of the 'set' clause
+	 * @param restrictingColumnCount
+	 *            the number of columns identifying a row
+	 */
+	protected abstract int getParameterCountPerRow(int updatingColumnCount, int restrictingColumnCount);
+
+	public String createStagingTableName() {
+		return this.stagingTableNamePrefix + stagingTableSequence.incrementAndGet();
+	}
+
+	/**
+	 * Temporary tables are declared differently by each database, so this
+	 * implementation rejects staged bulk updates. Subclasses supporting them
+	 * override this method.
+	 */
+	public String createStagingTableString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		throw new InvalidDataAccessApiUsageException("Staged bulk updates are not supported by " + getClass().getSimpleName()
+				+ ": use a dialect declaring the temporary tables of the database, such as HsqlBulkUpdateDialect or PostgresBulkUpdateDialect");
+	}
+
+	public String createStagingInsertString(String stagingTableName, List<String> updatingColumns, List<String> restrictingColumns) {
+		int columnCount = updatingColumns.size() + restrictingColumns.size();
+		StringBuilder insertStatement = new StringBuilder();
+		insertStatement.append("INSERT INTO ").append(getQualifiedStagingTableName(stagingTableName)).append(" (");
+		for (int column = 0; column < columnCount; column++) {
+			if (column > 0) {
+				insertStatement.append(", ");
+			}
+			insertStatement.append(getValueColumnName(column, updatingColumns.size()));
+		}
+		insertStatement.append(") VALUES (");
+		for (int column = 0; column < columnCount; column++) {
+			if (column > 0) {
+				insertStatement.append(", ");
+			}
+			insertStatement.append("?");
+		}
+		insertStatement.append(")");
+		return insertStatement.toString();
+	}
+
+	public String createDropStagingTableString(String stagingTableName) {
+		return "DROP TABLE " + getQualifiedStagingTableName(stagingTableName);
+	}
+
+	/**
+	 * Get the name the given staging table is referred to with, its plain name
+	 * by default
+	 */
+	protected String getQualifiedStagingTableName(String stagingTableName) {
+		return stagingTableName;
+	}
+
+	/**
+	 * Create the query selecting the columns of the staging table from the
+	 * updated table, so that the staging table gets the types of the table
+	 */
+	protected String createStagingSelectString(String tableName, List<String> updatingColumns, List<String> restrictingColumns) {
+		int updatingColumnCount = updatingColumns.size();
+		StringBuilder selectStatement = new StringBuilder("SELECT ");
+		for (int column = 0; column < updatingColumnCount + restrictingColumns.size(); column++) {
+			if (column > 0) {
+				selectStatement.append(", ");
+			}
+			String columnName = (column < updatingColumnCount ? updatingColumns.get(column) : restrictingColumns.get(column
+					- updatingColumnCount));
+			selectStatement.append(columnName).append(" AS ").append(getValueColumnName(column, updatingColumnCount));
+		}
+		selectStatement.append(" FROM ").append(tableName);
+		return selectStatement.toString();
+	}
+
+	/**
+	 * Name of the column of the joined values holding the given column, so
+	 * that a column both updated and restricting gets two distinct names
+	 * 
+	 * @param column
+	 *            the index of the column among the updating columns followed
+	 *            by the restricting columns
+	 * @param updatingColumnCount
+	 *            the number of columns of the 'set' clause
+	 */
+	protected String getValueColumnName(int column, int updatingColumnCount) {
+		return (column < updatingColumnCount ? "u" + column : "r" + (column - updatingColumnCount));
+	}
+
+}
@@ -16,21 +16,69 @@
 
 package paillard.florent.springframework.simplejdbcupdate;
 
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterDisposer;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 
 /**
@@ -45,6 +93,21 @@ import org.springframework.util.Assert;
  */
 public abstract class AbstractJdbcUpdate {
 
+	/** Default maximum number of cached statements of dynamic updates */
+	public static final int DEFAULT_MAX_CACHED_UPDATE_SHAPES = 64;
+
+	/** Default maximum number of values of an IN list */
+	public static final int DEFAULT_MAX_IN_LIST_SIZE = 1000;
+
+	/** Default number of threads executing asynchronous updates */
+	public static final int DEFAULT_ASYNC_POOL_SIZE = 8;
+
+	/** Default number of asynchronous updates waiting for a thread */
+	public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1000;
+
+	/** Number of rows sent in each batch loading the staging table */
+	private static final int STAGING_BATCH_SIZE = 1000;
+
 	/** Logger available to subclasses */
 	protected final Log logger = LogFactory.getLog(getClass());
 
@@ -60,21 +123,56 @@ public abstract class AbstractJdbcUpdate {
 	/** List of columns effectively used in 'set' clause */
 	private final List<String> reconciledUpdatingColumns = new ArrayList<String>();
 
-	/** The names of the columns to be used in 'where' clause */
-	private final Map<String, Operator> restrictingColumns = new HashMap<String, Operator>();
+	/** The names of the columns to be used in 'where' clause, in declaration order */
+	private final Map<String, Operator> restrictingColumns = new LinkedHashMap<String, Operator>();
 
 	/**
-	 * Has this operation been compiled? Compilation means at least checking
-	 * that a DataSource or JdbcTemplate has been provided, but subclasses may
-	 * also implement their own custom validation.
+	 * The outcome of the last compilation, or null if this operation hasn't
+	 * been compiled yet. Compilation means at least checking that a DataSource
+	 * or JdbcTemplate has been provided, but subclasses may also implement
+	 * their own custom validation. It's published as a whole once complete, so
+	 * that executions read it without locking.
 	 */
-	private boolean compiled = false;
+	private volatile CompiledUpdate compiledUpdate;
+
+	/** Lock serializing the compilations, never taken by the executions */
+	private final Lock compileLock = new ReentrantLock();
+
+	/** Should only the 'set' columns a value is provided for be updated? */
+	private boolean dynamicUpdatingColumns = false;
+
+	/** Maximum number of cached statements of dynamic updates */
+	private int maxCachedUpdateShapes = DEFAULT_MAX_CACHED_UPDATE_SHAPES;
+
+	/** Number of dirty-checked updates skipped as nothing changed */
+	private final AtomicLong skippedUpdateCount = new AtomicLong();
+
+	/** Number of dirty-checked updates executed */
+	private final AtomicLong executedUpdateCount = new AtomicLong();
+
+	/** Column holding the version of each row for optimistic locking */
+	private String versionColumn;
+
+	/** Maximum number of values of the IN list of a statement */
+	private int maxInListSize = DEFAULT_MAX_IN_LIST_SIZE;
+
+	/** Dialect rendering the statements of bulk updates */
+	private BulkUpdateDialect bulkUpdateDialect = new CaseBulkUpdateDialect();
+
+	/** Transaction manager used to commit streaming batch updates */
+	private PlatformTransactionManager transactionManager;
+
+	/** Executor running asynchronous updates */
+	private Executor asyncExecutor;
+
+	/** Executor running the partitions of parallel batch updates */
+	private Executor parallelBatchExecutor;
 
-	/** The generated string used for update statement */
-	private String updateString;
+	/** Should asynchronous updates run on virtual threads when available? */
+	private boolean asyncVirtualThreads = false;
 
-	/** The SQL type information for the declared columns */
-	private int[] columnTypes;
+	/** Listener notified of compilation and executions, if any */
+	private volatile UpdateMetricsListener metricsListener;
 
 	/**
 	 * Constructor for sublasses to delegate to for setting the DataSource.
@@ -168,7 +266,7 @@ public abstract class AbstractJdbcUpdate {
 	 * Set the names of any primary keys
 	 */
 	public void setRestrictingColumns(List<String> whereNames) {
-		Map<String, Operator> columns = new HashMap<String, Operator>();
+		Map<String, Operator> columns = new LinkedHashMap<String, Operator>();
 		for (String columnName : whereNames) {
 		    columns.put(columnName, Operator.EQUALS);
 		}
@@ -180,6 +278,9 @@ public abstract class AbstractJdbcUpdate {
      */
     public void setRestrictingColumns(Map<String, Operator> whereNames) {
         checkIfConfigurationModificationIsAllowed();
+        if (Collections.frequency(whereNames.values(), Operator.IN) > 1) {
+            throw new InvalidDataAccessApiUsageException("Only one restricting column can use the IN operator");
+        }
         this.restrictingColumns.clear();
         this.restrictingColumns.putAll(whereNames);
     }
@@ -200,6 +301,115 @@ public abstract class AbstractJdbcUpdate {
 		this.tableMetaDataContext.setOverrideIncludeSynonymsDefault(override);
 	}
 
+	/**
+	 * Specify whether only the 'set' columns a value is provided for should be
+	 * updated, rather than all the declared columns. The default is false.
+	 */
+	public void setDynamicUpdatingColumns(boolean dynamicUpdatingColumns) {
+		checkIfConfigurationModificationIsAllowed();
+		this.dynamicUpdatingColumns = dynamicUpdatingColumns;
+	}
+
+	/**
+	 * Are only the 'set' columns a value is provided for updated?
+	 */
+	public boolean isDynamicUpdatingColumns() {
+		return this.dynamicUpdatingColumns;
+	}
+
+	/**
+	 * Set the maximum number of statements kept for the distinct sets of 'set'
+	 * columns of dynamic updates. The default is
+	 * {@link #DEFAULT_MAX_CACHED_UPDATE_SHAPES}.
+	 */
+	public void setMaxCachedUpdateShapes(int maxCachedUpdateShapes) {
+		checkIfConfigurationModificationIsAllowed();
+		Assert.isTrue(maxCachedUpdateShapes > 0, "Maximum number of cached statements must be greater than 0");
+		this.maxCachedUpdateShapes = maxCachedUpdateShapes;
+	}
+
+	/**
+	 * Get the maximum number of statements kept for the distinct sets of 'set'
+	 * columns of dynamic updates, also bounding the statements prepared by
+	 * each {@link UpdateSession}
+	 */
+	public int getMaxCachedUpdateShapes() {
+		return this.maxCachedUpdateShapes;
+	}
+
+	/**
+	 * Set the column holding the version number of each row, for optimistic
+	 * locking. The version is incremented by each update, which only updates
+	 * the row if its version is still the one provided in the restricting
+	 * values. An update affecting no row throws an
+	 * {@link OptimisticLockingFailureException}.
+	 */
+	public void setVersionColumn(String versionColumn) {
+		checkIfConfigurationModificationIsAllowed();
+		this.versionColumn = versionColumn;
+	}
+
+	/**
+	 * Get the column holding the version number of each row, if any
+	 */
+	public String getVersionColumn() {
+		return this.versionColumn;
+	}
+
+	/**
+	 * Get the number of updates with dirty checking which were skipped, as
+	 * none of the provided values changed
+	 */
+	public long getSkippedUpdateCount() {
+		return this.skippedUpdateCount.get();
+	}
+
+	/**
+	 * Get the number of updates with dirty checking which were executed, as
+	 * some of the provided values changed
+	 */
+	public long getExecutedUpdateCount() {
+		return this.executedUpdateCount.get();
+	}
+
+	/**
+	 * Set the maximum number of values of the IN list of a statement. Longer
+	 * lists are split into several statements. The default is
+	 * {@link #DEFAULT_MAX_IN_LIST_SIZE}.
+	 */
+	public void setMaxInListSize(int maxInListSize) {
+		checkIfConfigurationModificationIsAllowed();
+		Assert.isTrue(maxInListSize > 0, "Maximum IN list size must be greater than 0");
+		this.maxInListSize = maxInListSize;
+	}
+
+	/**
+	 * Get the maximum number of values of the IN list of a statement
+	 */
+	public int getMaxInListSize() {
+		return this.maxInListSize;
+	}
+
+	/**
+	 * Set the {@link TableMetaDataLoader} providing the column meta data of
+	 * the table, instead of looking it up on compilation. Tables unknown to
+	 * the loader are still looked up.
+	 */
+	public void setTableMetaDataLoader(TableMetaDataLoader tableMetaDataLoader) {
+		checkIfConfigurationModificationIsAllowed();
+		this.tableMetaDataContext.setTableMetaDataLoader(tableMetaDataLoader);
+	}
+
+	/**
+	 * Set the {@link TableMetaDataCache} used to share the table meta data and
+	 * the compiled update statement with other instances. By default, no cache
+	 * is used and the meta data is looked up on compilation.
+	 */
+	public void setTableMetaDataCache(TableMetaDataCache tableMetaDataCache) {
+		checkIfConfigurationModificationIsAllowed();
+		this.tableMetaDataContext.setTableMetaDataCache(tableMetaDataCache);
+	}
+
 	/**
 	 * Set the {@link NativeJdbcExtractor} to use to retrieve the native
 	 * connection if necessary
@@ -208,18 +418,158 @@ public abstract class AbstractJdbcUpdate {
 		this.tableMetaDataContext.setNativeJdbcExtractor(nativeJdbcExtractor);
 	}
 
+	/**
+	 * Set the {@link BulkUpdateDialect} rendering the statements of bulk
+	 * updates. The default is a {@link CaseBulkUpdateDialect}.
+	 */
+	public void setBulkUpdateDialect(BulkUpdateDialect bulkUpdateDialect) {
+		Assert.notNull(bulkUpdateDialect, "BulkUpdateDialect must not be null");
+		this.bulkUpdateDialect = bulkUpdateDialect;
+	}
+
+	/**
+	 * Get the {@link BulkUpdateDialect} rendering the statements of bulk
+	 * updates
+	 */
+	public BulkUpdateDialect getBulkUpdateDialect() {
+		return this.bulkUpdateDialect;
+	}
+
+	/**
+	 * Set the {@link PlatformTransactionManager} used to commit the intermediate
+	 * transactions of streaming batch updates. Defaults to a
+	 * {@link DataSourceTransactionManager} on the DataSource being used.
+	 */
+	public void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactionManager = transactionManager;
+	}
+
+	/**
+	 * Get the {@link PlatformTransactionManager} used to commit the
+	 * intermediate transactions of streaming batch updates
+	 */
+	public PlatformTransactionManager getTransactionManager() {
+		if (this.transactionManager == null) {
+			this.transactionManager = new DataSourceTransactionManager(this.jdbcTemplate.getDataSource());
+		}
+		return this.transactionManager;
+	}
+
+	/**
+	 * Set the {@link Executor} running asynchronous updates. Defaults to a
+	 * pool of {@link #DEFAULT_ASYNC_POOL_SIZE} daemon threads, accepting at
+	 * most {@link #DEFAULT_ASYNC_QUEUE_CAPACITY} waiting updates.
+	 */
+	public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Specify whether asynchronous updates should run on a virtual thread each
+	 * rather than on the default pool, on JDKs providing virtual threads. The
+	 * number of concurrent updates is then only bounded by the DataSource. The
+	 * default is false.
+	 */
+	public synchronized void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+		this.asyncVirtualThreads = asyncVirtualThreads;
+		this.asyncExecutor = null;
+	}
+
+	/**
+	 * Get the {@link Executor} running asynchronous updates, creating the
+	 * default one if none was set
+	 */
+	public synchronized Executor getAsyncExecutor() {
+		if (this.asyncExecutor == null) {
+			if (this.asyncVirtualThreads) {
+				this.asyncExecutor = createVirtualThreadExecutor();
+			}
+			if (this.asyncExecutor == null) {
+				CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("SimpleJdbcUpdate-async-");
+				threadFactory.setDaemon(true);
+				ThreadPoolExecutor executor = new ThreadPoolExecutor(DEFAULT_ASYNC_POOL_SIZE, DEFAULT_ASYNC_POOL_SIZE, 60L,
+						TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(DEFAULT_ASYNC_QUEUE_CAPACITY), threadFactory);
+				executor.allowCoreThreadTimeOut(true);
+				this.asyncExecutor = executor;
+			}
+		}
+		return this.asyncExecutor;
+	}
+
+	/**
+	 * Set the {@link Executor} running the partitions of parallel batch
+	 * updates. Defaults to a pool of daemon threads created on demand, shared
+	 * by all the parallel batch updates of this instance. An executor running
+	 * fewer threads than the parallelism makes partitions wait for each other.
+	 */
+	public synchronized void setParallelBatchExecutor(Executor parallelBatchExecutor) {
+		this.parallelBatchExecutor = parallelBatchExecutor;
+	}
+
+	/**
+	 * Get the {@link Executor} running the partitions of parallel batch
+	 * updates, creating the default one if none was set
+	 */
+	public synchronized Executor getParallelBatchExecutor() {
+		if (this.parallelBatchExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("SimpleJdbcUpdate-parallel-");
+			threadFactory.setDaemon(true);
+			this.parallelBatchExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), threadFactory);
+		}
+		return this.parallelBatchExecutor;
+	}
+
+	/**
+	 * Create an executor starting a virtual thread per task, or return null if
+	 * the JDK doesn't provide virtual threads
+	 */
+	private Executor createVirtualThreadExecutor() {
+		try {
+			Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor) factoryMethod.invoke(null);
+		}
+		catch (NoSuchMethodException ex) {
+			logger.debug("Virtual threads not available, using the default pool for asynchronous updates");
+			return null;
+		}
+		catch (Exception ex) {
+			throw new IllegalStateException("Could not create virtual thread executor", ex);
+		}
+	}
+
+	/**
+	 * Set the listener notified of the compilation and of every statement or
+	 * batch executed, for instance an {@link UpdateMetricsRecorder}.
+	 * 
+	 * @param metricsListener
+	 *            the listener, or null for none
+	 */
+	public void setMetricsListener(UpdateMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * Get the listener notified of the compilation and executions, if any
+	 */
+	public UpdateMetricsListener getMetricsListener() {
+		return this.metricsListener;
+	}
+
 	/**
 	 * Get the update string to be used
 	 */
 	protected String getUpdateString() {
-		return this.updateString;
+		CompiledUpdate compiledUpdate = this.compiledUpdate;
+		return (compiledUpdate != null ? compiledUpdate.getUpdateString() : null);
 	}
 
 	/**
 	 * Get the array of {@link java.sql.Types} to be used in 'set' clause
 	 */
 	protected int[] getColumnTypes() {
-		return this.columnTypes;
+		CompiledUpdate compiledUpdate = this.compiledUpdate;
+		return (compiledUpdate != null ? compiledUpdate.getColumnTypes() : null);
 	}
 
 	/**
@@ -237,30 +587,90 @@ public abstract class AbstractJdbcUpdate {
 	 * Compile this JdbcUpdate using provided parameters and meta data plus
 	 * other settings. This finalizes the configuration for this object and
 	 * subsequent attempts to compile are ignored. This will be implicitly
-	 * called the first time an un-compiled update is executed.
+	 * called the first time an un-compiled update is executed. Once compiled,
+	 * executions never wait for this method.
 	 * 
 	 * @throws org.springframework.dao.InvalidDataAccessApiUsageException
 	 *             if the object hasn't been correctly initialized, for example
 	 *             if no DataSource has been provided
 	 */
-	public synchronized final void compile() throws InvalidDataAccessApiUsageException {
-		if (!isCompiled()) {
-			if (getTableName() == null) {
-				throw new InvalidDataAccessApiUsageException("Table name is required");
-			}
+	public final void compile() throws InvalidDataAccessApiUsageException {
+		if (isCompiled()) {
+			return;
+		}
+		this.compileLock.lock();
+		try {
+			if (!isCompiled()) {
+				if (getTableName() == null) {
+					throw new InvalidDataAccessApiUsageException("Table name is required");
+				}
 
-			try {
-				this.jdbcTemplate.afterPropertiesSet();
-			}
-			catch (IllegalArgumentException ex) {
-				throw new InvalidDataAccessApiUsageException(ex.getMessage());
+				try {
+					this.jdbcTemplate.afterPropertiesSet();
+				}
+				catch (IllegalArgumentException ex) {
+					throw new InvalidDataAccessApiUsageException(ex.getMessage());
+				}
+
+				compileAndRecord();
+
+				if (logger.isDebugEnabled()) {
+					logger.debug("JdbcUpdate for table [" + getTableName() + "] compiled");
+				}
 			}
+		}
+		finally {
+			this.compileLock.unlock();
+		}
+	}
 
-			compileInternal();
-			this.compiled = true;
+	/**
+	 * Recompile this JdbcUpdate against the current meta data of its table,
+	 * for example once a column was added or its type changed, and swap the
+	 * new statement in atomically. The meta data of the table cached by the
+	 * {@link TableMetaDataCache}, if any, is looked up again, whereas a
+	 * {@link SchemaMetaDataLoader} has to be reloaded beforehand. Executions
+	 * in progress complete with the statement they started with and the
+	 * following ones use the new statement, none of them waiting for the
+	 * compilation. Sessions and write-behind buffers keep the statement they
+	 * were opened with.
+	 * 
+	 * @throws org.springframework.dao.InvalidDataAccessApiUsageException
+	 *             if the object hasn't been correctly initialized, for example
+	 *             if no DataSource has been provided
+	 */
+	public final void recompile() throws InvalidDataAccessApiUsageException {
+		this.compileLock.lock();
+		try {
+			if (!isCompiled()) {
+				compile();
+				return;
+			}
+			tableMetaDataContext.invalidateCachedMetaData(getJdbcTemplate().getDataSource());
+			compileAndRecord();
 
 			if (logger.isDebugEnabled()) {
-				logger.debug("JdbcUpdate for table [" + getTableName() + "] compiled");
+				logger.debug("JdbcUpdate for table [" + getTableName() + "] recompiled");
+			}
+		}
+		finally {
+			this.compileLock.unlock();
+		}
+	}
+
+	/**
+	 * Perform the compilation, reporting its duration to the metrics listener
+	 */
+	private void compileAndRecord() {
+		long startTime = System.nanoTime();
+		compileInternal();
+		UpdateMetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			try {
+				listener.compiled(getQualifiedTableName(), System.nanoTime() - startTime);
+			}
+			catch (RuntimeException ex) {
+				logMetricsListenerFailure(ex);
 			}
 		}
 	}
@@ -268,20 +678,63 @@ public abstract class AbstractJdbcUpdate {
 	/**
 	 * Method to perform the actual compilation. Subclasses can override this
 	 * template method to perform their own compilation. Invoked after this base
-	 * class's compilation is complete.
+	 * class's compilation is complete. The compiled statement is published
+	 * before {@link #onCompileInternal()} is invoked.
 	 */
 	protected void compileInternal() {
 
 		tableMetaDataContext.processMetaData(getJdbcTemplate().getDataSource());
-		reconcileUpdatingColumns();
 
-		updateString = createUpdateString();
+		TableMetaDataCache.CachedTable cachedTable = tableMetaDataContext.getCachedTable();
+		List<Object> statementConfiguration = null;
+		TableMetaDataCache.CompiledStatement compiledStatement = null;
+		String updateString;
+		int[] columnTypes;
+		if (cachedTable != null) {
+			statementConfiguration = createStatementConfiguration();
+			compiledStatement = cachedTable.getCompiledStatement(statementConfiguration);
+		}
+
+		if (compiledStatement != null) {
+			reconciledUpdatingColumns.clear();
+			reconciledUpdatingColumns.addAll(compiledStatement.getUpdatingColumns());
+			updateString = compiledStatement.getUpdateString();
+			columnTypes = compiledStatement.getColumnTypes();
+		}
+		else {
+			reconcileUpdatingColumns();
+
+			updateString = createUpdateString();
 
-		List<String> columns = new ArrayList<String>();
-		columns.addAll(reconciledUpdatingColumns);
-		columns.addAll(restrictingColumns.keySet());
+			List<String> columns = new ArrayList<String>();
+			columns.addAll(reconciledUpdatingColumns);
+			columns.addAll(restrictingColumns.keySet());
+			if (versionColumn != null) {
+				columns.add(versionColumn);
+			}
+
+			columnTypes = tableMetaDataContext.createColumnTypes(columns);
 
-		columnTypes = tableMetaDataContext.createColumnTypes(columns);
+			if (cachedTable != null) {
+				cachedTable.putCompiledStatement(statementConfiguration, new TableMetaDataCache.CompiledStatement(
+						new ArrayList<String>(reconciledUpdatingColumns), updateString, columnTypes.clone()));
+			}
+		}
+
+		List<String> whereColumns = new ArrayList<String>(restrictingColumns.keySet());
+		if (versionColumn != null) {
+			whereColumns.add(versionColumn);
+		}
+		int inListParameterIndex = -1;
+		int restrictingIndex = 0;
+		for (Operator operator : restrictingColumns.values()) {
+			if (operator == Operator.IN) {
+				inListParameterIndex = reconciledUpdatingColumns.size() + restrictingIndex;
+			}
+			restrictingIndex++;
+		}
+		this.compiledUpdate = new CompiledUpdate(new ArrayList<String>(reconciledUpdatingColumns), whereColumns, updateString,
+				columnTypes, inListParameterIndex, maxCachedUpdateShapes);
 
 		if (logger.isDebugEnabled()) {
 			logger.debug("Compiled JdbcUpdate. Update string is [" + getUpdateString() + "]");
@@ -290,6 +743,28 @@ public abstract class AbstractJdbcUpdate {
 		onCompileInternal();
 	}
 
+	/**
+	 * Describe the configuration the update statement depends on. Two
+	 * instances with equal configurations on the same table share the
+	 * statement compiled by the first one when a {@link TableMetaDataCache} is
+	 * used. Subclasses altering the update statement should add their own
+	 * settings.
+	 * 
+	 * @return the list of settings the update statement depends on
+	 */
+	protected List<Object> createStatementConfiguration() {
+		List<Object> configuration = new ArrayList<Object>();
+		configuration.add(getClass());
+		configuration.add(new ArrayList<String>(declaredUpdatingColumns));
+		List<Map.Entry<String, Operator>> restrictions = new ArrayList<Map.Entry<String, Operator>>();
+		for (Map.Entry<String, Operator> column : restrictingColumns.entrySet()) {
+			restrictions.add(new AbstractMap.SimpleImmutableEntry<String, Operator>(column));
+		}
+		configuration.add(restrictions);
+		configuration.add(versionColumn);
+		return configuration;
+	}
+
 	/**
 	 * Hook method that subclasses may override to react to compilation. This
 	 * implementation does nothing.
@@ -303,7 +778,7 @@ public abstract class AbstractJdbcUpdate {
 	 * @return whether this operation is compiled, and ready to use.
 	 */
 	public boolean isCompiled() {
-		return this.compiled;
+		return (this.compiledUpdate != null);
 	}
 
 	/**
@@ -319,6 +794,20 @@ public abstract class AbstractJdbcUpdate {
 		}
 	}
 
+	/**
+	 * Get the outcome of the compilation, lazily compiling this operation if
+	 * not already compiled. An execution reads it once, so that it uses the
+	 * statement of a single compilation throughout.
+	 */
+	CompiledUpdate getCompiledUpdate() {
+		CompiledUpdate compiledUpdate = this.compiledUpdate;
+		if (compiledUpdate == null) {
+			checkCompiled();
+			compiledUpdate = this.compiledUpdate;
+		}
+		return compiledUpdate;
+	}
+
 	/**
 	 * Method to check whether we are allowd to make any configuration changes
 	 * at this time. If the class has been compiled, then no further changes to
@@ -345,11 +834,19 @@ public abstract class AbstractJdbcUpdate {
 	 * @return number of rows affected
 	 */
 	protected int doExecute(Map<String, Object> updatingValues, Map<String, Object> restrictingValues) {
-		checkCompiled();
-		List<Object> values = new ArrayList<Object>();
-		values.addAll(matchInParameterValuesWithUpdateColumns(updatingValues, reconciledUpdatingColumns));
-		values.addAll(matchInParameterValuesWithUpdateColumns(restrictingValues, new ArrayList<String>(restrictingColumns.keySet())));
-		return executeUpdateInternal(values);
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		if (dynamicUpdatingColumns) {
+			BitSet providedColumns = new BitSet();
+			Object[] values = bindingPlan.bind(updatingValues, restrictingValues, providedColumns);
+			return executeCheckedUpdate(compiledUpdate, values, providedColumns);
+		}
+		if (isDirectlyBindable(compiledUpdate)) {
+			return checkVersionConflict(executeUpdateInternal(new DirectBindingStatementCreator(bindingPlan,
+					compiledUpdate.getUpdateShape(), updatingValues, restrictingValues)));
+		}
+		Object[] values = bindingPlan.bind(updatingValues, restrictingValues);
+		return executeCheckedUpdate(compiledUpdate, values, null);
 	}
 
 	/**
@@ -363,96 +860,1483 @@ public abstract class AbstractJdbcUpdate {
 	 * @return number of rows affected
 	 */
 	protected int doExecute(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
-		checkCompiled();
-		List<Object> values = new ArrayList<Object>();
-		values.addAll(matchInParameterValuesWithUpdateColumns(updatingValues, reconciledUpdatingColumns));
-		values.addAll(matchInParameterValuesWithUpdateColumns(restrictingValues, new ArrayList<String>(restrictingColumns.keySet())));
-		return executeUpdateInternal(values);
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		if (dynamicUpdatingColumns) {
+			BitSet providedColumns = new BitSet();
+			Object[] values = bindingPlan.bind(updatingValues, restrictingValues, providedColumns);
+			return executeCheckedUpdate(compiledUpdate, values, providedColumns);
+		}
+		if (isDirectlyBindable(compiledUpdate)) {
+			return checkVersionConflict(executeUpdateInternal(new DirectBindingStatementCreator(bindingPlan,
+					compiledUpdate.getUpdateShape(), updatingValues, restrictingValues)));
+		}
+		Object[] values = bindingPlan.bind(updatingValues, restrictingValues);
+		return executeCheckedUpdate(compiledUpdate, values, null);
 	}
 
 	/**
-	 * Method to execute the update
+	 * Method that provides execution of the update using the properties of the
+	 * passed in bean, read through accessors generated on first use of its
+	 * class
+	 * 
+	 * @param bean
+	 *            JavaBean or record whose properties provide the values of
+	 *            both the 'set' and the 'where' columns
+	 * @return number of rows affected
 	 */
-	private int executeUpdateInternal(List<Object> values) {
-		if (logger.isDebugEnabled()) {
-			logger.debug("The following parameters are used for update " + getUpdateString() + " with: " + values);
-		}
-		int updateCount = jdbcTemplate.update(updateString, values.toArray(), columnTypes);
-		return updateCount;
+	protected int doExecuteBean(Object bean) {
+		Assert.notNull(bean, "Bean must not be null");
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		BitSet providedColumns = (dynamicUpdatingColumns ? new BitSet() : null);
+		Object[] values = compiledUpdate.getBeanBindingPlan(bean.getClass()).bind(bean, providedColumns);
+		return executeCheckedUpdate(compiledUpdate, values, providedColumns);
 	}
 
 	/**
-	 * Match the provided in parameter values with regitered parameters and
-	 * parameters defined via metedata processing.
+	 * Method that provides execution of the update of the columns whose value
+	 * differs from the one of the passed in snapshot, using the passed in Maps
+	 * of parameters
 	 * 
-	 * @param args
-	 *            the parameter values provided in a Map
-	 * @return Map with parameter names and values
+	 * @param snapshot
+	 *            Map with column names and values of the row as loaded
+	 * @param updatingValues
+	 *            Map with parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            Map with restricting column names and values
+	 * @return number of rows affected, 0 if nothing changed
 	 */
-	protected List<Object> matchInParameterValuesWithUpdateColumns(Map<String, Object> args, List<String> columns) {
-		return tableMetaDataContext.sortAndTypeInParameter(args, columns);
+	protected int doExecuteIfChanged(Map<String, ?> snapshot, Map<String, Object> updatingValues,
+			Map<String, Object> restrictingValues) {
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		BitSet providedColumns = new BitSet();
+		Object[] values = bindingPlan.bind(updatingValues, restrictingValues, providedColumns);
+		BitSet loadedColumns = new BitSet();
+		Object[] loadedValues = bindingPlan.bind(snapshot, Collections.<String, Object> emptyMap(), loadedColumns);
+		return executeIfChangedInternal(compiledUpdate, values, providedColumns, loadedValues, loadedColumns);
 	}
 
 	/**
-	 * Match the provided in parameter values with regitered parameters and
-	 * parameters defined via metedata processing.
+	 * Method that provides execution of the update of the columns whose value
+	 * differs from the one of the passed in snapshot, using the passed in
+	 * {@link SqlParameterSource}s
 	 * 
-	 * @param parameterSource
-	 *            the parameter vakues provided as a {@link SqlParameterSource}
-	 * @return Map with parameter names and values
+	 * @param snapshot
+	 *            column names and values of the row as loaded
+	 * @param updatingValues
+	 *            parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            restricting column names and values
+	 * @return number of rows affected, 0 if nothing changed
 	 */
-	protected List<Object> matchInParameterValuesWithUpdateColumns(SqlParameterSource parameterSource, List<String> columns) {
-		return tableMetaDataContext.sortAndTypeInParameter(parameterSource, columns);
+	protected int doExecuteIfChanged(SqlParameterSource snapshot, SqlParameterSource updatingValues,
+			SqlParameterSource restrictingValues) {
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		BitSet providedColumns = new BitSet();
+		Object[] values = bindingPlan.bind(updatingValues, restrictingValues, providedColumns);
+		BitSet loadedColumns = new BitSet();
+		Object[] loadedValues = bindingPlan.bind(snapshot, EmptySqlParameterSource.INSTANCE, loadedColumns);
+		return executeIfChangedInternal(compiledUpdate, values, providedColumns, loadedValues, loadedColumns);
 	}
 
 	/**
-	 * Build the update string based on configuration and metadata information
-	 * 
-	 * @return the update string to be used
+	 * Execute the update of the changed columns only, if any
 	 */
-	protected String createUpdateString() {
-		StringBuilder updateStatement = new StringBuilder();
-		updateStatement.append("UPDATE ");
-		if (this.getSchemaName() != null) {
-			updateStatement.append(this.getSchemaName());
-			updateStatement.append(".");
-		}
-		updateStatement.append(this.getTableName());
-		updateStatement.append(" SET ");
-		int columnCount = 0;
-		for (String columnName : reconciledUpdatingColumns) {
-			columnCount++;
-			if (columnCount > 1) {
-				updateStatement.append(", ");
+	private int executeIfChangedInternal(CompiledUpdate compiledUpdate, Object[] values, BitSet providedColumns,
+			Object[] loadedValues, BitSet loadedColumns) {
+		BitSet changedColumns = DirtyChecker.findChangedColumns(values, providedColumns, loadedValues, loadedColumns,
+				compiledUpdate.getColumnTypes());
+		if (changedColumns.isEmpty()) {
+			skippedUpdateCount.incrementAndGet();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Update of table [" + getTableName() + "] skipped as no value changed");
 			}
-			updateStatement.append(columnName);
-			updateStatement.append(" = ? ");
+			return 0;
 		}
-		if (restrictingColumns.size() > 0) {
-			updateStatement.append(" WHERE ");
-			columnCount = 0;
-			for (Map.Entry<String, Operator> column : restrictingColumns.entrySet()) {
-				columnCount++;
-				if (columnCount > 1) {
-					updateStatement.append(" AND ");
-				}
-				updateStatement.append(column.getKey());
-				updateStatement.append(" ");
-				updateStatement.append(column.getValue().toString());
-				updateStatement.append(" ? ");
+		executedUpdateCount.incrementAndGet();
+		return executeCheckedUpdate(compiledUpdate, values, changedColumns);
+	}
+
+	/**
+	 * Method that provides asynchronous execution of the update using the
+	 * passed in Maps of parameters. The values are bound before returning, the
+	 * statement being executed by the async executor.
+	 * 
+	 * @param updatingValues
+	 *            Map with parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            Map with restricting column names and values
+	 * @return the future number of rows affected
+	 */
+	protected CompletableFuture<Integer> doExecuteAsync(Map<String, Object> updatingValues, Map<String, Object> restrictingValues) {
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoActualTransaction();
+		final BitSet providedColumns = (dynamicUpdatingColumns ? new BitSet() : null);
+		final Object[] values = compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+
+			public Integer get() {
+				return executeCheckedUpdate(compiledUpdate, values, providedColumns);
 			}
-		}
-		return updateStatement.toString();
+		}, getAsyncExecutor());
 	}
 
-	private void reconcileUpdatingColumns() {
-		if (declaredUpdatingColumns.size() > 0) {
-			reconciledUpdatingColumns.clear();
-			reconciledUpdatingColumns.addAll(declaredUpdatingColumns);
-		}
-		else {
-			reconciledUpdatingColumns.clear();
-			reconciledUpdatingColumns.addAll(tableMetaDataContext.createColumns());
+	/**
+	 * Method that provides asynchronous execution of the update using the
+	 * passed in {@link SqlParameterSource}s. The values are bound before
+	 * returning, the statement being executed by the async executor.
+	 * 
+	 * @param updatingValues
+	 *            parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            restricting column names and values
+	 * @return the future number of rows affected
+	 */
+	protected CompletableFuture<Integer> doExecuteAsync(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoActualTransaction();
+		final BitSet providedColumns = (dynamicUpdatingColumns ? new BitSet() : null);
+		final Object[] values = compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return CompletableFuture.supplyAsync(new Supplier<Integer>() {
+
+			public Integer get() {
+				return executeCheckedUpdate(compiledUpdate, values, providedColumns);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * Method that provides asynchronous execution of a batch update using the
+	 * passed in rows. The values are bound before returning, the batch being
+	 * executed by the async executor.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the future array of the number of rows affected by each row
+	 */
+	protected CompletableFuture<int[]> doExecuteBatchAsync(List<UpdateRow> rows) {
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoInListRestriction(compiledUpdate, "batch updates");
+		checkNoActualTransaction();
+		final List<Object[]> batchValues = new ArrayList<Object[]>(rows.size());
+		final List<BitSet> providedColumns = (dynamicUpdatingColumns ? new ArrayList<BitSet>(rows.size()) : null);
+		for (UpdateRow row : rows) {
+			bindRow(compiledUpdate, row, batchValues, providedColumns);
+		}
+		return CompletableFuture.supplyAsync(new Supplier<int[]>() {
+
+			public int[] get() {
+				return checkVersionConflicts(executeBatchInternal(compiledUpdate, batchValues, providedColumns), 0);
+			}
+		}, getAsyncExecutor());
+	}
+
+	/**
+	 * Refuse asynchronous updates within a transaction, which they couldn't
+	 * take part in as they run on another thread
+	 */
+	private void checkNoActualTransaction() {
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new IllegalTransactionStateException("Asynchronous updates can't take part in the active transaction: "
+					+ "execute them outside of it, or use the synchronous methods");
+		}
+	}
+
+	/**
+	 * Method that provides execution of the update one slice of the range of a
+	 * key column at a time, using the passed in Maps of parameters
+	 * 
+	 * @param updatingValues
+	 *            Map with parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            Map with restricting column names and values
+	 * @param slicing
+	 *            the key column and how to slice its range
+	 * @return the total number of rows affected
+	 */
+	protected long doExecuteInKeyRanges(Map<String, Object> updatingValues, Map<String, Object> restrictingValues,
+			KeyRangeSlicing slicing) {
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		BitSet providedColumns = (dynamicUpdatingColumns ? new BitSet() : null);
+		Object[] values = compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return executeInKeyRangesInternal(compiledUpdate, values, providedColumns, slicing);
+	}
+
+	/**
+	 * Method that provides execution of the update one slice of the range of a
+	 * key column at a time, using the passed in {@link SqlParameterSource}s
+	 * 
+	 * @param updatingValues
+	 *            parameter names and values to be used in update
+	 * @param restrictingValues
+	 *            restricting column names and values
+	 * @param slicing
+	 *            the key column and how to slice its range
+	 * @return the total number of rows affected
+	 */
+	protected long doExecuteInKeyRanges(SqlParameterSource updatingValues, SqlParameterSource restrictingValues,
+			KeyRangeSlicing slicing) {
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		BitSet providedColumns = (dynamicUpdatingColumns ? new BitSet() : null);
+		Object[] values = compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return executeInKeyRangesInternal(compiledUpdate, values, providedColumns, slicing);
+	}
+
+	/**
+	 * Method that provides execution of a batch update using the passed in
+	 * rows
+	 *
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return array of the number of rows affected by each row of the batch
+	 */
+	protected int[] doExecuteBatch(List<UpdateRow> rows) {
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoInListRestriction(compiledUpdate, "batch updates");
+		List<Object[]> batchValues = new ArrayList<Object[]>(rows.size());
+		List<BitSet> providedColumns = (dynamicUpdatingColumns ? new ArrayList<BitSet>(rows.size()) : null);
+		for (UpdateRow row : rows) {
+			bindRow(compiledUpdate, row, batchValues, providedColumns);
+		}
+		return checkVersionConflicts(executeBatchInternal(compiledUpdate, batchValues, providedColumns), 0);
+	}
+
+	/**
+	 * Method that provides execution of a batch update of the passed in rows
+	 * by several workers, each on its own connection and transaction. Rows are
+	 * partitioned by a hash of their restricting values, so that two workers
+	 * never update the same rows, and sorted by restricting values within each
+	 * partition, so that the locks are always acquired in the same order. The
+	 * partitions run on the {@link #getParallelBatchExecutor() parallel batch
+	 * executor}, and a version conflict rolls back its partition.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param parallelism
+	 *            the number of partitions, each updated by its own worker
+	 * @return the number of rows affected by each row and the failures of the
+	 *         partitions which were rolled back
+	 */
+	protected ParallelBatchResult doExecuteBatchInParallel(List<UpdateRow> rows, int parallelism) {
+		Assert.isTrue(parallelism > 0, "Parallelism must be greater than 0");
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoInListRestriction(compiledUpdate, "batch updates");
+		final int restrictingOffset = compiledUpdate.getUpdatingColumns().size();
+		List<List<Integer>> partitions = new ArrayList<List<Integer>>(parallelism);
+		for (int i = 0; i < parallelism; i++) {
+			partitions.add(new ArrayList<Integer>());
+		}
+		final List<Object[]> batchValues = new ArrayList<Object[]>(rows.size());
+		final List<BitSet> providedColumns = (dynamicUpdatingColumns ? new ArrayList<BitSet>(rows.size()) : null);
+		for (int i = 0; i < rows.size(); i++) {
+			bindRow(compiledUpdate, rows.get(i), batchValues, providedColumns);
+			int hash = Arrays.hashCode(Arrays.copyOfRange(batchValues.get(i), restrictingOffset, batchValues.get(i).length));
+			partitions.get((hash & Integer.MAX_VALUE) % parallelism).add(i);
+		}
+		final Comparator<Integer> restrictingValuesOrder = new Comparator<Integer>() {
+
+			public int compare(Integer row1, Integer row2) {
+				return compareRestrictingValues(batchValues.get(row1), batchValues.get(row2), restrictingOffset);
+			}
+		};
+
+		int[] updateCounts = new int[rows.size()];
+		long rowsAffected = 0;
+		Map<Integer, RuntimeException> failures = new TreeMap<Integer, RuntimeException>();
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+		Executor executor = getParallelBatchExecutor();
+		try {
+			List<Future<int[]>> results = new ArrayList<Future<int[]>>(parallelism);
+			for (final List<Integer> partition : partitions) {
+				if (partition.isEmpty()) {
+					results.add(null);
+					continue;
+				}
+				results.add(CompletableFuture.supplyAsync(new Supplier<int[]>() {
+
+					public int[] get() {
+						Collections.sort(partition, restrictingValuesOrder);
+						final List<Object[]> partitionValues = new ArrayList<Object[]>(partition.size());
+						final List<BitSet> partitionColumns = (providedColumns != null ? new ArrayList<BitSet>(partition.size()) : null);
+						for (int row : partition) {
+							partitionValues.add(batchValues.get(row));
+							if (partitionColumns != null) {
+								partitionColumns.add(providedColumns.get(row));
+							}
+						}
+						return transactionTemplate.execute(new TransactionCallback<int[]>() {
+
+							public int[] doInTransaction(TransactionStatus status) {
+								return checkVersionConflicts(executeBatchInternal(compiledUpdate, partitionValues, partitionColumns),
+										0, partition);
+							}
+						});
+					}
+				}, executor));
+			}
+			for (int i = 0; i < parallelism; i++) {
+				List<Integer> partition = partitions.get(i);
+				if (results.get(i) == null) {
+					continue;
+				}
+				try {
+					int[] partitionUpdateCounts = results.get(i).get();
+					for (int j = 0; j < partition.size(); j++) {
+						updateCounts[partition.get(j)] = partitionUpdateCounts[j];
+						if (partitionUpdateCounts[j] > 0) {
+							rowsAffected += partitionUpdateCounts[j];
+						}
+					}
+				}
+				catch (ExecutionException ex) {
+					if (!(ex.getCause() instanceof RuntimeException)) {
+						throw new IllegalStateException("Unexpected failure of parallel batch update", ex.getCause());
+					}
+					logger.debug("Partition " + i + " of parallel batch update rolled back", ex.getCause());
+					failures.put(i, (RuntimeException) ex.getCause());
+					for (int row : partition) {
+						updateCounts[row] = Statement.EXECUTE_FAILED;
+					}
+				}
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for parallel batch update", ex);
+		}
+		return new ParallelBatchResult(updateCounts, rowsAffected, failures);
+	}
+
+	/**
+	 * Compare the restricting values of two bound rows, value by value. Values
+	 * which aren't mutually comparable are considered equal.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compareRestrictingValues(Object[] values1, Object[] values2, int restrictingOffset) {
+		for (int i = restrictingOffset; i < values1.length; i++) {
+			Object value1 = values1[i];
+			Object value2 = values2[i];
+			int comparison = 0;
+			if (value1 == null || value2 == null) {
+				comparison = (value1 == null ? (value2 == null ? 0 : -1) : 1);
+			}
+			else if (value1 instanceof Comparable && value1.getClass().isInstance(value2)) {
+				comparison = ((Comparable) value1).compareTo(value2);
+			}
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Method that provides execution of a batch update consuming the passed in
+	 * rows one batch at a time, so that the rows never need to be held in
+	 * memory all together.
+	 * <p>
+	 * When a commit interval is given, every group of that many batches is
+	 * executed in its own transaction. If a transaction is already active, the
+	 * batches participate in it and no intermediate commit happens.
+	 *
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param batchSize
+	 *            the maximum number of rows sent in one JDBC batch
+	 * @param commitInterval
+	 *            the number of batches after which to commit, or 0 to not
+	 *            manage transactions
+	 * @param progressCallback
+	 *            callback notified after each batch, may be null
+	 * @return the total number of rows affected, rows for which the driver
+	 *         does not report a count not being accounted
+	 */
+	protected long doExecuteBatch(final Iterator<? extends UpdateRow> rows, final int batchSize, final int commitInterval,
+			final BatchProgressCallback progressCallback) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		Assert.isTrue(commitInterval >= 0, "Commit interval must not be negative");
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoInListRestriction(compiledUpdate, "batch updates");
+		final BatchProgress progress = new BatchProgress();
+		if (commitInterval > 0) {
+			TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+			while (rows.hasNext()) {
+				transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+					@Override
+					protected void doInTransactionWithoutResult(TransactionStatus status) {
+						executeBatches(compiledUpdate, rows, batchSize, commitInterval, progress, progressCallback);
+					}
+				});
+			}
+		}
+		else {
+			executeBatches(compiledUpdate, rows, batchSize, Integer.MAX_VALUE, progress, progressCallback);
+		}
+		return progress.rowsAffected;
+	}
+
+	/**
+	 * Execute at most the given number of batches read from the passed in rows
+	 */
+	private void executeBatches(CompiledUpdate compiledUpdate, Iterator<? extends UpdateRow> rows, int batchSize,
+			int maxBatches, BatchProgress progress, BatchProgressCallback progressCallback) {
+		for (int batchCount = 0; batchCount < maxBatches && rows.hasNext(); batchCount++) {
+			List<Object[]> batchValues = new ArrayList<Object[]>(batchSize);
+			List<BitSet> providedColumns = (dynamicUpdatingColumns ? new ArrayList<BitSet>(batchSize) : null);
+			while (batchValues.size() < batchSize && rows.hasNext()) {
+				bindRow(compiledUpdate, rows.next(), batchValues, providedColumns);
+			}
+			int[] updateCounts = checkVersionConflicts(executeBatchInternal(compiledUpdate, batchValues, providedColumns),
+					progress.rowsSent);
+			progress.rowsSent += batchValues.size();
+			for (int updateCount : updateCounts) {
+				if (updateCount > 0) {
+					progress.rowsAffected += updateCount;
+				}
+			}
+			if (progressCallback != null) {
+				progressCallback.batchExecuted(progress.rowsSent, progress.rowsAffected, System.currentTimeMillis() - progress.startTime);
+			}
+		}
+	}
+
+	/**
+	 * Method that provides execution of a batch update of the passed in rows
+	 * held column by column, one batch at a time. Only the 'set' columns
+	 * provided are updated, and each 'where' column must be provided.
+	 * 
+	 * @param rows
+	 *            the values of the provided columns, one array per column
+	 * @param batchSize
+	 *            the maximum number of rows sent in one JDBC batch
+	 * @return the total number of rows affected, rows for which the driver
+	 *         does not report a count not being accounted
+	 */
+	protected long doExecuteBatch(ColumnarRows rows, int batchSize) {
+		Assert.notNull(rows, "ColumnarRows must not be null");
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		CompiledUpdate compiledUpdate = getCompiledUpdate();
+		checkNoInListRestriction(compiledUpdate, "batch updates");
+		List<String> updatingColumns = compiledUpdate.getBindingPlan().getUpdatingColumns();
+		List<String> whereColumns = compiledUpdate.getBindingPlan().getRestrictingColumns();
+		Set<String> unknownColumns = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		unknownColumns.addAll(rows.getColumnNames());
+		Object[] parameterColumns = new Object[updatingColumns.size() + whereColumns.size()];
+		BitSet providedColumns = new BitSet();
+		for (int i = 0; i < updatingColumns.size(); i++) {
+			parameterColumns[i] = rows.getColumn(updatingColumns.get(i));
+			if (parameterColumns[i] != null) {
+				providedColumns.set(i);
+				unknownColumns.remove(updatingColumns.get(i));
+			}
+		}
+		for (int i = 0; i < whereColumns.size(); i++) {
+			parameterColumns[updatingColumns.size() + i] = rows.getColumn(whereColumns.get(i));
+			if (parameterColumns[updatingColumns.size() + i] == null) {
+				throw new InvalidDataAccessApiUsageException("No values provided for restricting column [" + whereColumns.get(i)
+						+ "]");
+			}
+			unknownColumns.remove(whereColumns.get(i));
+		}
+		if (!unknownColumns.isEmpty()) {
+			throw new InvalidDataAccessApiUsageException("Columns " + unknownColumns
+					+ " are neither updating nor restricting columns of table [" + getTableName() + "]");
+		}
+		UpdateShape shape = getUpdateShape(compiledUpdate, (providedColumns.cardinality() == updatingColumns.size() ? null
+				: providedColumns));
+		Object[] shapeColumns = new Object[shape.getColumnTypes().length];
+		for (int i = 0; i < shapeColumns.length; i++) {
+			shapeColumns[i] = parameterColumns[shape.getParameterPosition(i)];
+		}
+		long rowsAffected = 0;
+		for (int start = 0; start < rows.getRowCount(); start += batchSize) {
+			int end = Math.min(rows.getRowCount(), start + batchSize);
+			for (int updateCount : checkVersionConflicts(executeBatchInternal(shape, shapeColumns, start, end), start)) {
+				if (updateCount > 0) {
+					rowsAffected += updateCount;
+				}
+			}
+		}
+		return rowsAffected;
+	}
+
+	/**
+	 * Method that provides execution of a bulk update, updating the passed in
+	 * rows with as few statements as allowed by the configured
+	 * {@link BulkUpdateDialect}. Of several rows with the same restricting
+	 * values, only the last one is applied, as with a batch update. The
+	 * statements run in a single transaction.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the total number of rows affected
+	 */
+	protected int doExecuteBulk(List<UpdateRow> rows) {
+		return doExecuteBulk(rows, BulkUpdateStrategy.MULTI_ROW_STATEMENT);
+	}
+
+	/**
+	 * Method that provides execution of a bulk update using the given
+	 * strategy.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param strategy
+	 *            the way the rows are sent to the database
+	 * @return the total number of rows affected
+	 */
+	protected int doExecuteBulk(List<UpdateRow> rows, BulkUpdateStrategy strategy) {
+		Assert.notNull(strategy, "BulkUpdateStrategy must not be null");
+		final CompiledUpdate compiledUpdate = getCompiledUpdate();
+		if (dynamicUpdatingColumns) {
+			throw new InvalidDataAccessApiUsageException("Bulk updates are not supported with dynamic updating columns");
+		}
+		if (restrictingColumns.isEmpty() || restrictingColumns.values().contains(Operator.GREATER_THAN)
+				|| restrictingColumns.values().contains(Operator.LESS_THAN) || restrictingColumns.values().contains(Operator.IN)) {
+			throw new InvalidDataAccessApiUsageException("Bulk updates require restricting columns compared for equality");
+		}
+		if (versionColumn != null) {
+			throw new InvalidDataAccessApiUsageException("Bulk updates are not supported with a version column");
+		}
+		final List<Object[]> rowValues = bindBulkRows(compiledUpdate, rows);
+		if (strategy == BulkUpdateStrategy.STAGING_TABLE) {
+			return executeStagedInternal(compiledUpdate, rowValues);
+		}
+		final int maxRows = bulkUpdateDialect.getMaxRowsPerStatement(compiledUpdate.getBindingPlan().getUpdatingColumns().size(),
+				compiledUpdate.getBindingPlan().getRestrictingColumns().size());
+		if (rowValues.size() <= maxRows) {
+			return executeBulkInternal(compiledUpdate, rowValues, maxRows);
+		}
+		return new TransactionTemplate(getTransactionManager()).execute(new TransactionCallback<Integer>() {
+
+			public Integer doInTransaction(TransactionStatus status) {
+				return executeBulkInternal(compiledUpdate, rowValues, maxRows);
+			}
+		});
+	}
+
+	/**
+	 * Bind the values of the rows of a bulk update, keeping only the last of
+	 * the rows with the same restricting values
+	 */
+	private List<Object[]> bindBulkRows(CompiledUpdate compiledUpdate, List<UpdateRow> rows) {
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		int restrictingOffset = bindingPlan.getUpdatingColumns().size();
+		Map<List<Object>, Object[]> rowValues = new LinkedHashMap<List<Object>, Object[]>();
+		for (UpdateRow row : rows) {
+			Object[] values = bindingPlan.bind(row.getUpdatingValues(), row.getRestrictingValues());
+			rowValues.put(Arrays.asList(Arrays.copyOfRange(values, restrictingOffset, values.length)), values);
+		}
+		if (rowValues.size() < rows.size() && logger.isDebugEnabled()) {
+			logger.debug("Bulk update of table [" + getTableName() + "] only applies the last of rows with the same restricting values: "
+					+ (rows.size() - rowValues.size()) + " rows skipped");
+		}
+		return new ArrayList<Object[]>(rowValues.values());
+	}
+
+	/**
+	 * Method to execute the statements of a bulk update of the given bound
+	 * rows, each updating at most the given number of rows
+	 */
+	private int executeBulkInternal(CompiledUpdate compiledUpdate, List<Object[]> rowValues, int maxRows) {
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		List<String> updatingColumns = bindingPlan.getUpdatingColumns();
+		List<String> whereColumns = bindingPlan.getRestrictingColumns();
+		int updateCount = 0;
+		for (int start = 0; start < rowValues.size(); start += maxRows) {
+			List<Object[]> statementRows = rowValues.subList(start, Math.min(rowValues.size(), start + maxRows));
+			BulkUpdateStatement statement = bulkUpdateDialect.createBulkUpdateStatement(getQualifiedTableName(), updatingColumns,
+					whereColumns, statementRows.size());
+			Object[] values = new Object[statement.getParameterCount()];
+			int[] types = new int[statement.getParameterCount()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = statementRows.get(statement.getRowIndex(i))[statement.getColumnIndex(i)];
+				types[i] = compiledUpdate.getColumnTypes()[statement.getColumnIndex(i)];
+			}
+			updateCount += executeUpdateInternal(new UpdateShape(statement.getSql(), types, null), values);
+		}
+		return updateCount;
+	}
+
+	/**
+	 * Method to execute a staged bulk update: the rows are loaded into the
+	 * staging table, which is joined by a single update statement and dropped,
+	 * all on the same connection.
+	 */
+	private int executeStagedInternal(CompiledUpdate compiledUpdate, List<Object[]> rows) {
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		List<String> updatingColumns = compiledUpdate.getBindingPlan().getUpdatingColumns();
+		List<String> whereColumns = compiledUpdate.getBindingPlan().getRestrictingColumns();
+		String tableName = getQualifiedTableName();
+		String stagingTableName = bulkUpdateDialect.createStagingTableName();
+		String createString = bulkUpdateDialect.createStagingTableString(stagingTableName, tableName, updatingColumns, whereColumns);
+		String insertString = bulkUpdateDialect.createStagingInsertString(stagingTableName, updatingColumns, whereColumns);
+		String updateString = bulkUpdateDialect.createStagedUpdateString(stagingTableName, tableName, updatingColumns, whereColumns);
+		String dropString = bulkUpdateDialect.createDropStagingTableString(stagingTableName);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Staging " + rows.size() + " rows with " + insertString + " for update " + updateString);
+		}
+		long startTime = System.nanoTime();
+		int updateCount;
+		try {
+			updateCount = executeStagedInternal(compiledUpdate, rows, createString, insertString, updateString, dropString);
+		}
+		catch (RuntimeException ex) {
+			recordFailure(startTime, 1, ex);
+			throw ex;
+		}
+		recordExecution(startTime, updateCount);
+		return updateCount;
+	}
+
+	/**
+	 * Method to execute the given statements of a staged bulk update on the
+	 * same connection
+	 */
+	private int executeStagedInternal(final CompiledUpdate compiledUpdate, final List<Object[]> rows,
+			final String createString, final String insertString, final String updateString, final String dropString) {
+		return jdbcTemplate.execute(new ConnectionCallback<Integer>() {
+			public Integer doInConnection(Connection con) throws SQLException {
+				Statement statement = con.createStatement();
+				try {
+					DataSourceUtils.applyTimeout(statement, jdbcTemplate.getDataSource(), jdbcTemplate.getQueryTimeout());
+					statement.executeUpdate(createString);
+					int updateCount;
+					try {
+						loadStagingTable(con, compiledUpdate, insertString, rows);
+						updateCount = statement.executeUpdate(updateString);
+					}
+					catch (SQLException ex) {
+						dropStagingTableAfterFailure(statement, dropString);
+						throw ex;
+					}
+					catch (RuntimeException ex) {
+						dropStagingTableAfterFailure(statement, dropString);
+						throw ex;
+					}
+					statement.executeUpdate(dropString);
+					return updateCount;
+				}
+				finally {
+					JdbcUtils.closeStatement(statement);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Insert the rows into the staging table, one batch at a time
+	 */
+	private void loadStagingTable(Connection con, CompiledUpdate compiledUpdate, String insertString, List<Object[]> rows)
+			throws SQLException {
+		PreparedStatement insertStatement = con.prepareStatement(insertString);
+		try {
+			DataSourceUtils.applyTimeout(insertStatement, jdbcTemplate.getDataSource(), jdbcTemplate.getQueryTimeout());
+			int batchCount = 0;
+			for (Object[] row : rows) {
+				setParameterValues(insertStatement, row, compiledUpdate.getColumnTypes());
+				insertStatement.addBatch();
+				if (++batchCount == STAGING_BATCH_SIZE) {
+					insertStatement.executeBatch();
+					batchCount = 0;
+				}
+			}
+			if (batchCount > 0) {
+				insertStatement.executeBatch();
+			}
+		}
+		finally {
+			JdbcUtils.closeStatement(insertStatement);
+		}
+	}
+
+	/**
+	 * Drop the staging table once the staged update failed, without hiding the
+	 * failure if the table cannot be dropped
+	 */
+	private void dropStagingTableAfterFailure(Statement statement, String dropString) {
+		try {
+			statement.executeUpdate(dropString);
+		}
+		catch (SQLException ex) {
+			logger.warn("Could not drop staging table after failed bulk update, the table is left until the session ends: " + dropString,
+					ex);
+		}
+	}
+
+	/**
+	 * Open a session holding a connection and the prepared update statement.
+	 * 
+	 * @return the session, to be closed once done with
+	 */
+	protected UpdateSession doOpenSession() {
+		return new UpdateSession(this, getCompiledUpdate());
+	}
+
+	/**
+	 * Open a write-behind buffer coalescing the updates of the same rows.
+	 * 
+	 * @param flushSize
+	 *            the number of pending rows triggering a flush
+	 * @param flushInterval
+	 *            the interval between two background flushes, in milliseconds
+	 * @param capacity
+	 *            the maximum number of rows pending or being flushed
+	 * @return the buffer, to be closed once done with
+	 */
+	protected WriteBehindUpdateBuffer doOpenWriteBehindBuffer(int flushSize, long flushInterval, int capacity) {
+		return new WriteBehindUpdateBuffer(this, getCompiledUpdate(), flushSize, flushInterval, capacity);
+	}
+
+	/**
+	 * Bind the values of a row of a batch update, recording the 'set' columns
+	 * a value is provided for when a list is given to hold them
+	 */
+	private void bindRow(CompiledUpdate compiledUpdate, UpdateRow row, List<Object[]> batchValues, List<BitSet> providedColumns) {
+		ParameterBindingPlan bindingPlan = compiledUpdate.getBindingPlan();
+		if (providedColumns != null) {
+			BitSet rowProvidedColumns = new BitSet();
+			batchValues.add(bindingPlan.bind(row.getUpdatingValues(), row.getRestrictingValues(), rowProvidedColumns));
+			providedColumns.add(rowProvidedColumns);
+		}
+		else {
+			batchValues.add(bindingPlan.bind(row.getUpdatingValues(), row.getRestrictingValues()));
+		}
+	}
+
+	/**
+	 * Check that an update with a version column affected a row
+	 * 
+	 * @return the given update count
+	 * @throws OptimisticLockingFailureException
+	 *             if no row was affected
+	 */
+	int checkVersionConflict(int updateCount) {
+		if (versionColumn != null && updateCount == 0) {
+			throw new OptimisticLockingFailureException("Row of table [" + getTableName()
+					+ "] was updated or deleted by another transaction: version [" + versionColumn + "] doesn't match");
+		}
+		return updateCount;
+	}
+
+	/**
+	 * Check that each row of a batch update with a version column affected a
+	 * row, as reported by the update counts
+	 * 
+	 * @param updateCounts
+	 *            the update counts of the rows of the batch
+	 * @param firstRow
+	 *            the index of the first row of the batch among the rows of
+	 *            the update
+	 * @return the given update counts
+	 * @throws BatchOptimisticLockingFailureException
+	 *             if some rows didn't affect any row
+	 * @throws IncorrectUpdateSemanticsDataAccessException
+	 *             if the driver didn't report the count of some rows, so that
+	 *             their version couldn't be checked
+	 */
+	int[] checkVersionConflicts(int[] updateCounts, long firstRow) {
+		return checkVersionConflicts(updateCounts, firstRow, null);
+	}
+
+	/**
+	 * Check the update counts of a batch update when a version column is used.
+	 * 
+	 * @param updateCounts
+	 *            the number of rows affected by each row of the batch
+	 * @param firstRow
+	 *            the index of the first row of the batch among all the rows of
+	 *            the update, if rowIndexes is null
+	 * @param rowIndexes
+	 *            the index of each row of the batch among all the rows of the
+	 *            update, or null if the rows of the batch are consecutive
+	 * @return the given update counts
+	 */
+	private int[] checkVersionConflicts(int[] updateCounts, long firstRow, List<Integer> rowIndexes) {
+		if (versionColumn == null) {
+			return updateCounts;
+		}
+		List<Integer> conflicts = new ArrayList<Integer>();
+		for (int i = 0; i < updateCounts.length; i++) {
+			if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+				throw new IncorrectUpdateSemanticsDataAccessException("The JDBC driver didn't report the number of rows "
+						+ "affected by row " + (rowIndexes != null ? rowIndexes.get(i) : firstRow + i) + " of the batch update of table [" + getTableName()
+						+ "]: version [" + versionColumn + "] can't be checked");
+			}
+			if (updateCounts[i] == 0) {
+				conflicts.add(i);
+			}
+		}
+		if (!conflicts.isEmpty()) {
+			int[] conflictingRows = new int[conflicts.size()];
+			long[] conflictingRowIndexes = new long[conflicts.size()];
+			for (int i = 0; i < conflictingRows.length; i++) {
+				conflictingRows[i] = conflicts.get(i);
+				conflictingRowIndexes[i] = (rowIndexes != null ? rowIndexes.get(conflicts.get(i)) : firstRow + conflicts.get(i));
+			}
+			throw new BatchOptimisticLockingFailureException(conflictingRows.length + " rows of table [" + getTableName()
+					+ "] were updated or deleted by another transaction: version [" + versionColumn + "] doesn't match for rows "
+					+ Arrays.toString(conflictingRowIndexes), conflictingRows, updateCounts, conflictingRowIndexes);
+		}
+		return updateCounts;
+	}
+
+	/**
+	 * Check that no restricting column uses the IN operator, as the given
+	 * operations only support statements with a single parameter per column
+	 */
+	void checkNoInListRestriction(CompiledUpdate compiledUpdate, String operations) {
+		if (compiledUpdate.getInListParameterIndex() >= 0) {
+			throw new InvalidDataAccessApiUsageException("IN restricting columns are not supported with " + operations);
+		}
+	}
+
+	/**
+	 * Method to execute the update of the bound values and check that it
+	 * affected a row when a version column is used. An update with an empty
+	 * IN list matches no row, so it isn't executed at all.
+	 */
+	private int executeCheckedUpdate(CompiledUpdate compiledUpdate, Object[] values, BitSet providedColumns) {
+		int inListParameterIndex = compiledUpdate.getInListParameterIndex();
+		if (inListParameterIndex >= 0) {
+			Object inValue = values[inListParameterIndex];
+			if ((inValue instanceof Collection && ((Collection<?>) inValue).isEmpty())
+					|| (inValue instanceof Object[] && ((Object[]) inValue).length == 0)) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Update of table [" + getTableName() + "] skipped as its IN list is empty");
+				}
+				return 0;
+			}
+		}
+		return checkVersionConflict(executeUpdateInternal(compiledUpdate, values, providedColumns));
+	}
+
+	/**
+	 * Method to execute the update of the bound values. A collection or array
+	 * value of the IN restricting column is expanded to a list of parameters
+	 * padded to the next power of two, lists longer than the maximum IN list
+	 * size being updated by several statements within a transaction.
+	 */
+	private int executeUpdateInternal(final CompiledUpdate compiledUpdate, final Object[] values, final BitSet providedColumns) {
+		int inListParameterIndex = compiledUpdate.getInListParameterIndex();
+		if (inListParameterIndex < 0) {
+			return executeUpdateInternal(getUpdateShape(compiledUpdate, providedColumns), values);
+		}
+		Object inValue = values[inListParameterIndex];
+		final Object[] inValues;
+		if (inValue instanceof Collection) {
+			inValues = ((Collection<?>) inValue).toArray();
+		}
+		else if (inValue instanceof Object[]) {
+			inValues = (Object[]) inValue;
+		}
+		else {
+			return executeUpdateInternal(getUpdateShape(compiledUpdate, providedColumns), values);
+		}
+		if (inValues.length <= maxInListSize) {
+			return executeInListUpdate(compiledUpdate, values, providedColumns, inValues, 0, inValues.length);
+		}
+		TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+		return transactionTemplate.execute(new TransactionCallback<Integer>() {
+
+			public Integer doInTransaction(TransactionStatus status) {
+				int updateCount = 0;
+				for (int start = 0; start < inValues.length; start += maxInListSize) {
+					updateCount += executeInListUpdate(compiledUpdate, values, providedColumns, inValues, start,
+							Math.min(inValues.length, start + maxInListSize));
+				}
+				return updateCount;
+			}
+		});
+	}
+
+	/**
+	 * Execute the update restricted to the given range of the IN list values
+	 */
+	private int executeInListUpdate(CompiledUpdate compiledUpdate, Object[] values, BitSet providedColumns,
+			Object[] inValues, int start, int end) {
+		if (start == end) {
+			return 0;
+		}
+		int inListParameterIndex = compiledUpdate.getInListParameterIndex();
+		int valueCount = end - start;
+		int inListSize = (valueCount == 1 ? 1 : Math.min(maxInListSize, Integer.highestOneBit(valueCount - 1) << 1));
+		Object[] expandedValues = new Object[values.length - 1 + inListSize];
+		System.arraycopy(values, 0, expandedValues, 0, inListParameterIndex);
+		for (int i = 0; i < inListSize; i++) {
+			expandedValues[inListParameterIndex + i] = inValues[Math.min(start + i, end - 1)];
+		}
+		System.arraycopy(values, inListParameterIndex + 1, expandedValues, inListParameterIndex + inListSize, values.length
+				- inListParameterIndex - 1);
+		return executeUpdateInternal(getUpdateShape(compiledUpdate, providedColumns, inListSize), expandedValues);
+	}
+
+	/**
+	 * Method to execute the update slice by slice: the range of the key column
+	 * is read once, then the update is executed with an additional range
+	 * predicate on the key column for each slice, in its own transaction. The
+	 * last slice includes the highest key, so that no bound exceeds it. An
+	 * interrupt during the pause between two slices stops the update with a
+	 * {@link KeyRangeUpdateInterruptedException}.
+	 */
+	private long executeInKeyRangesInternal(CompiledUpdate compiledUpdate, Object[] values, BitSet providedColumns,
+			KeyRangeSlicing slicing) {
+		Assert.notNull(slicing, "KeyRangeSlicing must not be null");
+		checkNoInListRestriction(compiledUpdate, "key range updates");
+		String keyColumn = slicing.getKeyColumn();
+		Map<String, Object> keyRange = jdbcTemplate.queryForMap("SELECT MIN(" + keyColumn + ") AS min_key, MAX(" + keyColumn
+				+ ") AS max_key FROM " + getQualifiedTableName());
+		Number maxKey = (Number) keyRange.get("max_key");
+		if (maxKey == null) {
+			return 0;
+		}
+		UpdateShape shape = getUpdateShape(compiledUpdate, providedColumns);
+		Object[] shapeValues = shape.selectValues(values);
+		int parameterCount = shapeValues.length;
+		final Object[] sliceValues = Arrays.copyOf(shapeValues, parameterCount + 2);
+		int[] sliceTypes = Arrays.copyOf(shape.getColumnTypes(), parameterCount + 2);
+		sliceTypes[parameterCount] = Types.BIGINT;
+		sliceTypes[parameterCount + 1] = Types.BIGINT;
+		String sliceString = shape.getUpdateString() + (restrictingColumns.isEmpty() && versionColumn == null ? " WHERE " : " AND ")
+				+ keyColumn + " >= ? AND " + keyColumn;
+		UpdateShape sliceShape = new UpdateShape(sliceString + " < ?", sliceTypes, null);
+		UpdateShape lastSliceShape = new UpdateShape(sliceString + " <= ?", sliceTypes, null);
+
+		TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+		long maxKeyValue = maxKey.longValue();
+		long lowerBound = (slicing.getCheckpoint() != null ? slicing.getCheckpoint() : ((Number) keyRange.get("min_key")).longValue());
+		long rowsAffected = 0;
+		while (lowerBound <= maxKeyValue) {
+			// the difference is negative if it overflows, the range being wider than any slice
+			long remainingKeys = maxKeyValue - lowerBound;
+			final boolean lastSlice = (remainingKeys >= 0 && remainingKeys < slicing.getSliceSize());
+			sliceValues[parameterCount] = lowerBound;
+			sliceValues[parameterCount + 1] = (lastSlice ? maxKeyValue : lowerBound + slicing.getSliceSize());
+			final UpdateShape executedShape = (lastSlice ? lastSliceShape : sliceShape);
+			rowsAffected += transactionTemplate.execute(new TransactionCallback<Integer>() {
+
+				public Integer doInTransaction(TransactionStatus status) {
+					return executeUpdateInternal(executedShape, sliceValues);
+				}
+			});
+			if (lastSlice) {
+				if (slicing.getProgressCallback() != null) {
+					slicing.getProgressCallback().sliceCommitted(maxKeyValue == Long.MAX_VALUE ? maxKeyValue : maxKeyValue + 1,
+							rowsAffected);
+				}
+				break;
+			}
+			lowerBound += slicing.getSliceSize();
+			if (slicing.getProgressCallback() != null) {
+				slicing.getProgressCallback().sliceCommitted(lowerBound, rowsAffected);
+			}
+			if (slicing.getPause() > 0) {
+				try {
+					Thread.sleep(slicing.getPause());
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new KeyRangeUpdateInterruptedException("Key range update of table [" + getTableName()
+							+ "] interrupted before key " + lowerBound, ex, lowerBound, rowsAffected);
+				}
+			}
+		}
+		return rowsAffected;
+	}
+
+	/**
+	 * Method to execute the update
+	 */
+	private int executeUpdateInternal(UpdateShape shape, Object[] values) {
+		Object[] shapeValues = shape.selectValues(values);
+		if (logger.isDebugEnabled()) {
+			logger.debug("The following parameters are used for update " + shape.getUpdateString() + " with: " + Arrays.asList(shapeValues));
+		}
+		long startTime = System.nanoTime();
+		int updateCount;
+		try {
+			updateCount = jdbcTemplate.update(shape.getUpdateString(), new ParameterValuesSetter(shapeValues, shape.getColumnTypes()));
+		}
+		catch (RuntimeException ex) {
+			recordFailure(startTime, 1, ex);
+			throw ex;
+		}
+		recordExecution(startTime, updateCount);
+		return updateCount;
+	}
+
+	/**
+	 * Can the provided values be set straight as the parameters of the
+	 * compiled statement? They can't when an IN list has to be expanded.
+	 */
+	private boolean isDirectlyBindable(CompiledUpdate compiledUpdate) {
+		return compiledUpdate.getInListParameterIndex() < 0;
+	}
+
+	/**
+	 * Method to execute the update with the values set straight by the given
+	 * statement creator
+	 */
+	private int executeUpdateInternal(DirectBindingStatementCreator statementCreator) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("The following parameters are used for update " + statementCreator.getSql() + " with: "
+					+ statementCreator.getParameterValues());
+		}
+		long startTime = System.nanoTime();
+		int updateCount;
+		try {
+			updateCount = jdbcTemplate.update(statementCreator);
+		}
+		catch (RuntimeException ex) {
+			recordFailure(startTime, 1, ex);
+			throw ex;
+		}
+		recordExecution(startTime, updateCount);
+		return updateCount;
+	}
+
+	/**
+	 * Method to execute the batch update. When the 'set' columns provided for
+	 * each row are given, consecutive rows providing the same columns are sent
+	 * in the same batch, using the statement updating only those columns.
+	 */
+	int[] executeBatchInternal(CompiledUpdate compiledUpdate, List<Object[]> batchValues, List<BitSet> providedColumns) {
+		if (providedColumns == null) {
+			return executeBatchInternal(compiledUpdate.getUpdateShape(), batchValues);
+		}
+		int[] updateCounts = new int[batchValues.size()];
+		int start = 0;
+		while (start < batchValues.size()) {
+			BitSet shapeColumns = providedColumns.get(start);
+			UpdateShape shape = getUpdateShape(compiledUpdate, shapeColumns);
+			List<Object[]> shapeValues = new ArrayList<Object[]>();
+			int end = start;
+			while (end < batchValues.size() && providedColumns.get(end).equals(shapeColumns)) {
+				shapeValues.add(shape.selectValues(batchValues.get(end)));
+				end++;
+			}
+			int[] shapeUpdateCounts = executeBatchInternal(shape, shapeValues);
+			System.arraycopy(shapeUpdateCounts, 0, updateCounts, start, shapeUpdateCounts.length);
+			start = end;
+		}
+		return updateCounts;
+	}
+
+	/**
+	 * Method to execute the batch update with the given statement
+	 */
+	private int[] executeBatchInternal(final UpdateShape shape, final List<Object[]> batchValues) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing statement " + shape.getUpdateString() + " with batch of size: " + batchValues.size());
+		}
+		long startTime = System.nanoTime();
+		int[] updateCounts;
+		try {
+			updateCounts = jdbcTemplate.batchUpdate(shape.getUpdateString(), new BatchPreparedStatementSetter() {
+
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					setParameterValues(ps, batchValues.get(i), shape.getColumnTypes());
+				}
+
+				public int getBatchSize() {
+					return batchValues.size();
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			recordFailure(startTime, batchValues.size(), ex);
+			throw ex;
+		}
+		recordExecution(startTime, updateCounts);
+		return updateCounts;
+	}
+
+	/**
+	 * Method to execute the batch update of the given range of rows held
+	 * column by column, the values being set straight from the arrays of the
+	 * statement parameters
+	 */
+	private int[] executeBatchInternal(final UpdateShape shape, final Object[] shapeColumns, final int start, final int end) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Executing statement " + shape.getUpdateString() + " with batch of size: " + (end - start));
+		}
+		final int[] columnTypes = shape.getColumnTypes();
+		long startTime = System.nanoTime();
+		int[] updateCounts;
+		try {
+			updateCounts = jdbcTemplate.batchUpdate(shape.getUpdateString(), new BatchPreparedStatementSetter() {
+
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					for (int parameter = 0; parameter < shapeColumns.length; parameter++) {
+						ColumnarRows.setValue(ps, parameter + 1, shapeColumns[parameter], start + i, columnTypes[parameter]);
+					}
+				}
+
+				public int getBatchSize() {
+					return end - start;
+				}
+			});
+		}
+		catch (RuntimeException ex) {
+			recordFailure(startTime, end - start, ex);
+			throw ex;
+		}
+		recordExecution(startTime, updateCounts);
+		return updateCounts;
+	}
+
+	/**
+	 * Notify the metrics listener, if any, of the execution of a statement
+	 * started at the given {@link System#nanoTime()}
+	 */
+	void recordExecution(long startTime, int updateCount) {
+		UpdateMetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			try {
+				listener.executed(getQualifiedTableName(), 1, updateCount, (updateCount == 0 ? 1 : 0), System.nanoTime() - startTime);
+			}
+			catch (RuntimeException ex) {
+				logMetricsListenerFailure(ex);
+			}
+		}
+	}
+
+	/**
+	 * Notify the metrics listener, if any, of the execution of a batch started
+	 * at the given {@link System#nanoTime()}
+	 */
+	void recordExecution(long startTime, int[] updateCounts) {
+		UpdateMetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			int rowsAffected = 0;
+			int noOpCount = 0;
+			for (int updateCount : updateCounts) {
+				if (updateCount > 0) {
+					rowsAffected += updateCount;
+				}
+				else if (updateCount == 0) {
+					noOpCount++;
+				}
+			}
+			try {
+				listener.executed(getQualifiedTableName(), updateCounts.length, rowsAffected, noOpCount, System.nanoTime() - startTime);
+			}
+			catch (RuntimeException ex) {
+				logMetricsListenerFailure(ex);
+			}
+		}
+	}
+
+	/**
+	 * Notify the metrics listener, if any, of the failure of a statement or a
+	 * batch started at the given {@link System#nanoTime()}
+	 */
+	void recordFailure(long startTime, int batchSize, RuntimeException ex) {
+		UpdateMetricsListener listener = this.metricsListener;
+		if (listener != null) {
+			try {
+				listener.failed(getQualifiedTableName(), batchSize, System.nanoTime() - startTime, ex);
+			}
+			catch (RuntimeException listenerEx) {
+				logMetricsListenerFailure(listenerEx);
+			}
+		}
+	}
+
+	/**
+	 * Log the failure of the metrics listener, which mustn't affect the update
+	 */
+	private void logMetricsListenerFailure(RuntimeException ex) {
+		logger.warn("Metrics listener of updates of table [" + getTableName() + "] failed", ex);
+	}
+
+	/**
+	 * Internal implementation for setting parameter values
+	 *
+	 * @param preparedStatement
+	 *            the PreparedStatement
+	 * @param values
+	 *            the values to be set
+	 * @param columnTypes
+	 *            the SQL types of the values
+	 */
+	static void setParameterValues(PreparedStatement preparedStatement, Object[] values, int[] columnTypes) throws SQLException {
+		int colIndex = 0;
+		for (Object value : values) {
+			colIndex++;
+			int sqlType = (columnTypes == null || colIndex > columnTypes.length ? SqlTypeValue.TYPE_UNKNOWN : columnTypes[colIndex - 1]);
+			checkSingleValue(value, sqlType, colIndex);
+			StatementCreatorUtils.setParameterValue(preparedStatement, colIndex, sqlType, value);
+		}
+	}
+
+	/**
+	 * Check that a collection isn't given as the value of a single parameter:
+	 * only the values of the IN restricting column are expanded, before the
+	 * parameters are set, whichever way the statement is bound.
+	 * 
+	 * @param value
+	 *            the value of the parameter
+	 * @param sqlType
+	 *            the SQL type of the parameter
+	 * @param parameterIndex
+	 *            the index of the parameter, starting from 1
+	 */
+	static void checkSingleValue(Object value, int sqlType, int parameterIndex) {
+		Object typedValue = (value instanceof SqlParameterValue ? ((SqlParameterValue) value).getValue() : value);
+		if (typedValue instanceof Collection && sqlType != Types.ARRAY) {
+			throw new InvalidDataAccessApiUsageException("Collection given as the value of parameter " + parameterIndex
+					+ ": only the values of an IN restricting column can be a collection");
+		}
+	}
+
+	/**
+	 * Match the provided in parameter values with regitered parameters and
+	 * parameters defined via metedata processing.
+	 * 
+	 * @param args
+	 *            the parameter values provided in a Map
+	 * @return Map with parameter names and values
+	 */
+	protected List<Object> matchInParameterValuesWithUpdateColumns(Map<String, Object> args, List<String> columns) {
+		return tableMetaDataContext.sortAndTypeInParameter(args, columns);
+	}
+
+	/**
+	 * Match the provided in parameter values with regitered parameters and
+	 * parameters defined via metedata processing.
+	 * 
+	 * @param parameterSource
+	 *            the parameter vakues provided as a {@link SqlParameterSource}
+	 * @return Map with parameter names and values
+	 */
+	protected List<Object> matchInParameterValuesWithUpdateColumns(SqlParameterSource parameterSource, List<String> columns) {
+		return tableMetaDataContext.sortAndTypeInParameter(parameterSource, columns);
+	}
+
+	/**
+	 * Build the update string based on configuration and metadata information
+	 * 
+	 * @return the update string to be used
+	 */
+	protected String createUpdateString() {
+		return createUpdateString(reconciledUpdatingColumns);
+	}
+
+	/**
+	 * Build the update string of a statement updating the given columns
+	 * 
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @return the update string to be used
+	 */
+	protected String createUpdateString(List<String> updatingColumns) {
+		return createUpdateString(updatingColumns, 1);
+	}
+
+	/**
+	 * Build the update string of a statement updating the given columns, with
+	 * the given number of parameters in the list of the IN restricting column
+	 * 
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param inListSize
+	 *            the number of parameters of the IN list, if any
+	 * @return the update string to be used
+	 */
+	protected String createUpdateString(List<String> updatingColumns, int inListSize) {
+		StringBuilder updateStatement = new StringBuilder();
+		updateStatement.append("UPDATE ");
+		updateStatement.append(getQualifiedTableName());
+		updateStatement.append(" SET ");
+		int columnCount = 0;
+		for (String columnName : updatingColumns) {
+			columnCount++;
+			if (columnCount > 1) {
+				updateStatement.append(", ");
+			}
+			updateStatement.append(columnName);
+			updateStatement.append(" = ? ");
+		}
+		if (versionColumn != null) {
+			if (columnCount > 0) {
+				updateStatement.append(", ");
+			}
+			updateStatement.append(versionColumn).append(" = ").append(versionColumn).append(" + 1 ");
+		}
+		if (restrictingColumns.size() > 0 || versionColumn != null) {
+			updateStatement.append(" WHERE ");
+			columnCount = 0;
+			for (Map.Entry<String, Operator> column : restrictingColumns.entrySet()) {
+				columnCount++;
+				if (columnCount > 1) {
+					updateStatement.append(" AND ");
+				}
+				updateStatement.append(column.getKey());
+				updateStatement.append(" ");
+				updateStatement.append(column.getValue().toString());
+				if (column.getValue() == Operator.IN) {
+					updateStatement.append(" (");
+					for (int i = 0; i < inListSize; i++) {
+						if (i > 0) {
+							updateStatement.append(", ");
+						}
+						updateStatement.append("?");
+					}
+					updateStatement.append(") ");
+				}
+				else {
+					updateStatement.append(" ? ");
+				}
+			}
+			if (versionColumn != null) {
+				if (columnCount > 0) {
+					updateStatement.append(" AND ");
+				}
+				updateStatement.append(versionColumn).append(" = ? ");
+			}
+		}
+		return updateStatement.toString();
+	}
+
+	/**
+	 * Get the name of the table qualified with the schema name, if any
+	 */
+	protected String getQualifiedTableName() {
+		if (this.getSchemaName() != null) {
+			return this.getSchemaName() + "." + this.getTableName();
+		}
+		return this.getTableName();
+	}
+
+	/**
+	 * Get the statement updating the given subset of the 'set' columns,
+	 * building it if it's not cached yet
+	 * 
+	 * @param compiledUpdate
+	 *            the compilation the statement derives from
+	 * @param updatingColumns
+	 *            the indexes of the 'set' columns to update, or null to update
+	 *            all of them
+	 */
+	UpdateShape getUpdateShape(CompiledUpdate compiledUpdate, BitSet updatingColumns) {
+		return getUpdateShape(compiledUpdate, updatingColumns, 1);
+	}
+
+	/**
+	 * Get the statement updating the given subset of the 'set' columns with
+	 * the given number of parameters in the IN list, building it if it's not
+	 * cached yet. The parameters following the IN list are shifted by the
+	 * number of additional parameters of the list.
+	 * 
+	 * @param compiledUpdate
+	 *            the compilation the statement derives from
+	 * @param updatingColumns
+	 *            the indexes of the 'set' columns to update, or null to update
+	 *            all of them
+	 * @param inListSize
+	 *            the number of parameters of the IN list, 1 if there is none
+	 */
+	UpdateShape getUpdateShape(CompiledUpdate compiledUpdate, BitSet updatingColumns, int inListSize) {
+		if (updatingColumns == null && inListSize == 1) {
+			return compiledUpdate.getUpdateShape();
+		}
+		if (updatingColumns != null && updatingColumns.isEmpty()) {
+			throw new InvalidDataAccessApiUsageException("No value provided for any of the updating columns");
+		}
+		UpdateShape shape = compiledUpdate.getCachedUpdateShape(updatingColumns, inListSize);
+		if (shape != null) {
+			return shape;
+		}
+		List<String> updatingColumnNames = compiledUpdate.getUpdatingColumns();
+		int[] columnTypes = compiledUpdate.getColumnTypes();
+		int inListParameterIndex = compiledUpdate.getInListParameterIndex();
+		int updatingColumnCount = updatingColumnNames.size();
+		int restrictingParameterCount = compiledUpdate.getBindingPlan().getRestrictingColumns().size() + inListSize - 1;
+		List<String> columns = new ArrayList<String>();
+		int parameterCount = (updatingColumns != null ? updatingColumns.cardinality() : updatingColumnCount)
+				+ restrictingParameterCount;
+		int[] types = new int[parameterCount];
+		int[] parameterPositions = new int[parameterCount];
+		int parameterIndex = 0;
+		for (int i = 0; i < updatingColumnCount; i++) {
+			if (updatingColumns == null || updatingColumns.get(i)) {
+				columns.add(updatingColumnNames.get(i));
+				types[parameterIndex] = columnTypes[i];
+				parameterPositions[parameterIndex++] = i;
+			}
+		}
+		for (int i = 0; i < restrictingParameterCount; i++) {
+			int column = i;
+			if (inListParameterIndex >= 0 && updatingColumnCount + i > inListParameterIndex) {
+				column = Math.max(inListParameterIndex - updatingColumnCount, i - inListSize + 1);
+			}
+			types[parameterIndex] = columnTypes[updatingColumnCount + column];
+			parameterPositions[parameterIndex++] = updatingColumnCount + i;
+		}
+		shape = new UpdateShape(createUpdateString(columns, inListSize), types, (updatingColumns != null ? parameterPositions
+				: null));
+		return compiledUpdate.cacheUpdateShape(updatingColumns, inListSize, shape);
+	}
+
+	private void reconcileUpdatingColumns() {
+		if (declaredUpdatingColumns.size() > 0) {
+			reconciledUpdatingColumns.clear();
+			reconciledUpdatingColumns.addAll(declaredUpdatingColumns);
+		}
+		else {
+			reconciledUpdatingColumns.clear();
+			reconciledUpdatingColumns.addAll(tableMetaDataContext.createColumns());
+		}
+		if (versionColumn != null) {
+			// the version column is incremented by the statement itself
+			for (Iterator<String> columns = reconciledUpdatingColumns.iterator(); columns.hasNext();) {
+				if (columns.next().equalsIgnoreCase(versionColumn)) {
+					columns.remove();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Progress of a streaming batch update
+	 */
+	private static class BatchProgress {
+
+		private final long startTime = System.currentTimeMillis();
+
+		private long rowsSent;
+
+		private long rowsAffected;
+	}
+
+	/**
+	 * Setter of the parameters of a statement from an array of values, each
+	 * value being set as a single parameter
+	 */
+	private static class ParameterValuesSetter implements PreparedStatementSetter, ParameterDisposer {
+
+		private final Object[] values;
+
+		private final int[] columnTypes;
+
+		private ParameterValuesSetter(Object[] values, int[] columnTypes) {
+			this.values = values;
+			this.columnTypes = columnTypes;
+		}
+
+		public void setValues(PreparedStatement ps) throws SQLException {
+			setParameterValues(ps, this.values, this.columnTypes);
+		}
+
+		public void cleanupParameters() {
+			StatementCreatorUtils.cleanupParameters(this.values);
 		}
 	}
 
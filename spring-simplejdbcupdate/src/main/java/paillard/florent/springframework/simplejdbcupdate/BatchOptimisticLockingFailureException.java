@@ -0,0 +1,113 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Exception thrown when some rows of a batch update of a
+ * {@link SimpleJdbcUpdate} with a version column were not updated, because
+ * they were updated or deleted by another transaction since they were read.
+ * 
+ * <p>
+ * The other rows of the batch have been updated: the transaction should
+ * usually be rolled back.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see AbstractJdbcUpdate#setVersionColumn(String)
+ */
+@SuppressWarnings("serial")
+public class BatchOptimisticLockingFailureException extends OptimisticLockingFailureException {
+
+	private final int[] conflictingRows;
+
+	private final int[] updateCounts;
+
+	private final long[] conflictingRowIndexes;
+
+	/**
+	 * Constructor for BatchOptimisticLockingFailureException.
+	 * 
+	 * @param msg
+	 *            the detail message
+	 * @param conflictingRows
+	 *            the indexes in the update counts of the rows which were not
+	 *            updated
+	 * @param updateCounts
+	 *            the number of rows affected by each row of the batch
+	 */
+	public BatchOptimisticLockingFailureException(String msg, int[] conflictingRows, int[] updateCounts) {
+		this(msg, conflictingRows, updateCounts, toLongs(conflictingRows));
+	}
+
+	/**
+	 * Constructor for BatchOptimisticLockingFailureException.
+	 * 
+	 * @param msg
+	 *            the detail message
+	 * @param conflictingRows
+	 *            the indexes in the update counts of the rows which were not
+	 *            updated
+	 * @param updateCounts
+	 *            the number of rows affected by each row of the batch
+	 * @param conflictingRowIndexes
+	 *            the indexes of the rows which were not updated among all the
+	 *            rows of the update
+	 */
+	public BatchOptimisticLockingFailureException(String msg, int[] conflictingRows, int[] updateCounts,
+			long[] conflictingRowIndexes) {
+		super(msg);
+		this.conflictingRows = conflictingRows;
+		this.updateCounts = updateCounts;
+		this.conflictingRowIndexes = conflictingRowIndexes;
+	}
+
+	/**
+	 * Get the indexes of the rows of the batch which were not updated, as
+	 * positions in {@link #getUpdateCounts()}
+	 */
+	public int[] getConflictingRows() {
+		return this.conflictingRows;
+	}
+
+	/**
+	 * Get the indexes of the rows which were not updated among all the rows
+	 * passed to the update. They differ from {@link #getConflictingRows()}
+	 * when the batch is one of several of a streaming or parallel update.
+	 */
+	public long[] getConflictingRowIndexes() {
+		return this.conflictingRowIndexes;
+	}
+
+	/**
+	 * Get the number of rows affected by each row of the batch, as returned by
+	 * the JDBC driver
+	 */
+	public int[] getUpdateCounts() {
+		return this.updateCounts;
+	}
+
+	private static long[] toLongs(int[] values) {
+		long[] longs = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			longs[i] = values[i];
+		}
+		return longs;
+	}
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+/**
+ * Callback interface used to report the progress of a streaming batch update,
+ * see {@link SimpleJdbcUpdateOperations#executeBatch(java.util.Iterator, int, int, BatchProgressCallback)}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public interface BatchProgressCallback {
+
+	/**
+	 * Called after each JDBC batch has been executed.
+	 * 
+	 * @param rowsSent
+	 *            the total number of rows sent to the database so far
+	 * @param rowsAffected
+	 *            the total number of rows affected so far, as reported by the
+	 *            JDBC driver
+	 * @param elapsedTime
+	 *            the time elapsed since the beginning of the update, in
+	 *            milliseconds
+	 */
+	void batchExecuted(long rowsSent, long rowsAffected, long elapsedTime);
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Immutable plan binding the properties of the beans of a class to the
+ * parameters of the compiled update statement. The properties are resolved
+ * once per class and read through generated accessors, so that binding a bean
+ * involves neither a {@link org.springframework.beans.BeanWrapper} nor
+ * reflection.
+ * 
+ * <p>
+ * Column names are matched case-insensitively with the property names, either
+ * directly or once converted by
+ * {@link JdbcUtils#convertUnderscoreNameToPropertyName(String)}. The
+ * properties of a JavaBean are its getters, and the ones of a record are its
+ * components.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+final class BeanBindingPlan {
+
+	/** Accessors of the properties of the parameters, null if none matched */
+	private final Function<Object, Object>[] accessors;
+
+	/** Number of 'set' columns, first among the parameters */
+	private final int updatingColumnCount;
+
+	/**
+	 * Resolve the properties of the given class bound to the parameters of
+	 * the given plan.
+	 * 
+	 * @param beanClass
+	 *            the class of the beans
+	 * @param bindingPlan
+	 *            the plan binding the values to the statement parameters
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	BeanBindingPlan(Class<?> beanClass, ParameterBindingPlan bindingPlan) {
+		Map<String, Method> readMethods = findReadMethods(beanClass);
+		List<String> updatingColumns = bindingPlan.getUpdatingColumns();
+		List<String> restrictingColumns = bindingPlan.getRestrictingColumns();
+		this.updatingColumnCount = updatingColumns.size();
+		this.accessors = new Function[bindingPlan.getParameterCount()];
+		for (int i = 0; i < this.accessors.length; i++) {
+			String column = (i < this.updatingColumnCount ? updatingColumns.get(i) : restrictingColumns.get(i
+					- this.updatingColumnCount));
+			Method readMethod = readMethods.get(column);
+			if (readMethod == null) {
+				readMethod = readMethods.get(JdbcUtils.convertUnderscoreNameToPropertyName(column));
+			}
+			if (readMethod != null) {
+				this.accessors[i] = createAccessor(beanClass, readMethod);
+			}
+		}
+	}
+
+	/**
+	 * Bind the properties of the given bean to the parameters of the update
+	 * statement, recording which 'set' columns a property was found for.
+	 * Columns without any matching property are bound to null.
+	 * 
+	 * @param bean
+	 *            the bean
+	 * @param providedUpdatingColumns
+	 *            set of the indexes of the 'set' columns a property was found
+	 *            for, may be null
+	 * @return the values in the order of the update statement parameters
+	 */
+	Object[] bind(Object bean, BitSet providedUpdatingColumns) {
+		Object[] values = new Object[this.accessors.length];
+		for (int i = 0; i < values.length; i++) {
+			Function<Object, Object> accessor = this.accessors[i];
+			if (accessor != null) {
+				values[i] = accessor.apply(bean);
+				if (providedUpdatingColumns != null && i < this.updatingColumnCount) {
+					providedUpdatingColumns.set(i);
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Find the methods reading the properties of the given class, by
+	 * case-insensitive property name
+	 */
+	private static Map<String, Method> findReadMethods(Class<?> beanClass) {
+		Map<String, Method> readMethods = new TreeMap<String, Method>(String.CASE_INSENSITIVE_ORDER);
+		Object[] recordComponents = getRecordComponents(beanClass);
+		if (recordComponents != null) {
+			for (Object recordComponent : recordComponents) {
+				Method getName = ReflectionUtils.findMethod(recordComponent.getClass(), "getName");
+				Method getAccessor = ReflectionUtils.findMethod(recordComponent.getClass(), "getAccessor");
+				readMethods.put((String) ReflectionUtils.invokeMethod(getName, recordComponent),
+						(Method) ReflectionUtils.invokeMethod(getAccessor, recordComponent));
+			}
+		}
+		else {
+			for (PropertyDescriptor propertyDescriptor : BeanUtils.getPropertyDescriptors(beanClass)) {
+				if (propertyDescriptor.getReadMethod() != null && !"class".equals(propertyDescriptor.getName())) {
+					readMethods.put(propertyDescriptor.getName(), propertyDescriptor.getReadMethod());
+				}
+			}
+		}
+		return readMethods;
+	}
+
+	/**
+	 * Get the components of the given class if it's a record, null otherwise
+	 * or on Java versions without records
+	 */
+	private static Object[] getRecordComponents(Class<?> beanClass) {
+		Method isRecord = ReflectionUtils.findMethod(Class.class, "isRecord");
+		if (isRecord == null || !((Boolean) ReflectionUtils.invokeMethod(isRecord, beanClass))) {
+			return null;
+		}
+		return (Object[]) ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(Class.class, "getRecordComponents"), beanClass);
+	}
+
+	/**
+	 * Create the accessor invoking the given read method. Public methods of
+	 * public classes visible from this class are invoked by a function
+	 * generated by the {@link LambdaMetafactory}, others through a method
+	 * handle.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> createAccessor(Class<?> beanClass, Method readMethod) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			if (Modifier.isPublic(readMethod.getModifiers()) && Modifier.isPublic(readMethod.getDeclaringClass().getModifiers())
+					&& ClassUtils.isVisible(readMethod.getDeclaringClass(), BeanBindingPlan.class.getClassLoader())) {
+				MethodHandle readHandle = lookup.unreflect(readMethod);
+				CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+						MethodType.methodType(Object.class, Object.class), readHandle, readHandle.type().wrap());
+				return (Function<Object, Object>) callSite.getTarget().invoke();
+			}
+			ReflectionUtils.makeAccessible(readMethod);
+			final MethodHandle readHandle = lookup.unreflect(readMethod).asType(MethodType.methodType(Object.class, Object.class));
+			return new Function<Object, Object>() {
+
+				public Object apply(Object bean) {
+					try {
+						return readHandle.invokeExact(bean);
+					}
+					catch (RuntimeException ex) {
+						throw ex;
+					}
+					catch (Error err) {
+						throw err;
+					}
+					catch (Throwable ex) {
+						throw new IllegalStateException("Could not read property of bean " + bean, ex);
+					}
+				}
+			};
+		}
+		catch (Throwable ex) {
+			throw new InvalidDataAccessApiUsageException("Could not create accessor of property " + readMethod.getName()
+					+ " of " + beanClass.getName(), ex);
+		}
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * Strategy interface rendering the database specific statements of the bulk
+ * updates of {@link SimpleJdbcUpdate}, which update many rows with a single
+ * statement rather than one statement per row.
+ * 
+ * <p>
+ * Parameters are identified by the index of the row they belong to and by
+ * the index of their column among the updating columns followed by the
+ * restricting columns, i.e. the index of the column parameter in the
+ * compiled single-row update statement.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see CaseBulkUpdateDialect
+ * @see ValuesJoinBulkUpdateDialect
+ * @see HsqlBulkUpdateDialect
+ */
+public interface BulkUpdateDialect {
+
+	/**
+	 * Get the maximum number of rows updated by one statement, given the
+	 * number of columns of each row.
+	 * 
+	 * @param updatingColumnCount
+	 *            the number of columns of the 'set' clause
+	 * @param restrictingColumnCount
+	 *            the number of columns identifying a row
+	 */
+	int getMaxRowsPerStatement(int updatingColumnCount, int restrictingColumnCount);
+
+	/**
+	 * Create the statement updating the given number of rows.
+	 * 
+	 * @param tableName
+	 *            the name of the table, qualified with its schema if any
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param restrictingColumns
+	 *            the columns identifying a row, compared for equality
+	 * @param rowCount
+	 *            the number of rows to update
+	 * @return the statement and the layout of its parameters
+	 */
+	BulkUpdateStatement createBulkUpdateStatement(String tableName, List<String> updatingColumns, List<String> restrictingColumns,
+			int rowCount);
+
+	/**
+	 * Create a name for the staging table of a staged bulk update, distinct
+	 * for each update so that a staging table left over by a failed update
+	 * never clashes with the staging table of a later update on the same
+	 * connection.
+	 */
+	String createStagingTableName();
+
+	/**
+	 * Create the statement declaring the session temporary table the rows of a
+	 * staged bulk update are loaded into. The table has one column for each
+	 * updating column followed by one column for each restricting column, with
+	 * the types of the corresponding columns of the updated table.
+	 * Temporary tables are declared differently by each database, so a dialect
+	 * not knowing how to declare them rejects staged bulk updates here.
+	 * 
+	 * @param stagingTableName
+	 *            the name of the staging table, as created by
+	 *            {@link #createStagingTableName()}
+	 * @param tableName
+	 *            the name of the updated table, qualified with its schema if
+	 *            any
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param restrictingColumns
+	 *            the columns identifying a row, compared for equality
+	 * @throws org.springframework.dao.InvalidDataAccessApiUsageException
+	 *             if the dialect doesn't support staged bulk updates
+	 */
+	String createStagingTableString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns);
+
+	/**
+	 * Create the statement inserting one row into the staging table, with one
+	 * parameter for each updating column followed by one parameter for each
+	 * restricting column.
+	 * 
+	 * @param stagingTableName
+	 *            the name of the staging table, as created by
+	 *            {@link #createStagingTableName()}
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param restrictingColumns
+	 *            the columns identifying a row
+	 */
+	String createStagingInsertString(String stagingTableName, List<String> updatingColumns, List<String> restrictingColumns);
+
+	/**
+	 * Create the set-based statement updating the table from the rows of the
+	 * staging table.
+	 * 
+	 * @param stagingTableName
+	 *            the name of the staging table, as created by
+	 *            {@link #createStagingTableName()}
+	 * @param tableName
+	 *            the name of the updated table, qualified with its schema if
+	 *            any
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param restrictingColumns
+	 *            the columns identifying a row, compared for equality
+	 */
+	String createStagedUpdateString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns);
+
+	/**
+	 * Create the statement dropping the staging table.
+	 * 
+	 * @param stagingTableName
+	 *            the name of the staging table, as created by
+	 *            {@link #createStagingTableName()}
+	 */
+	String createDropStagingTableString(String stagingTableName);
+
+}
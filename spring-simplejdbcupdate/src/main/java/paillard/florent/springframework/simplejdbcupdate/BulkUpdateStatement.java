@@ -0,0 +1,129 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Arrays;
+
+/**
+ * A statement updating many rows, along with the layout of its parameters:
+ * for each parameter, the index of the row and the index of the column it is
+ * bound to.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see BulkUpdateDialect
+ */
+public final class BulkUpdateStatement {
+
+	private final String sql;
+
+	private final int[] rowIndexes;
+
+	private final int[] columnIndexes;
+
+	private BulkUpdateStatement(String sql, int[] rowIndexes, int[] columnIndexes) {
+		this.sql = sql;
+		this.rowIndexes = rowIndexes;
+		this.columnIndexes = columnIndexes;
+	}
+
+	/**
+	 * Get the SQL of the statement
+	 */
+	public String getSql() {
+		return this.sql;
+	}
+
+	/**
+	 * Get the number of parameters of the statement
+	 */
+	public int getParameterCount() {
+		return this.rowIndexes.length;
+	}
+
+	/**
+	 * Get the index of the row the given parameter is bound to
+	 * 
+	 * @param parameterIndex
+	 *            the 0-based index of the parameter
+	 */
+	public int getRowIndex(int parameterIndex) {
+		return this.rowIndexes[parameterIndex];
+	}
+
+	/**
+	 * Get the index of the column the given parameter is bound to
+	 * 
+	 * @param parameterIndex
+	 *            the 0-based index of the parameter
+	 */
+	public int getColumnIndex(int parameterIndex) {
+		return this.columnIndexes[parameterIndex];
+	}
+
+	/**
+	 * Builder of {@link BulkUpdateStatement}s, collecting the SQL and the
+	 * parameters in statement order.
+	 */
+	public static class Builder {
+
+		private final StringBuilder sql = new StringBuilder();
+
+		private int[] rowIndexes = new int[16];
+
+		private int[] columnIndexes = new int[16];
+
+		private int parameterCount = 0;
+
+		/**
+		 * Append some SQL to the statement
+		 */
+		public Builder append(String sqlPart) {
+			this.sql.append(sqlPart);
+			return this;
+		}
+
+		/**
+		 * Append a parameter placeholder to the statement
+		 * 
+		 * @param rowIndex
+		 *            the index of the row the parameter is bound to
+		 * @param columnIndex
+		 *            the index of the column the parameter is bound to
+		 */
+		public Builder appendParameter(int rowIndex, int columnIndex) {
+			if (this.parameterCount == this.rowIndexes.length) {
+				this.rowIndexes = Arrays.copyOf(this.rowIndexes, this.parameterCount * 2);
+				this.columnIndexes = Arrays.copyOf(this.columnIndexes, this.parameterCount * 2);
+			}
+			this.rowIndexes[this.parameterCount] = rowIndex;
+			this.columnIndexes[this.parameterCount] = columnIndex;
+			this.parameterCount++;
+			this.sql.append("?");
+			return this;
+		}
+
+		/**
+		 * Build the statement
+		 */
+		public BulkUpdateStatement build() {
+			return new BulkUpdateStatement(this.sql.toString(), Arrays.copyOf(this.rowIndexes, this.parameterCount),
+					Arrays.copyOf(this.columnIndexes, this.parameterCount));
+		}
+	}
+
+}
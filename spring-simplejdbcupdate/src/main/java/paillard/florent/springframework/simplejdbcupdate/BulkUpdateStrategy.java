@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+/**
+ * The ways a bulk update of {@link SimpleJdbcUpdate} sends the rows to the
+ * database, both rendered by its {@link BulkUpdateDialect}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdateOperations#executeBulk(java.util.List, BulkUpdateStrategy)
+ */
+public enum BulkUpdateStrategy {
+
+	/**
+	 * Update the rows with multi-row statements, each of them holding as many
+	 * rows as the dialect allows.
+	 */
+	MULTI_ROW_STATEMENT,
+
+	/**
+	 * Load the rows into a session temporary table with a batch insert, then
+	 * update the table with a single set-based statement joining the staging
+	 * table and drop it. Suited for very large numbers of rows, if the dialect
+	 * supports it.
+	 */
+	STAGING_TABLE
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * {@link BulkUpdateDialect} rendering a standard SQL statement selecting the
+ * new value of each column with a <code>CASE</code> expression:
+ * 
+ * <pre class="code">
+ * UPDATE t SET c = CASE k WHEN ? THEN ? WHEN ? THEN ? ELSE c END WHERE k IN (?, ?)
+ * </pre>
+ * 
+ * Rows identified by several columns use searched <code>CASE</code>
+ * expressions and a disjunction of conditions in the 'where' clause. This
+ * form works with most databases, including those without any join update
+ * syntax.
+ * 
+ * <p>
+ * Staged bulk updates select the new values from the staging table with
+ * correlated subqueries, but need a subclass declaring the staging table, such
+ * as {@link HsqlBulkUpdateDialect}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class CaseBulkUpdateDialect extends AbstractBulkUpdateDialect {
+
+	@Override
+	protected int getParameterCountPerRow(int updatingColumnCount, int restrictingColumnCount) {
+		return updatingColumnCount * (restrictingColumnCount + 1) + restrictingColumnCount;
+	}
+
+	public BulkUpdateStatement createBulkUpdateStatement(String tableName, List<String> updatingColumns, List<String> restrictingColumns,
+			int rowCount) {
+		int updatingColumnCount = updatingColumns.size();
+		boolean singleKey = (restrictingColumns.size() == 1);
+		BulkUpdateStatement.Builder statement = new BulkUpdateStatement.Builder();
+		statement.append("UPDATE ").append(tableName).append(" SET ");
+		for (int column = 0; column < updatingColumnCount; column++) {
+			if (column > 0) {
+				statement.append(", ");
+			}
+			statement.append(updatingColumns.get(column)).append(" = CASE");
+			if (singleKey) {
+				statement.append(" ").append(restrictingColumns.get(0));
+			}
+			for (int row = 0; row < rowCount; row++) {
+				statement.append(" WHEN ");
+				if (singleKey) {
+					statement.appendParameter(row, updatingColumnCount);
+				}
+				else {
+					appendRowCondition(statement, restrictingColumns, updatingColumnCount, row);
+				}
+				statement.append(" THEN ").appendParameter(row, column);
+			}
+			statement.append(" ELSE ").append(updatingColumns.get(column)).append(" END");
+		}
+		statement.append(" WHERE ");
+		if (singleKey) {
+			statement.append(restrictingColumns.get(0)).append(" IN (");
+			for (int row = 0; row < rowCount; row++) {
+				if (row > 0) {
+					statement.append(", ");
+				}
+				statement.appendParameter(row, updatingColumnCount);
+			}
+			statement.append(")");
+		}
+		else {
+			for (int row = 0; row < rowCount; row++) {
+				if (row > 0) {
+					statement.append(" OR ");
+				}
+				statement.append("(");
+				appendRowCondition(statement, restrictingColumns, updatingColumnCount, row);
+				statement.append(")");
+			}
+		}
+		return statement.build();
+	}
+
+	public String createStagedUpdateString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		int updatingColumnCount = updatingColumns.size();
+		StringBuilder updateStatement = new StringBuilder();
+		updateStatement.append("UPDATE ").append(tableName).append(" ").append(TABLE_ALIAS).append(" SET ");
+		for (int column = 0; column < updatingColumnCount; column++) {
+			if (column > 0) {
+				updateStatement.append(", ");
+			}
+			updateStatement.append(updatingColumns.get(column)).append(" = (SELECT ").append(JOINED_ROWS_ALIAS).append(".")
+					.append(getValueColumnName(column, updatingColumnCount));
+			appendStagedRowQuery(updateStatement, stagingTableName, restrictingColumns, updatingColumnCount);
+			updateStatement.append(")");
+		}
+		updateStatement.append(" WHERE EXISTS (SELECT 1");
+		appendStagedRowQuery(updateStatement, stagingTableName, restrictingColumns, updatingColumnCount);
+		updateStatement.append(")");
+		return updateStatement.toString();
+	}
+
+	/**
+	 * Append the 'from' and 'where' clauses of the subquery selecting the
+	 * staged row of the updated row
+	 */
+	private void appendStagedRowQuery(StringBuilder updateStatement, String stagingTableName, List<String> restrictingColumns,
+			int updatingColumnCount) {
+		updateStatement.append(" FROM ").append(getQualifiedStagingTableName(stagingTableName)).append(" ").append(JOINED_ROWS_ALIAS)
+				.append(" WHERE ");
+		for (int column = 0; column < restrictingColumns.size(); column++) {
+			if (column > 0) {
+				updateStatement.append(" AND ");
+			}
+			updateStatement.append(JOINED_ROWS_ALIAS).append(".").append(getValueColumnName(updatingColumnCount + column, updatingColumnCount))
+					.append(" = ").append(TABLE_ALIAS).append(".").append(restrictingColumns.get(column));
+		}
+	}
+
+	private void appendRowCondition(BulkUpdateStatement.Builder statement, List<String> restrictingColumns, int updatingColumnCount,
+			int row) {
+		for (int column = 0; column < restrictingColumns.size(); column++) {
+			if (column > 0) {
+				statement.append(" AND ");
+			}
+			statement.append(restrictingColumns.get(column)).append(" = ").appendParameter(row, updatingColumnCount + column);
+		}
+	}
+
+}
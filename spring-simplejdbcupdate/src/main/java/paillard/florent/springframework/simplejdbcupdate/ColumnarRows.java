@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.util.Assert;
+
+/**
+ * The values of the rows of a batch update held column by column, one array
+ * per column named after the table column. Primitive arrays are bound with
+ * {@link PreparedStatement#setLong(int, long)},
+ * {@link PreparedStatement#setInt(int, int)} and
+ * {@link PreparedStatement#setDouble(int, double)}, so that numeric updates of
+ * millions of rows neither box their values nor create an object per row.
+ * Object arrays are bound according to the SQL type of their column.
+ * 
+ * <p>
+ * The configuration methods return the current instance to provide the
+ * ability to string multiple ones together in a "fluid" interface style:
+ * 
+ * <pre class="code">
+ * ColumnarRows.of(ids.length).withColumn("id", ids).withColumn("price", prices)
+ * </pre>
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdateOperations#executeBatch(ColumnarRows, int)
+ */
+public class ColumnarRows {
+
+	private final int rowCount;
+
+	/** Arrays of values by case-insensitive column name */
+	private final Map<String, Object> columns = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+
+	private ColumnarRows(int rowCount) {
+		Assert.isTrue(rowCount >= 0, "Row count must not be negative");
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * Hold the given number of rows, each column providing as many values.
+	 * 
+	 * @param rowCount
+	 *            the number of rows
+	 */
+	public static ColumnarRows of(int rowCount) {
+		return new ColumnarRows(rowCount);
+	}
+
+	/**
+	 * Provide the values of the given column, one per row.
+	 */
+	public ColumnarRows withColumn(String columnName, long[] values) {
+		return addColumn(columnName, values, (values != null ? values.length : -1));
+	}
+
+	/**
+	 * Provide the values of the given column, one per row.
+	 */
+	public ColumnarRows withColumn(String columnName, int[] values) {
+		return addColumn(columnName, values, (values != null ? values.length : -1));
+	}
+
+	/**
+	 * Provide the values of the given column, one per row.
+	 */
+	public ColumnarRows withColumn(String columnName, double[] values) {
+		return addColumn(columnName, values, (values != null ? values.length : -1));
+	}
+
+	/**
+	 * Provide the values of the given column, one per row, bound according to
+	 * the SQL type of the column.
+	 */
+	public ColumnarRows withColumn(String columnName, Object[] values) {
+		return addColumn(columnName, values, (values != null ? values.length : -1));
+	}
+
+	private ColumnarRows addColumn(String columnName, Object values, int length) {
+		Assert.hasText(columnName, "Column name must not be empty");
+		Assert.notNull(values, "Values must not be null");
+		if (length != this.rowCount) {
+			throw new InvalidDataAccessApiUsageException("Column [" + columnName + "] has " + length + " values instead of "
+					+ this.rowCount);
+		}
+		if (this.columns.containsKey(columnName)) {
+			throw new InvalidDataAccessApiUsageException("Column [" + columnName + "] is already provided");
+		}
+		this.columns.put(columnName, values);
+		return this;
+	}
+
+	/**
+	 * Get the number of rows
+	 */
+	public int getRowCount() {
+		return this.rowCount;
+	}
+
+	/**
+	 * Get the names of the provided columns
+	 */
+	public Set<String> getColumnNames() {
+		return this.columns.keySet();
+	}
+
+	/**
+	 * Get the array of values of the given column, matched
+	 * case-insensitively, or null if it isn't provided
+	 */
+	Object getColumn(String columnName) {
+		return this.columns.get(columnName);
+	}
+
+	/**
+	 * Set the value of the given row of the given column array as the
+	 * parameter at the given index.
+	 */
+	static void setValue(PreparedStatement preparedStatement, int parameterIndex, Object column, int row, int sqlType)
+			throws SQLException {
+		if (column instanceof long[]) {
+			preparedStatement.setLong(parameterIndex, ((long[]) column)[row]);
+		}
+		else if (column instanceof int[]) {
+			preparedStatement.setInt(parameterIndex, ((int[]) column)[row]);
+		}
+		else if (column instanceof double[]) {
+			preparedStatement.setDouble(parameterIndex, ((double[]) column)[row]);
+		}
+		else {
+			StatementCreatorUtils.setParameterValue(preparedStatement, parameterIndex, sqlType, ((Object[]) column)[row]);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of the compilation of the updates of a
+ * {@link SimpleJdbcUpdateRegistry}: the time spent compiling each update and
+ * the failures, by registered name.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdateRegistry#compileAll()
+ */
+public final class CompileReport {
+
+	private final Map<String, Long> compileNanos;
+
+	private final Map<String, RuntimeException> failures;
+
+	private final long elapsedNanos;
+
+	CompileReport(Map<String, Long> compileNanos, Map<String, RuntimeException> failures, long elapsedNanos) {
+		this.compileNanos = Collections.unmodifiableMap(compileNanos);
+		this.failures = Collections.unmodifiableMap(failures);
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * Get the time spent compiling, and validating if enabled, each update
+	 * which succeeded, in nanoseconds, by registered name
+	 */
+	public Map<String, Long> getCompileNanos() {
+		return this.compileNanos;
+	}
+
+	/**
+	 * Get the exceptions of the updates which failed, by registered name
+	 */
+	public Map<String, RuntimeException> getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * Get the total time spent compiling all the updates, in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/**
+	 * Did all the updates compile?
+	 */
+	public boolean isSuccessful() {
+		return this.failures.isEmpty();
+	}
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.ObjectUtils;
+
+/**
+ * The outcome of the compilation of an {@link AbstractJdbcUpdate}: the update
+ * statement, the types of its parameters, the plan binding the provided values
+ * to them and the statements derived from it. Instances are immutable, apart
+ * from the cache of derived statements, and published as a whole so that an
+ * execution only ever uses the statement of a single compilation, even when
+ * the update is recompiled meanwhile.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+final class CompiledUpdate {
+
+	private final List<String> updatingColumns;
+
+	private final String updateString;
+
+	private final int[] columnTypes;
+
+	private final ParameterBindingPlan bindingPlan;
+
+	private final UpdateShape updateShape;
+
+	private final int inListParameterIndex;
+
+	/** Statements of dynamic and IN list updates by shape */
+	private final ConcurrentMap<ShapeKey, CachedShape> updateShapes = new ConcurrentHashMap<ShapeKey, CachedShape>();
+
+	/** Clock ordering the accesses to the cached statements */
+	private final AtomicLong accessClock = new AtomicLong();
+
+	private final int maxCachedUpdateShapes;
+
+	/** Plans binding the properties of beans to the parameters, by class */
+	private final ConcurrentMap<Class<?>, BeanBindingPlan> beanBindingPlans = new ConcurrentHashMap<Class<?>, BeanBindingPlan>();
+
+	/**
+	 * Create a compiled update.
+	 * 
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param whereColumns
+	 *            the columns of the 'where' clause, version column included
+	 * @param updateString
+	 *            the update statement using all the 'set' columns
+	 * @param columnTypes
+	 *            the SQL types of the 'set' and 'where' columns
+	 * @param inListParameterIndex
+	 *            the position of the IN restricting column among the
+	 *            parameters, or -1
+	 * @param maxCachedUpdateShapes
+	 *            the maximum number of cached statements of dynamic and IN
+	 *            list updates
+	 */
+	CompiledUpdate(List<String> updatingColumns, List<String> whereColumns, String updateString, int[] columnTypes,
+			int inListParameterIndex, int maxCachedUpdateShapes) {
+		this.updatingColumns = Collections.unmodifiableList(updatingColumns);
+		this.updateString = updateString;
+		this.columnTypes = columnTypes;
+		this.bindingPlan = new ParameterBindingPlan(updatingColumns, whereColumns);
+		this.updateShape = new UpdateShape(updateString, columnTypes, null);
+		this.inListParameterIndex = inListParameterIndex;
+		this.maxCachedUpdateShapes = maxCachedUpdateShapes;
+	}
+
+	/**
+	 * Get the columns of the 'set' clause
+	 */
+	List<String> getUpdatingColumns() {
+		return this.updatingColumns;
+	}
+
+	/**
+	 * Get the update statement using all the 'set' columns
+	 */
+	String getUpdateString() {
+		return this.updateString;
+	}
+
+	/**
+	 * Get the SQL types of the 'set' and 'where' columns
+	 */
+	int[] getColumnTypes() {
+		return this.columnTypes;
+	}
+
+	/**
+	 * Get the plan binding the provided values to the statement parameters
+	 */
+	ParameterBindingPlan getBindingPlan() {
+		return this.bindingPlan;
+	}
+
+	/**
+	 * Get the statement updating all the 'set' columns
+	 */
+	UpdateShape getUpdateShape() {
+		return this.updateShape;
+	}
+
+	/**
+	 * Get the plan binding the properties of the beans of the given class to
+	 * the parameters, resolving them on first use of the class
+	 */
+	BeanBindingPlan getBeanBindingPlan(Class<?> beanClass) {
+		BeanBindingPlan beanBindingPlan = this.beanBindingPlans.get(beanClass);
+		if (beanBindingPlan == null) {
+			beanBindingPlan = new BeanBindingPlan(beanClass, this.bindingPlan);
+			BeanBindingPlan existingPlan = this.beanBindingPlans.putIfAbsent(beanClass, beanBindingPlan);
+			if (existingPlan != null) {
+				beanBindingPlan = existingPlan;
+			}
+		}
+		return beanBindingPlan;
+	}
+
+	/**
+	 * Get the position of the IN restricting column among the parameters, or
+	 * -1 if there is none
+	 */
+	int getInListParameterIndex() {
+		return this.inListParameterIndex;
+	}
+
+	/**
+	 * Get the cached statement updating the given 'set' columns with the given
+	 * number of parameters in the IN list, or null if it's not cached
+	 */
+	UpdateShape getCachedUpdateShape(BitSet updatingColumns, int inListSize) {
+		CachedShape cachedShape = this.updateShapes.get(new ShapeKey(updatingColumns, inListSize));
+		if (cachedShape == null) {
+			return null;
+		}
+		cachedShape.lastAccess = this.accessClock.incrementAndGet();
+		return cachedShape.shape;
+	}
+
+	/**
+	 * Cache the statement updating the given 'set' columns with the given
+	 * number of parameters in the IN list, unless another thread did first.
+	 * The least recently used statements are evicted once there are more than
+	 * the maximum; concurrent callers may briefly exceed it. The given columns
+	 * are copied, so the caller may keep changing them.
+	 * 
+	 * @return the cached statement
+	 */
+	UpdateShape cacheUpdateShape(BitSet updatingColumns, int inListSize, UpdateShape shape) {
+		CachedShape cachedShape = new CachedShape(shape, this.accessClock.incrementAndGet());
+		ShapeKey key = new ShapeKey((updatingColumns != null ? (BitSet) updatingColumns.clone() : null), inListSize);
+		CachedShape existingShape = this.updateShapes.putIfAbsent(key, cachedShape);
+		if (existingShape != null) {
+			existingShape.lastAccess = this.accessClock.incrementAndGet();
+			return existingShape.shape;
+		}
+		// one attempt per extra statement: entries evicted or touched by concurrent
+		// callers must not keep this thread looping
+		for (int attempts = this.updateShapes.size() - this.maxCachedUpdateShapes; attempts > 0
+				&& this.updateShapes.size() > this.maxCachedUpdateShapes; attempts--) {
+			Map.Entry<ShapeKey, CachedShape> eldest = null;
+			for (Map.Entry<ShapeKey, CachedShape> entry : this.updateShapes.entrySet()) {
+				if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess) {
+					eldest = entry;
+				}
+			}
+			if (eldest == null) {
+				break;
+			}
+			this.updateShapes.remove(eldest.getKey(), eldest.getValue());
+		}
+		return shape;
+	}
+
+	/**
+	 * A cached statement and the time of its last access
+	 */
+	private static final class CachedShape {
+
+		private final UpdateShape shape;
+
+		private volatile long lastAccess;
+
+		private CachedShape(UpdateShape shape, long lastAccess) {
+			this.shape = shape;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	/**
+	 * Key of a cached statement: the 'set' columns it updates and the number
+	 * of parameters of its IN list
+	 */
+	private static final class ShapeKey {
+
+		private final BitSet updatingColumns;
+
+		private final int inListSize;
+
+		private ShapeKey(BitSet updatingColumns, int inListSize) {
+			this.updatingColumns = updatingColumns;
+			this.inListSize = inListSize;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof ShapeKey)) {
+				return false;
+			}
+			ShapeKey otherKey = (ShapeKey) other;
+			return (this.inListSize == otherKey.inListSize && ObjectUtils.nullSafeEquals(this.updatingColumns,
+					otherKey.updatingColumns));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * ObjectUtils.nullSafeHashCode(this.updatingColumns) + this.inListSize;
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.ParameterDisposer;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Creator of the compiled update statement setting the provided values
+ * straight as its parameters, through the precomputed positions of a
+ * {@link ParameterBindingPlan}, so that executing an update doesn't collect
+ * the values into intermediate lists or arrays.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+final class DirectBindingStatementCreator implements PreparedStatementCreator, SqlProvider, ParameterDisposer {
+
+	private final ParameterBindingPlan bindingPlan;
+
+	private final UpdateShape shape;
+
+	private final Map<String, ?> updatingValueMap;
+
+	private final Map<String, ?> restrictingValueMap;
+
+	private final SqlParameterSource updatingValueSource;
+
+	private final SqlParameterSource restrictingValueSource;
+
+	private List<Object> disposableValues;
+
+	DirectBindingStatementCreator(ParameterBindingPlan bindingPlan, UpdateShape shape, Map<String, ?> updatingValues,
+			Map<String, ?> restrictingValues) {
+		this.bindingPlan = bindingPlan;
+		this.shape = shape;
+		this.updatingValueMap = updatingValues;
+		this.restrictingValueMap = restrictingValues;
+		this.updatingValueSource = null;
+		this.restrictingValueSource = null;
+	}
+
+	DirectBindingStatementCreator(ParameterBindingPlan bindingPlan, UpdateShape shape, SqlParameterSource updatingValues,
+			SqlParameterSource restrictingValues) {
+		this.bindingPlan = bindingPlan;
+		this.shape = shape;
+		this.updatingValueMap = null;
+		this.restrictingValueMap = null;
+		this.updatingValueSource = updatingValues;
+		this.restrictingValueSource = restrictingValues;
+	}
+
+	public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+		PreparedStatement preparedStatement = con.prepareStatement(this.shape.getUpdateString());
+		try {
+			if (this.updatingValueSource != null) {
+				this.disposableValues = this.bindingPlan.setValues(preparedStatement, this.updatingValueSource,
+						this.restrictingValueSource, this.shape.getColumnTypes());
+			}
+			else {
+				this.disposableValues = this.bindingPlan.setValues(preparedStatement, this.updatingValueMap,
+						this.restrictingValueMap, this.shape.getColumnTypes());
+			}
+		}
+		catch (SQLException ex) {
+			JdbcUtils.closeStatement(preparedStatement);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			JdbcUtils.closeStatement(preparedStatement);
+			throw ex;
+		}
+		return preparedStatement;
+	}
+
+	public String getSql() {
+		return this.shape.getUpdateString();
+	}
+
+	/**
+	 * Get the values of the parameters, collected for logging purposes
+	 */
+	List<Object> getParameterValues() {
+		if (this.updatingValueSource != null) {
+			return Arrays.asList(this.bindingPlan.bind(this.updatingValueSource, this.restrictingValueSource));
+		}
+		return Arrays.asList(this.bindingPlan.bind(this.updatingValueMap, this.restrictingValueMap));
+	}
+
+	public void cleanupParameters() {
+		if (this.disposableValues != null) {
+			StatementCreatorUtils.cleanupParameters(this.disposableValues);
+		}
+	}
+
+}
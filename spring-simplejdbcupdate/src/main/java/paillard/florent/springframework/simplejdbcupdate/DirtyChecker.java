@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.BitSet;
+import java.util.Date;
+
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Compares the values provided for an update with the values previously
+ * loaded for the same row, to find out the columns which actually changed.
+ * 
+ * <p>
+ * Values are compared according to the SQL type of their column: numbers by
+ * value whatever their class and scale, dates and timestamps by instant
+ * including nanoseconds, and arrays such as <code>byte[]</code> by content.
+ * Values wrapped in a {@link SqlParameterValue} are compared by their wrapped
+ * value.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+final class DirtyChecker {
+
+	private DirtyChecker() {
+	}
+
+	/**
+	 * Find the 'set' columns whose provided value differs from the loaded one.
+	 * 
+	 * @param values
+	 *            the bound values of the update
+	 * @param providedColumns
+	 *            the indexes of the 'set' columns a value is provided for
+	 * @param loadedValues
+	 *            the bound values of the loaded row
+	 * @param loadedColumns
+	 *            the indexes of the 'set' columns a value was loaded for
+	 * @param columnTypes
+	 *            the SQL types of the parameters of the update
+	 * @return the indexes of the provided columns which changed, or were not
+	 *         loaded
+	 */
+	static BitSet findChangedColumns(Object[] values, BitSet providedColumns, Object[] loadedValues, BitSet loadedColumns,
+			int[] columnTypes) {
+		BitSet changedColumns = new BitSet();
+		for (int i = providedColumns.nextSetBit(0); i >= 0; i = providedColumns.nextSetBit(i + 1)) {
+			if (!loadedColumns.get(i) || !isSameValue(columnTypes[i], values[i], loadedValues[i])) {
+				changedColumns.set(i);
+			}
+		}
+		return changedColumns;
+	}
+
+	/**
+	 * Are the two values of a column of the given SQL type the same?
+	 */
+	static boolean isSameValue(int sqlType, Object value1, Object value2) {
+		if (value1 instanceof SqlParameterValue) {
+			sqlType = resolveSqlType(sqlType, (SqlParameterValue) value1);
+			value1 = ((SqlParameterValue) value1).getValue();
+		}
+		if (value2 instanceof SqlParameterValue) {
+			sqlType = resolveSqlType(sqlType, (SqlParameterValue) value2);
+			value2 = ((SqlParameterValue) value2).getValue();
+		}
+		if (value1 == value2) {
+			return true;
+		}
+		if (value1 == null || value2 == null) {
+			return false;
+		}
+		if (value1 instanceof Number && value2 instanceof Number && (isNumeric(sqlType) || sqlType == SqlTypeValue.TYPE_UNKNOWN)) {
+			BigDecimal decimal1 = toBigDecimal((Number) value1);
+			BigDecimal decimal2 = toBigDecimal((Number) value2);
+			if (decimal1 != null && decimal2 != null) {
+				return (decimal1.compareTo(decimal2) == 0);
+			}
+		}
+		if (value1 instanceof Date && value2 instanceof Date) {
+			return toTimestamp((Date) value1).equals(toTimestamp((Date) value2));
+		}
+		return ObjectUtils.nullSafeEquals(value1, value2);
+	}
+
+	/**
+	 * Get the SQL type of the column, or the one declared by the wrapped value
+	 * if the column type is unknown
+	 */
+	private static int resolveSqlType(int sqlType, SqlParameterValue value) {
+		return (sqlType == SqlTypeValue.TYPE_UNKNOWN ? value.getSqlType() : sqlType);
+	}
+
+	private static boolean isNumeric(int sqlType) {
+		switch (sqlType) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Convert a number to a BigDecimal, or return null if it has no decimal
+	 * representation, like NaN
+	 */
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		if (number instanceof BigInteger) {
+			return new BigDecimal((BigInteger) number);
+		}
+		if (number instanceof Double || number instanceof Float) {
+			double doubleValue = number.doubleValue();
+			return (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue) ? null : BigDecimal.valueOf(doubleValue));
+		}
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+			return BigDecimal.valueOf(number.longValue());
+		}
+		try {
+			return new BigDecimal(number.toString());
+		}
+		catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	private static Timestamp toTimestamp(Date date) {
+		return (date instanceof Timestamp ? (Timestamp) date : new Timestamp(date.getTime()));
+	}
+
+}
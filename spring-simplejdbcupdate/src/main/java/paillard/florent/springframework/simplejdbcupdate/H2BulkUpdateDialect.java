@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * {@link ValuesJoinBulkUpdateDialect} for H2 2.x, joining the rows with a
+ * standard <code>MERGE</code> statement:
+ * 
+ * <pre class="code">
+ * MERGE INTO t USING (VALUES (?, ?), (?, ?)) AS v (u0, r0) ON (t.k = v.r0) WHEN MATCHED THEN UPDATE SET c = v.u0
+ * </pre>
+ * 
+ * Staged bulk updates are not supported, as H2 commits the current
+ * transaction when the staging table is dropped.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class H2BulkUpdateDialect extends ValuesJoinBulkUpdateDialect {
+
+	@Override
+	protected void appendJoinUpdate(BulkUpdateStatement.Builder statement, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns, String stagingTableName, int rowCount) {
+		statement.append("MERGE INTO ").append(tableName).append(" ").append(TABLE_ALIAS).append(" USING ");
+		appendJoinedRows(statement, updatingColumns, restrictingColumns, stagingTableName, rowCount);
+		statement.append(" ON (");
+		appendJoinCondition(statement, updatingColumns, restrictingColumns);
+		statement.append(") WHEN MATCHED THEN UPDATE SET ");
+		appendAssignments(statement, updatingColumns);
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * {@link CaseBulkUpdateDialect} for HSQLDB, which supports staged bulk updates:
+ * the staging table is declared as a local temporary table of the
+ * <code>MODULE</code> schema, keeping its rows until it is dropped.
+ * 
+ * <p>
+ * HSQLDB can't infer the types of the parameters of a <code>VALUES</code>
+ * list, so rows are updated with <code>CASE</code> expressions rather than by
+ * joining such a list.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class HsqlBulkUpdateDialect extends CaseBulkUpdateDialect {
+
+	@Override
+	public String createStagingTableString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		return "DECLARE LOCAL TEMPORARY TABLE " + getQualifiedStagingTableName(stagingTableName) + " AS ("
+				+ createStagingSelectString(tableName, updatingColumns, restrictingColumns) + ") WITH NO DATA ON COMMIT PRESERVE ROWS";
+	}
+
+	/**
+	 * Local temporary tables belong to the <code>MODULE</code> schema.
+	 */
+	@Override
+	protected String getQualifiedStagingTableName(String stagingTableName) {
+		return "MODULE." + stagingTableName;
+	}
+
+}
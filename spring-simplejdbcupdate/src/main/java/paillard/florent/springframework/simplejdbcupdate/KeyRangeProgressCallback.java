@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+/**
+ * Callback interface used to report the progress of a key range update, see
+ * {@link SimpleJdbcUpdateOperations#executeInKeyRanges(java.util.Map, java.util.Map, KeyRangeSlicing)}.
+ * 
+ * <p>
+ * The checkpoint passed to each call can be saved, so that a failed or
+ * interrupted update can be resumed from it with
+ * {@link KeyRangeSlicing#resumingFrom(long)}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public interface KeyRangeProgressCallback {
+
+	/**
+	 * Called after the update of each slice of the key range has been
+	 * committed.
+	 * 
+	 * @param checkpoint
+	 *            the lower bound of the next slice: all the rows with a lower
+	 *            key have been updated. After the last slice, the highest key
+	 *            plus one, unless the highest key is
+	 *            {@link Long#MAX_VALUE}.
+	 * @param rowsAffected
+	 *            the total number of rows affected so far, as reported by the
+	 *            JDBC driver
+	 */
+	void sliceCommitted(long checkpoint, long rowsAffected);
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import org.springframework.util.Assert;
+
+/**
+ * Describes how a key range update of {@link SimpleJdbcUpdate} walks the
+ * range of a numeric key column: the update is executed once per slice of
+ * keys, with an additional range predicate on the key column, each slice
+ * being committed in its own transaction. This keeps the number of rows
+ * locked at a time and the size of each transaction bounded.
+ * 
+ * <p>
+ * Many of the configuration methods return the current instance to provide
+ * the ability to string multiple ones together in a "fluid" interface style:
+ * 
+ * <pre class="code">
+ * KeyRangeSlicing.on("id", 10000).withPause(100).resumingFrom(checkpoint)
+ * </pre>
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdateOperations#executeInKeyRanges(java.util.Map, java.util.Map, KeyRangeSlicing)
+ */
+public class KeyRangeSlicing {
+
+	private final String keyColumn;
+
+	private final long sliceSize;
+
+	private long pause = 0;
+
+	private Long checkpoint;
+
+	private KeyRangeProgressCallback progressCallback;
+
+	private KeyRangeSlicing(String keyColumn, long sliceSize) {
+		Assert.hasText(keyColumn, "Key column must not be empty");
+		Assert.isTrue(sliceSize > 0, "Slice size must be greater than 0");
+		this.keyColumn = keyColumn;
+		this.sliceSize = sliceSize;
+	}
+
+	/**
+	 * Slice the range of the given key column.
+	 * 
+	 * @param keyColumn
+	 *            the numeric column to slice, usually the indexed primary key
+	 * @param sliceSize
+	 *            the number of key values of each slice
+	 */
+	public static KeyRangeSlicing on(String keyColumn, long sliceSize) {
+		return new KeyRangeSlicing(keyColumn, sliceSize);
+	}
+
+	/**
+	 * Pause after each committed slice, letting concurrent transactions and
+	 * replication catch up.
+	 * 
+	 * @param pause
+	 *            the pause in milliseconds, 0 by default
+	 */
+	public KeyRangeSlicing withPause(long pause) {
+		Assert.isTrue(pause >= 0, "Pause must not be negative");
+		this.pause = pause;
+		return this;
+	}
+
+	/**
+	 * Resume an update from a checkpoint reported to the
+	 * {@link KeyRangeProgressCallback}, rather than from the lowest key.
+	 */
+	public KeyRangeSlicing resumingFrom(long checkpoint) {
+		this.checkpoint = checkpoint;
+		return this;
+	}
+
+	/**
+	 * Report the progress of the update to the given callback after each
+	 * committed slice.
+	 */
+	public KeyRangeSlicing withProgressCallback(KeyRangeProgressCallback progressCallback) {
+		this.progressCallback = progressCallback;
+		return this;
+	}
+
+	/**
+	 * Get the numeric column to slice
+	 */
+	public String getKeyColumn() {
+		return this.keyColumn;
+	}
+
+	/**
+	 * Get the number of key values of each slice
+	 */
+	public long getSliceSize() {
+		return this.sliceSize;
+	}
+
+	/**
+	 * Get the pause after each committed slice, in milliseconds
+	 */
+	public long getPause() {
+		return this.pause;
+	}
+
+	/**
+	 * Get the checkpoint to resume from, null to start from the lowest key
+	 */
+	public Long getCheckpoint() {
+		return this.checkpoint;
+	}
+
+	/**
+	 * Get the callback reporting the progress, may be null
+	 */
+	public KeyRangeProgressCallback getProgressCallback() {
+		return this.progressCallback;
+	}
+
+}
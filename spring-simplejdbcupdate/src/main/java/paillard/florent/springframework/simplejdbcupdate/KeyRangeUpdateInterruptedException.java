@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import org.springframework.core.NestedRuntimeException;
+
+/**
+ * Exception thrown when a key range update of {@link SimpleJdbcUpdate} is
+ * interrupted during the pause between two slices. The slices already
+ * committed stay updated, and the update can be resumed from
+ * {@link #getCheckpoint()} with {@link KeyRangeSlicing#resumingFrom(long)}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+@SuppressWarnings("serial")
+public class KeyRangeUpdateInterruptedException extends NestedRuntimeException {
+
+	private final long checkpoint;
+
+	private final long rowsAffected;
+
+	/**
+	 * Constructor for KeyRangeUpdateInterruptedException.
+	 * 
+	 * @param msg
+	 *            the detail message
+	 * @param cause
+	 *            the interruption
+	 * @param checkpoint
+	 *            the lower bound of the next slice
+	 * @param rowsAffected
+	 *            the number of rows affected by the committed slices
+	 */
+	public KeyRangeUpdateInterruptedException(String msg, InterruptedException cause, long checkpoint, long rowsAffected) {
+		super(msg, cause);
+		this.checkpoint = checkpoint;
+		this.rowsAffected = rowsAffected;
+	}
+
+	/**
+	 * Get the lower bound of the next slice: all the rows with a lower key
+	 * have been updated
+	 */
+	public long getCheckpoint() {
+		return this.checkpoint;
+	}
+
+	/**
+	 * Get the number of rows affected by the committed slices, as reported by
+	 * the JDBC driver
+	 */
+	public long getRowsAffected() {
+		return this.rowsAffected;
+	}
+
+}
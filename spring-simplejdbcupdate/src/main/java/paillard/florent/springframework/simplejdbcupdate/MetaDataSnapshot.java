@@ -0,0 +1,490 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.metadata.TableParameterMetaData;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * {@link TableMetaDataLoader} serving the column meta data of tables from a
+ * snapshot, so that updates compile without querying the database meta data.
+ * The snapshot is captured from a {@link SchemaMetaDataLoader} and written to
+ * a compact text file, typically by a build step through {@link #main}, then
+ * read on startup.
+ * 
+ * <p>
+ * The file holds one line per column with its schema, table, name, SQL type
+ * and nullability, preceded by a header with a CRC32 checksum of these lines,
+ * so that a truncated or edited file is rejected. With drift validation
+ * enabled, the first time the meta data of a table is served it is compared
+ * in the background with the meta data of the database, and differences are
+ * logged and reported by {@link #getDriftedTables()}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class MetaDataSnapshot implements TableMetaDataLoader {
+
+	private static final String HEADER = "#simplejdbcupdate-metadata-snapshot v1 crc32=";
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/** Logger available to subclasses */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Column meta data by schema name and table name */
+	private final Map<String, NavigableMap<String, List<TableParameterMetaData>>> schemas;
+
+	/** Should the served tables be compared with the database meta data? */
+	private volatile boolean driftValidation = false;
+
+	/** Tables whose validation is scheduled or done, as schema.table */
+	private final Set<String> validatedTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/** Tables whose meta data differs from the database, as schema.table */
+	private final Set<String> driftedTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/** Executor validating the served tables in the background */
+	private ExecutorService validationExecutor;
+
+	private MetaDataSnapshot(Map<String, NavigableMap<String, List<TableParameterMetaData>>> schemas) {
+		this.schemas = schemas;
+	}
+
+	/**
+	 * Capture the meta data loaded by the given loader, loading it if needed.
+	 */
+	public static MetaDataSnapshot capture(SchemaMetaDataLoader loader) {
+		Map<String, NavigableMap<String, List<TableParameterMetaData>>> schemas = newSchemaMap();
+		for (Map.Entry<String, Map<String, List<TableParameterMetaData>>> schema : loader.getSchemas().entrySet()) {
+			NavigableMap<String, List<TableParameterMetaData>> tables = newTableMap();
+			tables.putAll(schema.getValue());
+			schemas.put(schema.getKey(), tables);
+		}
+		return new MetaDataSnapshot(schemas);
+	}
+
+	/**
+	 * Read a snapshot from the given resource.
+	 * 
+	 * @throws IOException
+	 *             if the resource can't be read, or isn't a valid snapshot
+	 */
+	public static MetaDataSnapshot read(Resource resource) throws IOException {
+		Reader reader = new InputStreamReader(resource.getInputStream(), CHARSET);
+		try {
+			return read(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read a snapshot from the given reader, which is not closed.
+	 * 
+	 * @throws IOException
+	 *             if the reader fails, or doesn't provide a valid snapshot
+	 */
+	public static MetaDataSnapshot read(Reader reader) throws IOException {
+		BufferedReader lines = new BufferedReader(reader);
+		String header = lines.readLine();
+		if (header == null || !header.startsWith(HEADER)) {
+			throw new IOException("Not a meta data snapshot: missing header");
+		}
+		Map<String, NavigableMap<String, List<TableParameterMetaData>>> schemas = newSchemaMap();
+		CRC32 checksum = new CRC32();
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			checksum.update((line + "\n").getBytes(CHARSET));
+			String[] fields = line.split("\t", -1);
+			if (fields.length != 5) {
+				throw new IOException("Invalid meta data snapshot line: " + line);
+			}
+			NavigableMap<String, List<TableParameterMetaData>> tables = schemas.get(fields[0]);
+			if (tables == null) {
+				tables = newTableMap();
+				schemas.put(fields[0], tables);
+			}
+			List<TableParameterMetaData> columns = tables.get(fields[1]);
+			if (columns == null) {
+				columns = new ArrayList<TableParameterMetaData>();
+				tables.put(fields[1], columns);
+			}
+			try {
+				columns.add(new TableParameterMetaData(fields[2], Integer.parseInt(fields[3]), "1".equals(fields[4])));
+			}
+			catch (NumberFormatException ex) {
+				throw new IOException("Invalid SQL type in meta data snapshot line: " + line);
+			}
+		}
+		if (!Long.toHexString(checksum.getValue()).equals(header.substring(HEADER.length()))) {
+			throw new IOException("Meta data snapshot checksum mismatch: the file is truncated or was modified");
+		}
+		return new MetaDataSnapshot(schemas);
+	}
+
+	/**
+	 * Write this snapshot to the given file.
+	 */
+	public void write(File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), CHARSET);
+		try {
+			write(writer);
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Write this snapshot to the given writer, which is flushed but not
+	 * closed.
+	 */
+	public void write(Writer writer) throws IOException {
+		StringBuilder body = new StringBuilder();
+		for (Map.Entry<String, NavigableMap<String, List<TableParameterMetaData>>> schema : this.schemas.entrySet()) {
+			for (Map.Entry<String, List<TableParameterMetaData>> table : schema.getValue().entrySet()) {
+				for (TableParameterMetaData column : table.getValue()) {
+					body.append(schema.getKey()).append('\t').append(table.getKey()).append('\t').append(column.getParameterName())
+							.append('\t').append(column.getSqlType()).append('\t').append(column.isNullable() ? '1' : '0')
+							.append('\n');
+				}
+			}
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(body.toString().getBytes(CHARSET));
+		writer.write(HEADER + Long.toHexString(checksum.getValue()) + "\n");
+		writer.write(body.toString());
+		writer.flush();
+	}
+
+	/**
+	 * Set whether the meta data of each table should be compared with the
+	 * meta data of the database in the background, the first time it is
+	 * served. Default is false.
+	 */
+	public void setDriftValidation(boolean driftValidation) {
+		this.driftValidation = driftValidation;
+	}
+
+	/**
+	 * Are the served tables compared with the meta data of the database?
+	 */
+	public boolean isDriftValidation() {
+		return this.driftValidation;
+	}
+
+	/**
+	 * Get the tables found to differ from the database so far, as
+	 * schema.table
+	 */
+	public Set<String> getDriftedTables() {
+		return Collections.unmodifiableSet(new TreeSet<String>(this.driftedTables));
+	}
+
+	/**
+	 * Get the number of tables of this snapshot
+	 */
+	public int getTableCount() {
+		int tableCount = 0;
+		for (NavigableMap<String, List<TableParameterMetaData>> tables : this.schemas.values()) {
+			tableCount += tables.size();
+		}
+		return tableCount;
+	}
+
+	public List<TableParameterMetaData> getColumnMetaData(final DataSource dataSource, String catalogName, String schemaName,
+			String tableName) {
+		String foundSchemaName = null;
+		String foundTableName = null;
+		List<TableParameterMetaData> columns = null;
+		for (Map.Entry<String, NavigableMap<String, List<TableParameterMetaData>>> schema : this.schemas.entrySet()) {
+			if (schemaName == null || schemaName.equalsIgnoreCase(schema.getKey())) {
+				List<TableParameterMetaData> schemaColumns = schema.getValue().get(tableName);
+				if (schemaColumns != null) {
+					if (columns != null) {
+						return null;
+					}
+					foundSchemaName = schema.getKey();
+					foundTableName = schema.getValue().ceilingKey(tableName);
+					columns = schemaColumns;
+				}
+			}
+		}
+		if (columns != null && this.driftValidation) {
+			scheduleValidation(dataSource, foundSchemaName, foundTableName);
+		}
+		return columns;
+	}
+
+	/**
+	 * Compare the meta data of every table of this snapshot with the meta data
+	 * of the database, in the calling thread.
+	 * 
+	 * @return the tables whose meta data differs, as schema.table
+	 */
+	public Set<String> validate(DataSource dataSource) {
+		Set<String> drifted = new TreeSet<String>();
+		for (Map.Entry<String, NavigableMap<String, List<TableParameterMetaData>>> schema : this.schemas.entrySet()) {
+			for (String tableName : schema.getValue().keySet()) {
+				if (!validate(dataSource, schema.getKey(), tableName)) {
+					drifted.add(toQualifiedName(schema.getKey(), tableName));
+				}
+			}
+		}
+		return drifted;
+	}
+
+	/**
+	 * Stop the background validation, if started.
+	 */
+	public synchronized void shutdown() {
+		if (this.validationExecutor != null) {
+			this.validationExecutor.shutdownNow();
+			this.validationExecutor = null;
+		}
+	}
+
+	private void scheduleValidation(final DataSource dataSource, final String schemaName, final String tableName) {
+		if (!this.validatedTables.add(toQualifiedName(schemaName, tableName))) {
+			return;
+		}
+		getValidationExecutor().execute(new Runnable() {
+
+			public void run() {
+				try {
+					validate(dataSource, schemaName, tableName);
+				}
+				catch (RuntimeException ex) {
+					logger.warn("Could not validate meta data snapshot of table [" + tableName + "]", ex);
+				}
+			}
+		});
+	}
+
+	private synchronized ExecutorService getValidationExecutor() {
+		if (this.validationExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("SimpleJdbcUpdate-snapshot-");
+			threadFactory.setDaemon(true);
+			this.validationExecutor = Executors.newSingleThreadExecutor(threadFactory);
+		}
+		return this.validationExecutor;
+	}
+
+	/**
+	 * Compare the meta data of the given table with the meta data of the
+	 * database, recording it as drifted if it differs.
+	 * 
+	 * @return true if the meta data matches
+	 */
+	private boolean validate(DataSource dataSource, final String schemaName, final String tableName) {
+		List<TableParameterMetaData> expected = this.schemas.get(schemaName).get(tableName);
+		List<TableParameterMetaData> actual;
+		try {
+			actual = loadColumns(dataSource, schemaName, tableName);
+		}
+		catch (MetaDataAccessException ex) {
+			throw new DataAccessResourceFailureException("Error retrieving database meta data", ex);
+		}
+		String difference = findDifference(expected, actual);
+		String qualifiedName = toQualifiedName(schemaName, tableName);
+		if (difference == null) {
+			this.driftedTables.remove(qualifiedName);
+			return true;
+		}
+		this.driftedTables.add(qualifiedName);
+		logger.warn("Meta data snapshot of table [" + qualifiedName + "] differs from the database: " + difference
+				+ " - the snapshot should be generated again");
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<TableParameterMetaData> loadColumns(DataSource dataSource, final String schemaName, final String tableName)
+			throws MetaDataAccessException {
+		return (List<TableParameterMetaData>) JdbcUtils.extractDatabaseMetaData(dataSource, new DatabaseMetaDataCallback() {
+
+			public Object processMetaData(DatabaseMetaData databaseMetaData) throws SQLException {
+				List<TableParameterMetaData> columns = new ArrayList<TableParameterMetaData>();
+				String searchStringEscape = databaseMetaData.getSearchStringEscape();
+				ResultSet resultSet = databaseMetaData.getColumns(null,
+						(schemaName.isEmpty() ? null : escapePattern(schemaName, searchStringEscape)),
+						escapePattern(tableName, searchStringEscape), "%");
+				try {
+					while (resultSet.next()) {
+						columns.add(new TableParameterMetaData(resultSet.getString("COLUMN_NAME"), resultSet.getInt("DATA_TYPE"),
+								resultSet.getInt("NULLABLE") == DatabaseMetaData.columnNullable));
+					}
+				}
+				finally {
+					JdbcUtils.closeResultSet(resultSet);
+				}
+				return columns;
+			}
+		});
+	}
+
+	/**
+	 * Describe the first difference between the expected and the actual
+	 * columns of a table, or return null if they match
+	 */
+	private static String findDifference(List<TableParameterMetaData> expected, List<TableParameterMetaData> actual) {
+		if (actual.isEmpty()) {
+			return "table not found";
+		}
+		Map<String, TableParameterMetaData> actualColumns = new TreeMap<String, TableParameterMetaData>(String.CASE_INSENSITIVE_ORDER);
+		for (TableParameterMetaData column : actual) {
+			actualColumns.put(column.getParameterName(), column);
+		}
+		for (TableParameterMetaData column : expected) {
+			TableParameterMetaData actualColumn = actualColumns.remove(column.getParameterName());
+			if (actualColumn == null) {
+				return "column " + column.getParameterName() + " removed";
+			}
+			if (actualColumn.getSqlType() != column.getSqlType() && !isNumberOverride(column, actualColumn)) {
+				return "type of column " + column.getParameterName() + " changed from " + column.getSqlType() + " to "
+						+ actualColumn.getSqlType();
+			}
+		}
+		if (!actualColumns.isEmpty()) {
+			return "columns " + actualColumns.keySet() + " added";
+		}
+		return null;
+	}
+
+	/**
+	 * Is the expected type the NUMERIC used by {@link SchemaMetaDataLoader}
+	 * for a no-decimal DECIMAL column?
+	 */
+	private static boolean isNumberOverride(TableParameterMetaData expected, TableParameterMetaData actual) {
+		return expected.getSqlType() == Types.NUMERIC && actual.getSqlType() == Types.DECIMAL;
+	}
+
+	/**
+	 * Escape the LIKE wildcards of a name passed as a
+	 * {@link DatabaseMetaData} pattern, so that a "_" in a table name only
+	 * matches itself
+	 */
+	static String escapePattern(String name, String searchStringEscape) {
+		if (searchStringEscape == null || searchStringEscape.isEmpty()) {
+			return name;
+		}
+		StringBuilder pattern = new StringBuilder(name.length() + 8);
+		for (int i = 0; i < name.length(); i++) {
+			if (name.startsWith(searchStringEscape, i)) {
+				pattern.append(searchStringEscape).append(searchStringEscape);
+				i += searchStringEscape.length() - 1;
+				continue;
+			}
+			char c = name.charAt(i);
+			if (c == '_' || c == '%') {
+				pattern.append(searchStringEscape);
+			}
+			pattern.append(c);
+		}
+		return pattern.toString();
+	}
+
+	private static String toQualifiedName(String schemaName, String tableName) {
+		return (schemaName.isEmpty() ? tableName : schemaName + "." + tableName);
+	}
+
+	private static Map<String, NavigableMap<String, List<TableParameterMetaData>>> newSchemaMap() {
+		return new TreeMap<String, NavigableMap<String, List<TableParameterMetaData>>>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	private static NavigableMap<String, List<TableParameterMetaData>> newTableMap() {
+		return new TreeMap<String, List<TableParameterMetaData>>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Capture the meta data of a schema into a snapshot file, for instance
+	 * from a build step.
+	 * 
+	 * @param args
+	 *            the JDBC URL, user name, password, schema name and snapshot
+	 *            file, optionally followed by the names of the tables to keep
+	 */
+	public static void main(String[] args) throws IOException {
+		run(args, System.out);
+	}
+
+	/**
+	 * Capture the meta data of a schema into a snapshot file as
+	 * {@link #main(String[])} does, reporting to the given stream.
+	 * 
+	 * @param args
+	 *            the command line arguments
+	 * @param out
+	 *            the stream to report the written snapshot to
+	 */
+	static void run(String[] args, PrintStream out) throws IOException {
+		Assert.isTrue(args.length >= 5, "Usage: MetaDataSnapshot <url> <username> <password> <schema> <file> [<table>...]");
+		SchemaMetaDataLoader loader = new SchemaMetaDataLoader(new DriverManagerDataSource(args[0], args[1], args[2]));
+		loader.setSchemaName(args[3]);
+		if (args.length > 5) {
+			String[] tableNames = new String[args.length - 5];
+			System.arraycopy(args, 5, tableNames, 0, tableNames.length);
+			loader.setTableNames(tableNames);
+		}
+		MetaDataSnapshot snapshot = capture(loader);
+		snapshot.write(new File(args[4]));
+		out.println("Wrote meta data of " + snapshot.getTableCount() + " tables to " + args[4]);
+	}
+
+}
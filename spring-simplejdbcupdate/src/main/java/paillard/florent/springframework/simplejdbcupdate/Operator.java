@@ -1,7 +1,7 @@
 package paillard.florent.springframework.simplejdbcupdate;
 
 public enum Operator {
-    EQUALS("="), LESS_THAN("<"), GREATER_THAN(">");
+    EQUALS("="), LESS_THAN("<"), GREATER_THAN(">"), IN("IN");
     
     private String op;
 
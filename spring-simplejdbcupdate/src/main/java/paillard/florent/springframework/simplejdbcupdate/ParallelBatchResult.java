@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of a parallel batch update of {@link SimpleJdbcUpdate}: the
+ * number of rows affected by each row and the failures of the partitions
+ * whose transaction was rolled back.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdateOperations#executeBatchInParallel(java.util.List, int)
+ */
+public final class ParallelBatchResult {
+
+	private final int[] updateCounts;
+
+	private final long rowsAffected;
+
+	private final Map<Integer, RuntimeException> failures;
+
+	ParallelBatchResult(int[] updateCounts, long rowsAffected, Map<Integer, RuntimeException> failures) {
+		this.updateCounts = updateCounts;
+		this.rowsAffected = rowsAffected;
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * Get the number of rows affected by each row, in the order of the rows
+	 * passed in. Rows of failed partitions are reported as
+	 * {@link java.sql.Statement#EXECUTE_FAILED}.
+	 */
+	public int[] getUpdateCounts() {
+		return this.updateCounts.clone();
+	}
+
+	/**
+	 * Get the total number of rows affected by the partitions which succeeded,
+	 * rows for which the driver does not report a count not being accounted
+	 */
+	public long getRowsAffected() {
+		return this.rowsAffected;
+	}
+
+	/**
+	 * Get the exceptions of the failed partitions, by partition index
+	 */
+	public Map<Integer, RuntimeException> getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * Did all the partitions succeed?
+	 */
+	public boolean isSuccessful() {
+		return this.failures.isEmpty();
+	}
+
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.jdbc.core.DisposableSqlTypeValue;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Immutable plan binding the values provided for an update to the parameters
+ * of the compiled update statement. The positions of the 'set' and 'where'
+ * columns are computed once, so that binding the values of a call only takes
+ * a single pass over the provided values.
+ * 
+ * <p>
+ * Column names are matched case-insensitively. The names as declared, in
+ * lower case and in upper case are looked up directly; other spellings fall
+ * back to a case-insensitive lookup, only made when some provided names
+ * matched none of these.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+class ParameterBindingPlan {
+
+	/** Value of a column missing from the provided values */
+	private static final Object MISSING = new Object();
+
+	/** Columns of the 'set' clause, in statement order */
+	private final List<String> updatingColumns;
+
+	/** Columns of the 'where' clause, in statement order */
+	private final List<String> restrictingColumns;
+
+	/** Parameter positions of the 'set' columns, by name */
+	private final Map<String, int[]> updatingPositions;
+
+	/** Parameter positions of the 'set' columns, case-insensitively by name */
+	private final Map<String, int[]> caseInsensitiveUpdatingPositions;
+
+	/** Parameter positions of the 'where' columns, by name */
+	private final Map<String, int[]> restrictingPositions;
+
+	/** Parameter positions of the 'where' columns, case-insensitively by name */
+	private final Map<String, int[]> caseInsensitiveRestrictingPositions;
+
+	/** Column names of the parameters, as declared, in lower and in upper case */
+	private final String[][] parameterNames;
+
+	/** Whether the column of each parameter has an earlier parameter in the same clause */
+	private final boolean[] repeatedParameters;
+
+	/** Name variants looked up in a SqlParameterSource for the 'set' columns */
+	private final NameVariants updatingNames;
+
+	/** Name variants looked up in a SqlParameterSource for the 'where' columns */
+	private final NameVariants restrictingNames;
+
+	ParameterBindingPlan(List<String> updatingColumns, Collection<String> restrictingColumns) {
+		this.updatingColumns = Collections.unmodifiableList(new ArrayList<String>(updatingColumns));
+		this.restrictingColumns = Collections.unmodifiableList(new ArrayList<String>(restrictingColumns));
+		this.updatingNames = new NameVariants(this.updatingColumns);
+		this.restrictingNames = new NameVariants(this.restrictingColumns);
+		this.caseInsensitiveUpdatingPositions = createPositions(this.updatingColumns, 0);
+		this.updatingPositions = createPositionVariants(this.caseInsensitiveUpdatingPositions);
+		this.caseInsensitiveRestrictingPositions = createPositions(this.restrictingColumns, this.updatingColumns.size());
+		this.restrictingPositions = createPositionVariants(this.caseInsensitiveRestrictingPositions);
+		this.parameterNames = new String[getParameterCount()][];
+		this.repeatedParameters = new boolean[getParameterCount()];
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			boolean updating = (i < this.updatingColumns.size());
+			String name = (updating ? this.updatingColumns.get(i) : this.restrictingColumns.get(i - this.updatingColumns.size()));
+			this.parameterNames[i] = new String[] { name, name.toLowerCase(), name.toUpperCase() };
+			int[] columnPositions = (updating ? this.caseInsensitiveUpdatingPositions : this.caseInsensitiveRestrictingPositions)
+					.get(name);
+			this.repeatedParameters[i] = (columnPositions[0] != i);
+		}
+	}
+
+	/**
+	 * Get the columns of the 'set' clause, in statement order
+	 */
+	List<String> getUpdatingColumns() {
+		return this.updatingColumns;
+	}
+
+	/**
+	 * Get the columns of the 'where' clause, in statement order
+	 */
+	List<String> getRestrictingColumns() {
+		return this.restrictingColumns;
+	}
+
+	/**
+	 * Get the number of parameters of the update statement
+	 */
+	int getParameterCount() {
+		return this.updatingColumns.size() + this.restrictingColumns.size();
+	}
+
+	/**
+	 * Bind the provided values to the parameters of the update statement.
+	 * Columns without any provided value are bound to null.
+	 * 
+	 * @param updatingValues
+	 *            values of the 'set' columns by column name
+	 * @param restrictingValues
+	 *            values of the 'where' columns by column name
+	 * @return the values in the order of the update statement parameters
+	 */
+	Object[] bind(Map<String, ?> updatingValues, Map<String, ?> restrictingValues) {
+		return bind(updatingValues, restrictingValues, null);
+	}
+
+	/**
+	 * Bind the provided values to the parameters of the update statement,
+	 * recording which 'set' columns a value was provided for.
+	 * 
+	 * @param updatingValues
+	 *            values of the 'set' columns by column name
+	 * @param restrictingValues
+	 *            values of the 'where' columns by column name
+	 * @param providedUpdatingColumns
+	 *            set of the indexes of the 'set' columns a value was provided
+	 *            for, may be null
+	 * @return the values in the order of the update statement parameters
+	 */
+	Object[] bind(Map<String, ?> updatingValues, Map<String, ?> restrictingValues, BitSet providedUpdatingColumns) {
+		Object[] values = new Object[getParameterCount()];
+		bind(updatingValues, this.updatingPositions, this.caseInsensitiveUpdatingPositions, values, providedUpdatingColumns);
+		bind(restrictingValues, this.restrictingPositions, this.caseInsensitiveRestrictingPositions, values, null);
+		return values;
+	}
+
+	/**
+	 * Bind the values of the provided parameter sources to the parameters of
+	 * the update statement. Columns without any provided value are bound to
+	 * null.
+	 * 
+	 * @param updatingValues
+	 *            values of the 'set' columns
+	 * @param restrictingValues
+	 *            values of the 'where' columns
+	 * @return the values in the order of the update statement parameters
+	 */
+	Object[] bind(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		return bind(updatingValues, restrictingValues, null);
+	}
+
+	/**
+	 * Bind the values of the provided parameter sources to the parameters of
+	 * the update statement, recording which 'set' columns a value was provided
+	 * for.
+	 * 
+	 * @param updatingValues
+	 *            values of the 'set' columns
+	 * @param restrictingValues
+	 *            values of the 'where' columns
+	 * @param providedUpdatingColumns
+	 *            set of the indexes of the 'set' columns a value was provided
+	 *            for, may be null
+	 * @return the values in the order of the update statement parameters
+	 */
+	Object[] bind(SqlParameterSource updatingValues, SqlParameterSource restrictingValues, BitSet providedUpdatingColumns) {
+		Object[] values = new Object[getParameterCount()];
+		this.updatingNames.bind(updatingValues, values, 0, providedUpdatingColumns);
+		this.restrictingNames.bind(restrictingValues, values, this.updatingColumns.size(), null);
+		return values;
+	}
+
+	/**
+	 * Set the provided values directly as the parameters of the compiled
+	 * update statement, without collecting them first. Columns without any
+	 * provided value are set to null.
+	 * 
+	 * @param preparedStatement
+	 *            the statement
+	 * @param updatingValues
+	 *            values of the 'set' columns by column name
+	 * @param restrictingValues
+	 *            values of the 'where' columns by column name
+	 * @param columnTypes
+	 *            the SQL types of the parameters
+	 * @return the values to be cleaned up once the statement is executed, or
+	 *         null if none
+	 */
+	List<Object> setValues(PreparedStatement preparedStatement, Map<String, ?> updatingValues, Map<String, ?> restrictingValues,
+			int[] columnTypes) throws SQLException {
+		List<Object> disposableValues = null;
+		int updatingColumnCount = this.updatingColumns.size();
+		int updatingMatches = 0;
+		int restrictingMatches = 0;
+		BitSet missingPositions = null;
+		for (int i = 0; i < this.parameterNames.length; i++) {
+			Object value = getValue(i < updatingColumnCount ? updatingValues : restrictingValues, this.parameterNames[i]);
+			if (value == MISSING) {
+				if (missingPositions == null) {
+					missingPositions = new BitSet(this.parameterNames.length);
+				}
+				missingPositions.set(i);
+				continue;
+			}
+			if (!this.repeatedParameters[i]) {
+				if (i < updatingColumnCount) {
+					updatingMatches++;
+				}
+				else {
+					restrictingMatches++;
+				}
+			}
+			disposableValues = setValue(preparedStatement, i, columnTypes, value, disposableValues);
+		}
+		if (missingPositions != null) {
+			Map<String, ?> caseInsensitiveUpdatingValues = null;
+			Map<String, ?> caseInsensitiveRestrictingValues = null;
+			for (int i = missingPositions.nextSetBit(0); i >= 0; i = missingPositions.nextSetBit(i + 1)) {
+				Object value;
+				if (i < updatingColumnCount) {
+					if (caseInsensitiveUpdatingValues == null) {
+						caseInsensitiveUpdatingValues = indexUnmatchedValues(updatingValues, updatingMatches);
+					}
+					value = caseInsensitiveUpdatingValues.get(this.parameterNames[i][0]);
+				}
+				else {
+					if (caseInsensitiveRestrictingValues == null) {
+						caseInsensitiveRestrictingValues = indexUnmatchedValues(restrictingValues, restrictingMatches);
+					}
+					value = caseInsensitiveRestrictingValues.get(this.parameterNames[i][0]);
+				}
+				disposableValues = setValue(preparedStatement, i, columnTypes, value, disposableValues);
+			}
+		}
+		return disposableValues;
+	}
+
+	/**
+	 * Set the values of the provided parameter sources directly as the
+	 * parameters of the compiled update statement, without collecting them
+	 * first. Columns without any provided value are set to null.
+	 * 
+	 * @param preparedStatement
+	 *            the statement
+	 * @param updatingValues
+	 *            values of the 'set' columns
+	 * @param restrictingValues
+	 *            values of the 'where' columns
+	 * @param columnTypes
+	 *            the SQL types of the parameters
+	 * @return the values to be cleaned up once the statement is executed, or
+	 *         null if none
+	 */
+	List<Object> setValues(PreparedStatement preparedStatement, SqlParameterSource updatingValues,
+			SqlParameterSource restrictingValues, int[] columnTypes) throws SQLException {
+		List<Object> disposableValues = this.updatingNames.setValues(preparedStatement, updatingValues, 0, columnTypes, null);
+		return this.restrictingNames.setValues(preparedStatement, restrictingValues, this.updatingColumns.size(), columnTypes,
+				disposableValues);
+	}
+
+	/**
+	 * Look the value of a column up by its name as declared, in lower case
+	 * and in upper case, returning {@link #MISSING} if none is provided.
+	 */
+	private static Object getValue(Map<String, ?> source, String[] names) {
+		for (String name : names) {
+			Object value = source.get(name);
+			if (value != null || source.containsKey(name)) {
+				return value;
+			}
+		}
+		return MISSING;
+	}
+
+	/**
+	 * Index the provided values case-insensitively, unless each of them
+	 * already matched a column under one of its looked up names, in which
+	 * case the missing columns have no value.
+	 * 
+	 * @param source
+	 *            the provided values
+	 * @param matches
+	 *            the number of distinct columns matched by looked up names
+	 */
+	private static Map<String, ?> indexUnmatchedValues(Map<String, ?> source, int matches) {
+		if (matches >= source.size()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Object> caseInsensitiveValues = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+		caseInsensitiveValues.putAll(source);
+		return caseInsensitiveValues;
+	}
+
+	/**
+	 * Set the value of the parameter at the given position, recording it if
+	 * it needs to be cleaned up after execution.
+	 */
+	private static List<Object> setValue(PreparedStatement preparedStatement, int position, int[] columnTypes, Object value,
+			List<Object> disposableValues) throws SQLException {
+		int sqlType = (columnTypes == null || position >= columnTypes.length ? SqlTypeValue.TYPE_UNKNOWN : columnTypes[position]);
+		AbstractJdbcUpdate.checkSingleValue(value, sqlType, position + 1);
+		StatementCreatorUtils.setParameterValue(preparedStatement, position + 1, sqlType, value);
+		Object typedValue = (value instanceof SqlParameterValue ? ((SqlParameterValue) value).getValue() : value);
+		if (typedValue instanceof DisposableSqlTypeValue) {
+			if (disposableValues == null) {
+				disposableValues = new ArrayList<Object>(1);
+			}
+			disposableValues.add(value);
+		}
+		return disposableValues;
+	}
+
+	private static void bind(Map<String, ?> source, Map<String, int[]> positions, Map<String, int[]> caseInsensitivePositions,
+			Object[] values, BitSet providedPositions) {
+		for (Map.Entry<String, ?> entry : source.entrySet()) {
+			int[] columnPositions = positions.get(entry.getKey());
+			if (columnPositions == null) {
+				columnPositions = caseInsensitivePositions.get(entry.getKey());
+			}
+			if (columnPositions != null) {
+				for (int position : columnPositions) {
+					values[position] = entry.getValue();
+					if (providedPositions != null) {
+						providedPositions.set(position);
+					}
+				}
+			}
+		}
+	}
+
+	private static Map<String, int[]> createPositions(List<String> columns, int offset) {
+		Map<String, int[]> positions = new TreeMap<String, int[]>(String.CASE_INSENSITIVE_ORDER);
+		for (int i = 0; i < columns.size(); i++) {
+			int[] columnPositions = positions.get(columns.get(i));
+			if (columnPositions == null) {
+				columnPositions = new int[] { offset + i };
+			}
+			else {
+				int[] morePositions = new int[columnPositions.length + 1];
+				System.arraycopy(columnPositions, 0, morePositions, 0, columnPositions.length);
+				morePositions[columnPositions.length] = offset + i;
+				columnPositions = morePositions;
+			}
+			positions.put(columns.get(i), columnPositions);
+		}
+		return positions;
+	}
+
+	private static Map<String, int[]> createPositionVariants(Map<String, int[]> caseInsensitivePositions) {
+		Map<String, int[]> positions = new HashMap<String, int[]>(caseInsensitivePositions.size() * 4);
+		for (Map.Entry<String, int[]> entry : caseInsensitivePositions.entrySet()) {
+			positions.put(entry.getKey(), entry.getValue());
+			positions.put(entry.getKey().toLowerCase(), entry.getValue());
+			positions.put(entry.getKey().toUpperCase(), entry.getValue());
+		}
+		return positions;
+	}
+
+	/**
+	 * The names under which the values of some columns are looked up in a
+	 * {@link SqlParameterSource}, and the names that matched for each class of
+	 * parameter source.
+	 * 
+	 * <p>
+	 * For each column, the column name, its lower case version, the
+	 * corresponding property name and finally any parameter name matching
+	 * case-insensitively are tried in turn. The name that matched is
+	 * remembered for the class of the parameter source, so that further
+	 * parameter sources of the same class resolve each column with a single
+	 * lookup.
+	 */
+	private static final class NameVariants {
+
+		private final String[] columnNames;
+
+		private final String[] lowerCaseNames;
+
+		private final String[] propertyNames;
+
+		private final ConcurrentMap<Class<?>, String[]> resolvedNames = new ConcurrentHashMap<Class<?>, String[]>();
+
+		private NameVariants(List<String> columns) {
+			this.columnNames = columns.toArray(new String[columns.size()]);
+			this.lowerCaseNames = new String[this.columnNames.length];
+			this.propertyNames = new String[this.columnNames.length];
+			for (int i = 0; i < this.columnNames.length; i++) {
+				this.lowerCaseNames[i] = this.columnNames[i].toLowerCase();
+				this.propertyNames[i] = JdbcUtils.convertUnderscoreNameToPropertyName(this.columnNames[i]);
+			}
+		}
+
+		private void bind(SqlParameterSource source, Object[] values, int offset, BitSet providedColumns) {
+			String[] names = getResolvedNames(source);
+			Map<?, ?> caseInsensitiveParameterNames = null;
+			for (int i = 0; i < this.columnNames.length; i++) {
+				String name = names[i];
+				if (name == null || !source.hasValue(name)) {
+					name = findName(source, i);
+					if (name == null) {
+						// for parameter source lookups we need to provide case insensitive
+						// lookup support since the database metadata is not necessarily
+						// providing case sensitive column names
+						if (caseInsensitiveParameterNames == null) {
+							caseInsensitiveParameterNames = SqlParameterSourceUtils.extractCaseInsensitiveParameterNames(source);
+						}
+						name = (String) caseInsensitiveParameterNames.get(this.lowerCaseNames[i]);
+					}
+					if (name != null) {
+						names[i] = name;
+					}
+				}
+				if (name != null) {
+					values[offset + i] = SqlParameterSourceUtils.getTypedValue(source, name);
+					if (providedColumns != null) {
+						providedColumns.set(i);
+					}
+				}
+			}
+		}
+
+		private List<Object> setValues(PreparedStatement preparedStatement, SqlParameterSource source, int offset,
+				int[] columnTypes, List<Object> disposableValues) throws SQLException {
+			String[] names = getResolvedNames(source);
+			Map<?, ?> caseInsensitiveParameterNames = null;
+			for (int i = 0; i < this.columnNames.length; i++) {
+				String name = names[i];
+				if (name == null || !source.hasValue(name)) {
+					name = findName(source, i);
+					if (name == null) {
+						if (caseInsensitiveParameterNames == null) {
+							caseInsensitiveParameterNames = SqlParameterSourceUtils.extractCaseInsensitiveParameterNames(source);
+						}
+						name = (String) caseInsensitiveParameterNames.get(this.lowerCaseNames[i]);
+					}
+					if (name != null) {
+						names[i] = name;
+					}
+				}
+				Object value = (name != null ? SqlParameterSourceUtils.getTypedValue(source, name) : null);
+				disposableValues = setValue(preparedStatement, offset + i, columnTypes, value, disposableValues);
+			}
+			return disposableValues;
+		}
+
+		/**
+		 * Get the names that matched for the class of the given parameter
+		 * source
+		 */
+		private String[] getResolvedNames(SqlParameterSource source) {
+			String[] names = this.resolvedNames.get(source.getClass());
+			if (names == null) {
+				names = new String[this.columnNames.length];
+				String[] existingNames = this.resolvedNames.putIfAbsent(source.getClass(), names);
+				if (existingNames != null) {
+					names = existingNames;
+				}
+			}
+			return names;
+		}
+
+		/**
+		 * Find the column name, its lower case version or the corresponding
+		 * property name among the parameters of the given source
+		 */
+		private String findName(SqlParameterSource source, int i) {
+			if (source.hasValue(this.columnNames[i])) {
+				return this.columnNames[i];
+			}
+			if (source.hasValue(this.lowerCaseNames[i])) {
+				return this.lowerCaseNames[i];
+			}
+			if (source.hasValue(this.propertyNames[i])) {
+				return this.propertyNames[i];
+			}
+			return null;
+		}
+	}
+
+}
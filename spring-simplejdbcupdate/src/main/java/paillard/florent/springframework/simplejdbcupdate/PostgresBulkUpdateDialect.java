@@ -0,0 +1,55 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * {@link ValuesJoinBulkUpdateDialect} for PostgreSQL, joining the rows in the
+ * 'from' clause of the update:
+ * 
+ * <pre class="code">
+ * UPDATE t AS t SET c = v.u0 FROM (VALUES (?, ?), (?, ?)) AS v (u0, r0) WHERE t.k = v.r0
+ * </pre>
+ * 
+ * Staged bulk updates load the rows into a temporary table, which keeps its
+ * rows until it is dropped, and join it in the same way.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class PostgresBulkUpdateDialect extends ValuesJoinBulkUpdateDialect {
+
+	@Override
+	protected void appendJoinUpdate(BulkUpdateStatement.Builder statement, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns, String stagingTableName, int rowCount) {
+		statement.append("UPDATE ").append(tableName).append(" AS ").append(TABLE_ALIAS).append(" SET ");
+		appendAssignments(statement, updatingColumns);
+		statement.append(" FROM ");
+		appendJoinedRows(statement, updatingColumns, restrictingColumns, stagingTableName, rowCount);
+		statement.append(" WHERE ");
+		appendJoinCondition(statement, updatingColumns, restrictingColumns);
+	}
+
+	@Override
+	public String createStagingTableString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		return "CREATE TEMPORARY TABLE " + getQualifiedStagingTableName(stagingTableName) + " AS "
+				+ createStagingSelectString(tableName, updatingColumns, restrictingColumns) + " WITH NO DATA";
+	}
+
+}
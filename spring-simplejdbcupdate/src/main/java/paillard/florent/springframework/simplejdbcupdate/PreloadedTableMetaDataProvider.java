@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+import org.springframework.jdbc.core.metadata.TableMetaDataProvider;
+import org.springframework.jdbc.core.metadata.TableParameterMetaData;
+import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
+
+/**
+ * {@link TableMetaDataProvider} serving column meta data obtained from a
+ * {@link TableMetaDataLoader}, without accessing the database.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+class PreloadedTableMetaDataProvider implements TableMetaDataProvider {
+
+	private final List<TableParameterMetaData> columnMetaData;
+
+	PreloadedTableMetaDataProvider(List<TableParameterMetaData> columnMetaData) {
+		this.columnMetaData = columnMetaData;
+	}
+
+	public void initializeWithMetaData(DatabaseMetaData databaseMetaData) {
+	}
+
+	public void initializeWithTableColumnMetaData(DatabaseMetaData databaseMetaData, String catalogName, String schemaName,
+			String tableName) {
+	}
+
+	public String tableNameToUse(String tableName) {
+		return tableName;
+	}
+
+	public String catalogNameToUse(String catalogName) {
+		return catalogName;
+	}
+
+	public String schemaNameToUse(String schemaName) {
+		return schemaName;
+	}
+
+	public String metaDataCatalogNameToUse(String catalogName) {
+		return catalogName;
+	}
+
+	public String metaDataSchemaNameToUse(String schemaName) {
+		return schemaName;
+	}
+
+	public boolean isTableColumnMetaDataUsed() {
+		return true;
+	}
+
+	public boolean isGetGeneratedKeysSupported() {
+		return false;
+	}
+
+	public boolean isGetGeneratedKeysSimulated() {
+		return false;
+	}
+
+	public String getSimpleQueryForGetGeneratedKey(String tableName, String keyColumnName) {
+		return null;
+	}
+
+	public boolean isGeneratedKeysColumnNameArraySupported() {
+		return false;
+	}
+
+	public List<TableParameterMetaData> getTableParameterMetaData() {
+		return this.columnMetaData;
+	}
+
+	public void setNativeJdbcExtractor(NativeJdbcExtractor nativeJdbcExtractor) {
+	}
+
+}
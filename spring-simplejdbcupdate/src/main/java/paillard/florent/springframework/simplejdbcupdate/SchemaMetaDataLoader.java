@@ -0,0 +1,268 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.metadata.TableParameterMetaData;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.Assert;
+
+/**
+ * {@link TableMetaDataLoader} fetching the column meta data of a whole schema,
+ * or of a given set of its tables, with a single
+ * {@link DatabaseMetaData#getColumns} call, on first use. The meta data is
+ * then indexed in memory and serves every {@link SimpleJdbcUpdate} using this
+ * loader, instead of one meta data lookup per table.
+ * 
+ * <p>
+ * Tables are matched case-insensitively. Tables missing from the loaded
+ * meta data, and tables of another DataSource or catalog, are looked up
+ * through JDBC as usual. The meta data must be reloaded explicitly when the
+ * structure of the tables changes.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class SchemaMetaDataLoader implements TableMetaDataLoader {
+
+	/** Logger available to subclasses */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final DataSource dataSource;
+
+	private String catalogName;
+
+	private String schemaName;
+
+	private Set<String> tableNames;
+
+	/** Column meta data by schema name and table name, loaded on first use */
+	private Map<String, Map<String, List<TableParameterMetaData>>> schemas;
+
+	/**
+	 * Create a loader of the meta data of the given DataSource.
+	 * 
+	 * @param dataSource
+	 *            the DataSource to load the meta data of
+	 */
+	public SchemaMetaDataLoader(DataSource dataSource) {
+		Assert.notNull(dataSource, "DataSource must not be null");
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Set the name of the catalog to load the meta data of. By default, the
+	 * catalog isn't restricted.
+	 */
+	public void setCatalogName(String catalogName) {
+		this.catalogName = catalogName;
+	}
+
+	/**
+	 * Get the name of the catalog to load the meta data of
+	 */
+	public String getCatalogName() {
+		return this.catalogName;
+	}
+
+	/**
+	 * Set the name of the schema to load the meta data of. By default, the
+	 * tables of every schema are loaded, a table found in several schemas
+	 * being looked up through JDBC unless its schema is given.
+	 */
+	public void setSchemaName(String schemaName) {
+		this.schemaName = schemaName;
+	}
+
+	/**
+	 * Get the name of the schema to load the meta data of
+	 */
+	public String getSchemaName() {
+		return this.schemaName;
+	}
+
+	/**
+	 * Set the names of the tables to keep the meta data of. By default, the
+	 * meta data of every table of the schema is kept.
+	 */
+	public void setTableNames(String... tableNames) {
+		Set<String> names = new HashSet<String>(tableNames.length);
+		for (String tableName : tableNames) {
+			names.add(tableName.toUpperCase());
+		}
+		this.tableNames = names;
+	}
+
+	public List<TableParameterMetaData> getColumnMetaData(DataSource dataSource, String catalogName, String schemaName,
+			String tableName) {
+		if (dataSource != this.dataSource
+				|| (catalogName != null && this.catalogName != null && !catalogName.equalsIgnoreCase(this.catalogName))) {
+			return null;
+		}
+		Map<String, Map<String, List<TableParameterMetaData>>> schemas = getSchemas();
+		if (schemaName != null) {
+			Map<String, List<TableParameterMetaData>> tables = schemas.get(schemaName);
+			return (tables != null ? tables.get(tableName) : null);
+		}
+		List<TableParameterMetaData> columns = null;
+		for (Map<String, List<TableParameterMetaData>> tables : schemas.values()) {
+			List<TableParameterMetaData> schemaColumns = tables.get(tableName);
+			if (schemaColumns != null) {
+				if (columns != null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Table [" + tableName + "] found in several schemas - looking it up");
+					}
+					return null;
+				}
+				columns = schemaColumns;
+			}
+		}
+		return columns;
+	}
+
+	/**
+	 * Get the number of tables the meta data was loaded of, loading it if
+	 * needed
+	 */
+	public int getTableCount() {
+		int tableCount = 0;
+		for (Map<String, List<TableParameterMetaData>> tables : getSchemas().values()) {
+			tableCount += tables.size();
+		}
+		return tableCount;
+	}
+
+	/**
+	 * Forget the loaded meta data, so that it's loaded again on next use.
+	 * Updates already compiled keep the meta data they were compiled with.
+	 */
+	public synchronized void reload() {
+		this.schemas = null;
+	}
+
+	/**
+	 * Get the column meta data by schema name and table name, loading it if
+	 * needed
+	 */
+	synchronized Map<String, Map<String, List<TableParameterMetaData>>> getSchemas() {
+		if (this.schemas == null) {
+			this.schemas = load();
+		}
+		return this.schemas;
+	}
+
+	/**
+	 * Load the column meta data with a single meta data call
+	 */
+	@SuppressWarnings("unchecked")
+	protected Map<String, Map<String, List<TableParameterMetaData>>> load() {
+		long startTime = System.currentTimeMillis();
+		Map<String, Map<String, List<TableParameterMetaData>>> schemas;
+		try {
+			schemas = (Map<String, Map<String, List<TableParameterMetaData>>>) JdbcUtils.extractDatabaseMetaData(this.dataSource,
+					new DatabaseMetaDataCallback() {
+
+						public Object processMetaData(DatabaseMetaData databaseMetaData) throws SQLException {
+							return loadColumns(databaseMetaData);
+						}
+					});
+		}
+		catch (MetaDataAccessException ex) {
+			throw new DataAccessResourceFailureException("Error retrieving database meta data", ex);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Loaded meta data of schema [" + this.schemaName + "] in " + (System.currentTimeMillis() - startTime) + " ms");
+		}
+		return schemas;
+	}
+
+	private Map<String, Map<String, List<TableParameterMetaData>>> loadColumns(DatabaseMetaData databaseMetaData)
+			throws SQLException {
+		Map<String, Map<String, List<TableParameterMetaData>>> schemas = new TreeMap<String, Map<String, List<TableParameterMetaData>>>(
+				String.CASE_INSENSITIVE_ORDER);
+		ResultSet columns = databaseMetaData.getColumns(toMetaDataName(databaseMetaData, this.catalogName),
+				toMetaDataName(databaseMetaData, this.schemaName), "%", "%");
+		try {
+			while (columns.next()) {
+				String tableName = columns.getString("TABLE_NAME");
+				if (this.tableNames != null && !this.tableNames.contains(tableName.toUpperCase())) {
+					continue;
+				}
+				String schemaName = columns.getString("TABLE_SCHEM");
+				Map<String, List<TableParameterMetaData>> tables = schemas.get(schemaName != null ? schemaName : "");
+				if (tables == null) {
+					tables = new TreeMap<String, List<TableParameterMetaData>>(String.CASE_INSENSITIVE_ORDER);
+					schemas.put(schemaName != null ? schemaName : "", tables);
+				}
+				List<TableParameterMetaData> tableColumns = tables.get(tableName);
+				if (tableColumns == null) {
+					tableColumns = new ArrayList<TableParameterMetaData>();
+					tables.put(tableName, tableColumns);
+				}
+				int dataType = columns.getInt("DATA_TYPE");
+				if (dataType == Types.DECIMAL && "NUMBER".equals(columns.getString("TYPE_NAME"))
+						&& columns.getInt("DECIMAL_DIGITS") == 0) {
+					// no-decimal numbers, as done by Spring for better Oracle support
+					dataType = Types.NUMERIC;
+				}
+				tableColumns.add(new TableParameterMetaData(columns.getString("COLUMN_NAME"), dataType,
+						columns.getInt("NULLABLE") == DatabaseMetaData.columnNullable));
+			}
+		}
+		finally {
+			JdbcUtils.closeResultSet(columns);
+		}
+		for (Map<String, List<TableParameterMetaData>> tables : schemas.values()) {
+			for (Map.Entry<String, List<TableParameterMetaData>> table : tables.entrySet()) {
+				table.setValue(Collections.unmodifiableList(table.getValue()));
+			}
+		}
+		return schemas;
+	}
+
+	private static String toMetaDataName(DatabaseMetaData databaseMetaData, String name) throws SQLException {
+		if (name == null) {
+			return null;
+		}
+		if (databaseMetaData.storesUpperCaseIdentifiers()) {
+			return name.toUpperCase();
+		}
+		if (databaseMetaData.storesLowerCaseIdentifiers()) {
+			return name.toLowerCase();
+		}
+		return name;
+	}
+
+}
@@ -16,11 +16,18 @@
 
 package paillard.florent.springframework.simplejdbcupdate;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
@@ -109,6 +116,21 @@ public class SimpleJdbcUpdate extends AbstractJdbcUpdate implements SimpleJdbcUp
         return this;
     }
 
+	public SimpleJdbcUpdate withDynamicUpdatingColumns() {
+		setDynamicUpdatingColumns(true);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withVersionColumn(String versionColumn) {
+		setVersionColumn(versionColumn);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withMaxInListSize(int maxInListSize) {
+		setMaxInListSize(maxInListSize);
+		return this;
+	}
+
 	public SimpleJdbcUpdateOperations withoutTableColumnMetaDataAccess() {
 		setAccessTableColumnMetaData(false);
 		return this;
@@ -119,6 +141,36 @@ public class SimpleJdbcUpdate extends AbstractJdbcUpdate implements SimpleJdbcUp
 		return this;
 	}
 
+	public SimpleJdbcUpdate withBulkUpdateDialect(BulkUpdateDialect bulkUpdateDialect) {
+		setBulkUpdateDialect(bulkUpdateDialect);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withAsyncExecutor(Executor asyncExecutor) {
+		setAsyncExecutor(asyncExecutor);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withAsyncVirtualThreads() {
+		setAsyncVirtualThreads(true);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withMetricsListener(UpdateMetricsListener metricsListener) {
+		setMetricsListener(metricsListener);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withTableMetaDataLoader(TableMetaDataLoader tableMetaDataLoader) {
+		setTableMetaDataLoader(tableMetaDataLoader);
+		return this;
+	}
+
+	public SimpleJdbcUpdate withTableMetaDataCache(TableMetaDataCache tableMetaDataCache) {
+		setTableMetaDataCache(tableMetaDataCache);
+		return this;
+	}
+
 	public SimpleJdbcUpdateOperations useNativeJdbcExtractorForMetaData(NativeJdbcExtractor nativeJdbcExtractor) {
 		setNativeJdbcExtractor(nativeJdbcExtractor);
 		return this;
@@ -132,4 +184,104 @@ public class SimpleJdbcUpdate extends AbstractJdbcUpdate implements SimpleJdbcUp
 		return doExecute(updatingValues, restrictingValues);
 	}
 
+	public long executeInKeyRanges(Map<String, Object> updatingValues, Map<String, Object> restrictingValues, KeyRangeSlicing slicing) {
+		return doExecuteInKeyRanges(updatingValues, restrictingValues, slicing);
+	}
+
+	public long executeInKeyRanges(SqlParameterSource updatingValues, SqlParameterSource restrictingValues, KeyRangeSlicing slicing) {
+		return doExecuteInKeyRanges(updatingValues, restrictingValues, slicing);
+	}
+
+	public int executeBean(Object bean) {
+		return doExecuteBean(bean);
+	}
+
+	public int executeIfChanged(Map<String, ?> snapshot, Map<String, Object> updatingValues, Map<String, Object> restrictingValues) {
+		return doExecuteIfChanged(snapshot, updatingValues, restrictingValues);
+	}
+
+	public int executeIfChanged(SqlParameterSource snapshot, SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		return doExecuteIfChanged(snapshot, updatingValues, restrictingValues);
+	}
+
+	public CompletableFuture<Integer> executeAsync(Map<String, Object> updatingValues, Map<String, Object> restrictingValues) {
+		return doExecuteAsync(updatingValues, restrictingValues);
+	}
+
+	public CompletableFuture<Integer> executeAsync(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		return doExecuteAsync(updatingValues, restrictingValues);
+	}
+
+	public CompletableFuture<int[]> executeBatchAsync(List<UpdateRow> rows) {
+		return doExecuteBatchAsync(rows);
+	}
+
+	public int[] executeBatch(UpdateRow... rows) {
+		return doExecuteBatch(Arrays.asList(rows));
+	}
+
+	public int[] executeBatch(List<UpdateRow> rows) {
+		return doExecuteBatch(rows);
+	}
+
+	public int[] executeBatch(List<? extends Map<String, ?>> updatingValues, List<? extends Map<String, ?>> restrictingValues) {
+		if (updatingValues.size() != restrictingValues.size()) {
+			throw new InvalidDataAccessApiUsageException("Updating and restricting values must be of the same size: "
+					+ updatingValues.size() + " != " + restrictingValues.size());
+		}
+		List<UpdateRow> rows = new ArrayList<UpdateRow>(updatingValues.size());
+		for (int i = 0; i < updatingValues.size(); i++) {
+			rows.add(UpdateRow.of(updatingValues.get(i), restrictingValues.get(i)));
+		}
+		return doExecuteBatch(rows);
+	}
+
+	public int[] executeBatch(SqlParameterSource[] updatingValues, SqlParameterSource[] restrictingValues) {
+		if (updatingValues.length != restrictingValues.length) {
+			throw new InvalidDataAccessApiUsageException("Updating and restricting values must be of the same size: "
+					+ updatingValues.length + " != " + restrictingValues.length);
+		}
+		List<UpdateRow> rows = new ArrayList<UpdateRow>(updatingValues.length);
+		for (int i = 0; i < updatingValues.length; i++) {
+			rows.add(UpdateRow.of(updatingValues[i], restrictingValues[i]));
+		}
+		return doExecuteBatch(rows);
+	}
+
+	public ParallelBatchResult executeBatchInParallel(List<UpdateRow> rows, int parallelism) {
+		return doExecuteBatchInParallel(rows, parallelism);
+	}
+
+	public long executeBatch(Iterator<? extends UpdateRow> rows, int batchSize, int commitInterval, BatchProgressCallback progressCallback) {
+		return doExecuteBatch(rows, batchSize, commitInterval, progressCallback);
+	}
+
+	public long executeBatch(Stream<? extends UpdateRow> rows, int batchSize, int commitInterval, BatchProgressCallback progressCallback) {
+		return doExecuteBatch(rows.iterator(), batchSize, commitInterval, progressCallback);
+	}
+
+	public long executeBatch(ColumnarRows rows, int batchSize) {
+		return doExecuteBatch(rows, batchSize);
+	}
+
+	public UpdateSession openSession() {
+		return doOpenSession();
+	}
+
+	public WriteBehindUpdateBuffer openWriteBehindBuffer(int flushSize, long flushInterval, int capacity) {
+		return doOpenWriteBehindBuffer(flushSize, flushInterval, capacity);
+	}
+
+	public int executeBulk(UpdateRow... rows) {
+		return doExecuteBulk(Arrays.asList(rows));
+	}
+
+	public int executeBulk(List<UpdateRow> rows) {
+		return doExecuteBulk(rows);
+	}
+
+	public int executeBulk(List<UpdateRow> rows, BulkUpdateStrategy strategy) {
+		return doExecuteBulk(rows, strategy);
+	}
+
 }
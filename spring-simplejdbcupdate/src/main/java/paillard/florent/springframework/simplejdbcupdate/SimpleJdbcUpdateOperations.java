@@ -16,7 +16,12 @@
 
 package paillard.florent.springframework.simplejdbcupdate;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.support.nativejdbc.NativeJdbcExtractor;
@@ -88,6 +93,42 @@ public interface SimpleJdbcUpdateOperations {
      */
     SimpleJdbcUpdate restrictingColumns(Map<String, Operator> columnsToOperators);
 
+	/**
+	 * Only update the columns a value is provided for in the updating values of
+	 * each execution, rather than all the updating columns. The statements
+	 * built for the distinct sets of provided columns are cached.
+	 * 
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withDynamicUpdatingColumns();
+
+	/**
+	 * Specify the column holding the version number of each row, for
+	 * optimistic locking. The statement increments the version with
+	 * <code>version = version + 1</code> and only updates the row if its
+	 * version is the one provided along with the restricting values. An
+	 * update affecting no row throws an
+	 * {@link org.springframework.dao.OptimisticLockingFailureException}, a
+	 * batch update a {@link BatchOptimisticLockingFailureException} reporting
+	 * the rows which affected no row.
+	 * 
+	 * @param versionColumn
+	 *            the name of the numeric version column
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withVersionColumn(String versionColumn);
+
+	/**
+	 * Specify the maximum number of values of the IN list of a statement, for
+	 * a restricting column using the {@link Operator#IN} operator. Longer lists
+	 * are split into several statements executed within a transaction.
+	 * 
+	 * @param maxInListSize
+	 *            the maximum number of values, 1000 by default
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withMaxInListSize(int maxInListSize);
+
 	/**
 	 * Turn off any processing of column meta data information obtained via
 	 * JDBC.
@@ -116,6 +157,65 @@ public interface SimpleJdbcUpdateOperations {
 	 */
 	SimpleJdbcUpdateOperations useNativeJdbcExtractorForMetaData(NativeJdbcExtractor nativeJdbcExtractor);
 
+	/**
+	 * Specify the dialect rendering the statements of bulk updates.
+	 * 
+	 * @param bulkUpdateDialect
+	 *            the dialect to use, a {@link CaseBulkUpdateDialect} by default
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withBulkUpdateDialect(BulkUpdateDialect bulkUpdateDialect);
+
+	/**
+	 * Specify the executor running the asynchronous updates.
+	 * 
+	 * @param asyncExecutor
+	 *            the executor to use, a bounded pool of daemon threads by
+	 *            default
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withAsyncExecutor(Executor asyncExecutor);
+
+	/**
+	 * Run each asynchronous update on its own virtual thread, if the JDK
+	 * provides them.
+	 * 
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withAsyncVirtualThreads();
+
+	/**
+	 * Notify the given listener of the compilation and of every statement or
+	 * batch executed, typically to record per-table metrics.
+	 * 
+	 * @param metricsListener
+	 *            the listener, for instance an {@link UpdateMetricsRecorder}
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withMetricsListener(UpdateMetricsListener metricsListener);
+
+	/**
+	 * Obtain the column meta data from the provided loader, typically a
+	 * {@link SchemaMetaDataLoader} loading the meta data of all the tables of
+	 * a schema at once, rather than looking it up for this table only.
+	 * 
+	 * @param tableMetaDataLoader
+	 *            the loader to use
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withTableMetaDataLoader(TableMetaDataLoader tableMetaDataLoader);
+
+	/**
+	 * Obtain the column meta data from the provided cache, sharing it and the
+	 * compiled update statement with the other instances using that cache.
+	 * 
+	 * @param tableMetaDataCache
+	 *            the cache to use, usually
+	 *            {@link TableMetaDataCache#getSharedInstance()}
+	 * @return the instance of this SimpleJdbcUpdate
+	 */
+	SimpleJdbcUpdateOperations withTableMetaDataCache(TableMetaDataCache tableMetaDataCache);
+
 	/**
 	 * Execute the update using the values passed in.
 	 * 
@@ -138,4 +238,300 @@ public interface SimpleJdbcUpdateOperations {
 	 */
 	int execute(SqlParameterSource updatingValues, SqlParameterSource restrictingValues);
 
+	/**
+	 * Execute the update using the values passed in, one slice of the range of
+	 * a numeric key column at a time. Each slice is updated with an additional
+	 * range predicate on the key column and committed in its own transaction,
+	 * so that the number of rows locked at a time stays bounded. Rows whose key
+	 * is beyond the highest key at the beginning of the update are not
+	 * updated.
+	 * <p>
+	 * If a transaction is already active, the slices participate in it and no
+	 * intermediate commit happens.
+	 * 
+	 * @param updatingValues
+	 *            Map containing column names and corresponding value
+	 * @param restrictingValues
+	 *            Map containing restricting column names and corresponding
+	 *            value
+	 * @param slicing
+	 *            the key column and how to slice its range
+	 * @return the total number of rows affected as returned by the JDBC driver
+	 * @throws KeyRangeUpdateInterruptedException
+	 *             if the thread is interrupted during a pause between two
+	 *             slices, carrying the checkpoint to resume from
+	 */
+	long executeInKeyRanges(Map<String, Object> updatingValues, Map<String, Object> restrictingValues, KeyRangeSlicing slicing);
+
+	/**
+	 * Execute the update using the values passed in, one slice of the range of
+	 * a numeric key column at a time.
+	 * 
+	 * @see #executeInKeyRanges(Map, Map, KeyRangeSlicing)
+	 */
+	long executeInKeyRanges(SqlParameterSource updatingValues, SqlParameterSource restrictingValues, KeyRangeSlicing slicing);
+
+	/**
+	 * Execute the update using the properties of the bean passed in, which
+	 * provide the values of both the 'set' and the 'where' columns. Columns
+	 * are matched with the properties like by a
+	 * {@link org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource},
+	 * but the properties are resolved once per class and read through
+	 * generated accessors rather than by reflection. Both JavaBeans and
+	 * records are supported.
+	 * 
+	 * @param bean
+	 *            JavaBean or record whose properties provide the values
+	 * @return the number of rows affected as returned by the JDBC driver
+	 */
+	int executeBean(Object bean);
+
+	/**
+	 * Execute the update using the values passed in, comparing them with the
+	 * values of the row as previously loaded. The update isn't executed at
+	 * all if none of the provided values changed, otherwise only the changed
+	 * columns are updated. Values are compared according to the SQL type of
+	 * their column, so that numbers of different classes or scales, dates and
+	 * timestamps, and byte arrays are compared by value.
+	 * 
+	 * @param snapshot
+	 *            Map containing column names and values of the row as loaded
+	 * @param updatingValues
+	 *            Map containing column names and corresponding value
+	 * @param restrictingValues
+	 *            Map containing restricting column names and corresponding
+	 *            value
+	 * @return the number of rows affected as returned by the JDBC driver, 0 if
+	 *         nothing changed
+	 * @see AbstractJdbcUpdate#getSkippedUpdateCount()
+	 * @see AbstractJdbcUpdate#getExecutedUpdateCount()
+	 */
+	int executeIfChanged(Map<String, ?> snapshot, Map<String, Object> updatingValues, Map<String, Object> restrictingValues);
+
+	/**
+	 * Execute the update using the values passed in, comparing them with the
+	 * values of the row as previously loaded.
+	 * 
+	 * @see #executeIfChanged(Map, Map, Map)
+	 */
+	int executeIfChanged(SqlParameterSource snapshot, SqlParameterSource updatingValues, SqlParameterSource restrictingValues);
+
+	/**
+	 * Execute the update using the values passed in on the async executor.
+	 * The values are read before returning, so the Maps may be modified
+	 * afterwards.
+	 * <p>
+	 * The update runs on another thread and can't take part in a transaction:
+	 * calling this method while a transaction is active throws an
+	 * {@link org.springframework.transaction.IllegalTransactionStateException}.
+	 * 
+	 * @param updatingValues
+	 *            Map containing column names and corresponding value
+	 * @param restrictingValues
+	 *            Map containing restricting column names and corresponding
+	 *            value
+	 * @return the future number of rows affected as returned by the JDBC
+	 *         driver
+	 */
+	CompletableFuture<Integer> executeAsync(Map<String, Object> updatingValues, Map<String, Object> restrictingValues);
+
+	/**
+	 * Execute the update using the values passed in on the async executor.
+	 * 
+	 * @see #executeAsync(Map, Map)
+	 */
+	CompletableFuture<Integer> executeAsync(SqlParameterSource updatingValues, SqlParameterSource restrictingValues);
+
+	/**
+	 * Execute a batch update using the rows passed in on the async executor.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the future array of the number of rows affected by each row of
+	 *         the batch, as returned by the JDBC driver
+	 * @see #executeAsync(Map, Map)
+	 */
+	CompletableFuture<int[]> executeBatchAsync(List<UpdateRow> rows);
+
+	/**
+	 * Execute a batch update using the rows passed in. The compiled update
+	 * statement is prepared once and each row is added to the JDBC batch.
+	 *
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the array of the number of rows affected by each row of the
+	 *         batch, as returned by the JDBC driver
+	 */
+	int[] executeBatch(UpdateRow... rows);
+
+	/**
+	 * Execute a batch update using the rows passed in. The compiled update
+	 * statement is prepared once and each row is added to the JDBC batch.
+	 *
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the array of the number of rows affected by each row of the
+	 *         batch, as returned by the JDBC driver
+	 */
+	int[] executeBatch(List<UpdateRow> rows);
+
+	/**
+	 * Execute a batch update using the values passed in. Both lists must be of
+	 * the same size, the n-th restricting Map being used for the n-th updating
+	 * Map.
+	 *
+	 * @param updatingValues
+	 *            List of Maps containing column names and corresponding value
+	 * @param restrictingValues
+	 *            List of Maps containing restricting column names and
+	 *            corresponding value
+	 * @return the array of the number of rows affected by each row of the
+	 *         batch, as returned by the JDBC driver
+	 */
+	int[] executeBatch(List<? extends Map<String, ?>> updatingValues, List<? extends Map<String, ?>> restrictingValues);
+
+	/**
+	 * Execute a batch update using the values passed in. Both arrays must be of
+	 * the same length, the n-th restricting SqlParameterSource being used for
+	 * the n-th updating SqlParameterSource.
+	 *
+	 * @param updatingValues
+	 *            SqlParameterSources containing values to use for update
+	 * @param restrictingValues
+	 *            SqlParameterSources containing restricting values
+	 * @return the array of the number of rows affected by each row of the
+	 *         batch, as returned by the JDBC driver
+	 */
+	int[] executeBatch(SqlParameterSource[] updatingValues, SqlParameterSource[] restrictingValues);
+
+	/**
+	 * Execute a batch update of the rows passed in with several workers, each
+	 * on its own connection and in its own transaction. The rows are
+	 * partitioned by a hash of their restricting values, so that concurrent
+	 * workers never update the same rows, and sorted by restricting values
+	 * within each partition, so that locks are acquired in a consistent order.
+	 * <p>
+	 * The workers don't participate in a transaction active in the calling
+	 * thread: each partition is committed or rolled back on its own, the
+	 * failures being reported in the result rather than thrown.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param parallelism
+	 *            the number of partitions and workers
+	 * @return the number of rows affected by each row and the failures of the
+	 *         partitions
+	 */
+	ParallelBatchResult executeBatchInParallel(List<UpdateRow> rows, int parallelism);
+
+	/**
+	 * Execute a batch update consuming the rows passed in one batch at a time,
+	 * so that the whole set of rows never needs to be held in memory.
+	 * <p>
+	 * When a commit interval is given, every group of that many batches is
+	 * executed in its own transaction. If a transaction is already active, the
+	 * batches participate in it and no intermediate commit happens.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param batchSize
+	 *            the maximum number of rows sent in one JDBC batch
+	 * @param commitInterval
+	 *            the number of batches after which to commit, or 0 to not
+	 *            manage transactions
+	 * @param progressCallback
+	 *            callback notified after each batch, may be null
+	 * @return the total number of rows affected, as reported by the JDBC driver
+	 */
+	long executeBatch(Iterator<? extends UpdateRow> rows, int batchSize, int commitInterval, BatchProgressCallback progressCallback);
+
+	/**
+	 * Execute a batch update of the rows passed in column by column, one
+	 * batch at a time. Values of primitive arrays are set without boxing, so
+	 * that numeric updates of millions of rows only take the memory of their
+	 * arrays.
+	 * <p>
+	 * Only the 'set' columns provided are updated, whereas each 'where'
+	 * column must be provided. Columns which are neither are refused. If a
+	 * transaction is active, the batches participate in it.
+	 * 
+	 * @param rows
+	 *            the values of the provided columns, one array per column
+	 * @param batchSize
+	 *            the maximum number of rows sent in one JDBC batch
+	 * @return the total number of rows affected, as reported by the JDBC driver
+	 */
+	long executeBatch(ColumnarRows rows, int batchSize);
+
+	/**
+	 * Execute a batch update consuming the rows of the passed in Stream one
+	 * batch at a time.
+	 * 
+	 * @see #executeBatch(Iterator, int, int, BatchProgressCallback)
+	 */
+	long executeBatch(Stream<? extends UpdateRow> rows, int batchSize, int commitInterval, BatchProgressCallback progressCallback);
+
+	/**
+	 * Open a session holding a connection and the prepared update statement,
+	 * for executing many updates in a row without preparing the statement
+	 * again for each of them. The session must be closed once done with.
+	 * 
+	 * @return the session, not thread-safe
+	 */
+	UpdateSession openSession();
+
+	/**
+	 * Open a write-behind buffer in front of this update, coalescing the
+	 * updates of the same rows and flushing them as JDBC batches. Only the
+	 * columns a value is provided for are updated. The buffer must be closed
+	 * once done with, which flushes the pending updates.
+	 * 
+	 * @param flushSize
+	 *            the number of pending rows triggering a flush
+	 * @param flushInterval
+	 *            the interval between two background flushes, in milliseconds
+	 * @param capacity
+	 *            the maximum number of rows pending or being flushed, beyond
+	 *            which updates of new rows wait for a flush
+	 * @return the buffer, thread-safe
+	 */
+	WriteBehindUpdateBuffer openWriteBehindBuffer(int flushSize, long flushInterval, int capacity);
+
+	/**
+	 * Execute a bulk update of the rows passed in, updating many rows with a
+	 * single statement rendered by the configured {@link BulkUpdateDialect}.
+	 * Rows are split into several statements when they need more parameters
+	 * than the dialect allows. The restricting columns must identify the rows
+	 * and be compared for equality.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @return the total number of rows affected as returned by the JDBC driver
+	 */
+	int executeBulk(UpdateRow... rows);
+
+	/**
+	 * Execute a bulk update of the rows passed in.
+	 * 
+	 * @see #executeBulk(UpdateRow...)
+	 */
+	int executeBulk(List<UpdateRow> rows);
+
+	/**
+	 * Execute a bulk update of the rows passed in using the given strategy.
+	 * With {@link BulkUpdateStrategy#STAGING_TABLE}, the rows are loaded into a
+	 * session temporary table and the table is updated with a single
+	 * statement, whatever the number of rows. Staging needs a dialect declaring
+	 * the temporary tables of the database, such as
+	 * {@link HsqlBulkUpdateDialect} or {@link PostgresBulkUpdateDialect}.
+	 * 
+	 * @param rows
+	 *            the updating and restricting values of each row
+	 * @param strategy
+	 *            the way the rows are sent to the database
+	 * @return the total number of rows affected as returned by the JDBC driver
+	 * @see #executeBulk(UpdateRow...)
+	 */
+	int executeBulk(List<UpdateRow> rows, BulkUpdateStrategy strategy);
+
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Registry compiling {@link SimpleJdbcUpdate} instances ahead of their first
+ * execution, so that their meta data lookups happen at startup rather than
+ * on the first requests. The updates are compiled in parallel on a bounded
+ * pool of threads, and optionally validated by preparing their statement
+ * once.
+ * 
+ * <p>
+ * Declared as a bean, the registry discovers the {@link AbstractJdbcUpdate}
+ * beans of its bean factory and compiles them, along with the updates
+ * registered explicitly, once all singletons are instantiated. By default, a
+ * failure to compile any of them fails the startup of the application
+ * context.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class SimpleJdbcUpdateRegistry implements BeanFactoryAware, SmartInitializingSingleton {
+
+	/** Default number of updates compiled at the same time */
+	public static final int DEFAULT_PARALLELISM = 8;
+
+	/** Logger available to subclasses */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Registered updates, by name */
+	private final Map<String, AbstractJdbcUpdate> jdbcUpdates = new LinkedHashMap<String, AbstractJdbcUpdate>();
+
+	/** Bean factory the updates are discovered in, if any */
+	private ListableBeanFactory beanFactory;
+
+	/** Number of updates compiled at the same time */
+	private int parallelism = DEFAULT_PARALLELISM;
+
+	/** Should the statement of each update be prepared once? */
+	private boolean validateStatements = false;
+
+	/** Should a failure to compile an update fail the startup? */
+	private boolean failOnError = true;
+
+	/** The report of the last compilation */
+	private volatile CompileReport lastReport;
+
+	/**
+	 * Set the number of updates compiled at the same time. Default is 8.
+	 */
+	public void setParallelism(int parallelism) {
+		Assert.isTrue(parallelism > 0, "Parallelism must be greater than 0");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Get the number of updates compiled at the same time
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Set whether the update statement of each update should be prepared
+	 * once after compiling it, so that statements referencing missing columns
+	 * or tables are detected at startup. This relies on the driver preparing
+	 * statements on the database. Default is false.
+	 */
+	public void setValidateStatements(boolean validateStatements) {
+		this.validateStatements = validateStatements;
+	}
+
+	/**
+	 * Are the update statements prepared once after compiling them?
+	 */
+	public boolean isValidateStatements() {
+		return this.validateStatements;
+	}
+
+	/**
+	 * Set whether a failure to compile an update should fail the startup with
+	 * an exception, rather than only being logged and reported. Default is
+	 * true.
+	 */
+	public void setFailOnError(boolean failOnError) {
+		this.failOnError = failOnError;
+	}
+
+	/**
+	 * Does a failure to compile an update fail the startup?
+	 */
+	public boolean isFailOnError() {
+		return this.failOnError;
+	}
+
+	public void setBeanFactory(BeanFactory beanFactory) {
+		if (beanFactory instanceof ListableBeanFactory) {
+			this.beanFactory = (ListableBeanFactory) beanFactory;
+		}
+	}
+
+	/**
+	 * Register an update to be compiled.
+	 * 
+	 * @param name
+	 *            the name of the update in the report
+	 * @param jdbcUpdate
+	 *            the update
+	 */
+	public void register(String name, AbstractJdbcUpdate jdbcUpdate) {
+		Assert.notNull(name, "Name must not be null");
+		Assert.notNull(jdbcUpdate, "JdbcUpdate must not be null");
+		synchronized (this.jdbcUpdates) {
+			this.jdbcUpdates.put(name, jdbcUpdate);
+		}
+	}
+
+	/**
+	 * Get the registered updates, by name
+	 */
+	public Map<String, AbstractJdbcUpdate> getJdbcUpdates() {
+		synchronized (this.jdbcUpdates) {
+			return new LinkedHashMap<String, AbstractJdbcUpdate>(this.jdbcUpdates);
+		}
+	}
+
+	/**
+	 * Get the report of the last compilation, or null if the updates haven't
+	 * been compiled yet
+	 */
+	public CompileReport getLastReport() {
+		return this.lastReport;
+	}
+
+	/**
+	 * Register the {@link AbstractJdbcUpdate} beans of the bean factory, then
+	 * compile all the registered updates.
+	 * 
+	 * @throws IllegalStateException
+	 *             if an update failed to compile and failures are not to be
+	 *             ignored
+	 */
+	public void afterSingletonsInstantiated() {
+		if (this.beanFactory != null) {
+			Map<String, AbstractJdbcUpdate> beans = this.beanFactory.getBeansOfType(AbstractJdbcUpdate.class, false, false);
+			synchronized (this.jdbcUpdates) {
+				for (Map.Entry<String, AbstractJdbcUpdate> bean : beans.entrySet()) {
+					if (!this.jdbcUpdates.containsKey(bean.getKey())) {
+						this.jdbcUpdates.put(bean.getKey(), bean.getValue());
+					}
+				}
+			}
+		}
+		CompileReport report = compileAll();
+		if (!report.isSuccessful() && this.failOnError) {
+			Map.Entry<String, RuntimeException> failure = report.getFailures().entrySet().iterator().next();
+			throw new IllegalStateException("Could not compile " + report.getFailures().size() + " of "
+					+ (report.getFailures().size() + report.getCompileNanos().size()) + " updates: "
+					+ report.getFailures().keySet(), failure.getValue());
+		}
+	}
+
+	/**
+	 * Compile all the registered updates in parallel, those already compiled
+	 * being validated only if enabled.
+	 * 
+	 * @return the compile time and failure of each update
+	 */
+	public CompileReport compileAll() {
+		final Map<String, AbstractJdbcUpdate> updates = getJdbcUpdates();
+		long startTime = System.nanoTime();
+		Map<String, Long> compileNanos = new TreeMap<String, Long>();
+		Map<String, RuntimeException> failures = new TreeMap<String, RuntimeException>();
+		if (!updates.isEmpty()) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("SimpleJdbcUpdate-compile-");
+			threadFactory.setDaemon(true);
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, updates.size()), threadFactory);
+			try {
+				Map<String, Future<Long>> futures = new LinkedHashMap<String, Future<Long>>();
+				for (final Map.Entry<String, AbstractJdbcUpdate> update : updates.entrySet()) {
+					futures.put(update.getKey(), executor.submit(new Callable<Long>() {
+
+						public Long call() {
+							long updateStartTime = System.nanoTime();
+							update.getValue().compile();
+							if (validateStatements) {
+								validate(update.getValue());
+							}
+							return System.nanoTime() - updateStartTime;
+						}
+					}));
+				}
+				for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+					try {
+						compileNanos.put(future.getKey(), future.getValue().get());
+					}
+					catch (ExecutionException ex) {
+						failures.put(future.getKey(), toRuntimeException(ex.getCause()));
+					}
+					catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						failures.put(future.getKey(), new IllegalStateException("Interrupted while compiling", ex));
+					}
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+		CompileReport report = new CompileReport(compileNanos, failures, System.nanoTime() - startTime);
+		this.lastReport = report;
+		logReport(updates, report);
+		return report;
+	}
+
+	/**
+	 * Prepare the update statement of the given compiled update once
+	 */
+	protected void validate(AbstractJdbcUpdate jdbcUpdate) {
+		final String updateString = jdbcUpdate.getUpdateString();
+		jdbcUpdate.getJdbcTemplate().execute(new ConnectionCallback<Void>() {
+
+			public Void doInConnection(Connection con) throws SQLException {
+				PreparedStatement preparedStatement = con.prepareStatement(updateString);
+				JdbcUtils.closeStatement(preparedStatement);
+				return null;
+			}
+		});
+	}
+
+	private void logReport(Map<String, AbstractJdbcUpdate> updates, CompileReport report) {
+		if (logger.isDebugEnabled()) {
+			for (Map.Entry<String, Long> compileNanos : report.getCompileNanos().entrySet()) {
+				logger.debug("Update [" + compileNanos.getKey() + "] of table [" + updates.get(compileNanos.getKey()).getTableName()
+						+ "] compiled in " + TimeUnit.NANOSECONDS.toMillis(compileNanos.getValue()) + " ms");
+			}
+		}
+		for (Map.Entry<String, RuntimeException> failure : report.getFailures().entrySet()) {
+			logger.warn("Update [" + failure.getKey() + "] of table [" + updates.get(failure.getKey()).getTableName()
+					+ "] failed to compile", failure.getValue());
+		}
+		if (logger.isInfoEnabled()) {
+			String slowest = findSlowest(report.getCompileNanos());
+			logger.info("Compiled " + report.getCompileNanos().size() + " of " + updates.size() + " updates in "
+					+ TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos()) + " ms"
+					+ (slowest != null ? ", slowest is [" + slowest + "]" : ""));
+		}
+	}
+
+	private static String findSlowest(Map<String, Long> compileNanos) {
+		String slowest = null;
+		for (Map.Entry<String, Long> entry : compileNanos.entrySet()) {
+			if (slowest == null || entry.getValue() > compileNanos.get(slowest)) {
+				slowest = entry.getKey();
+			}
+		}
+		return slowest;
+	}
+
+	private static RuntimeException toRuntimeException(Throwable ex) {
+		if (ex instanceof RuntimeException) {
+			return (RuntimeException) ex;
+		}
+		if (ex instanceof Error) {
+			throw (Error) ex;
+		}
+		return new IllegalStateException(ex);
+	}
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.metadata.TableMetaDataProvider;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Cache of table meta data shared by {@link SimpleJdbcUpdate} instances. The
+ * meta data of a table is looked up through JDBC only once per DataSource,
+ * catalog, schema, table, synonyms setting and {@link TableMetaDataLoader},
+ * and the update statements
+ * compiled for that table are reused by identically configured instances.
+ * 
+ * <p>
+ * The cache holds at most a given number of tables, evicting the least
+ * recently used ones, and at most
+ * {@link #setMaxCompiledStatementsPerTable(int) a given number} of compiled
+ * statements per table. Entries must be invalidated explicitly when the
+ * structure of a table changes.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdate#withTableMetaDataCache(TableMetaDataCache)
+ */
+public class TableMetaDataCache {
+
+	/** Default maximum number of cached tables */
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	/** Default maximum number of compiled statements cached per table */
+	public static final int DEFAULT_MAX_COMPILED_STATEMENTS_PER_TABLE = 32;
+
+	private static final TableMetaDataCache sharedInstance = new TableMetaDataCache();
+
+	/** Logger available to subclasses */
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	/** Cached tables, in access order */
+	private final Map<TableKey, CachedTable> cachedTables;
+
+	private volatile int maxCompiledStatementsPerTable = DEFAULT_MAX_COMPILED_STATEMENTS_PER_TABLE;
+
+	/**
+	 * Create a cache holding at most {@link #DEFAULT_MAX_SIZE} tables.
+	 */
+	public TableMetaDataCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Create a cache holding at most the given number of tables.
+	 * 
+	 * @param maxSize
+	 *            the maximum number of cached tables
+	 */
+	public TableMetaDataCache(final int maxSize) {
+		Assert.isTrue(maxSize > 0, "Maximum size must be greater than 0");
+		this.cachedTables = new LinkedHashMap<TableKey, CachedTable>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<TableKey, CachedTable> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Set the maximum number of compiled statements cached per table, for
+	 * distinct configurations of the updates of that table, the least
+	 * recently used ones being evicted. The default is
+	 * {@link #DEFAULT_MAX_COMPILED_STATEMENTS_PER_TABLE}. Applies to the
+	 * tables cached afterwards.
+	 */
+	public void setMaxCompiledStatementsPerTable(int maxCompiledStatementsPerTable) {
+		Assert.isTrue(maxCompiledStatementsPerTable > 0, "Maximum number of compiled statements must be greater than 0");
+		this.maxCompiledStatementsPerTable = maxCompiledStatementsPerTable;
+	}
+
+	/**
+	 * Get the process-wide shared instance.
+	 */
+	public static TableMetaDataCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * Remove the cached meta data of the given table, whatever the synonyms
+	 * setting it was looked up with. Names are compared case-insensitively.
+	 * 
+	 * @param dataSource
+	 *            the DataSource the table belongs to
+	 * @param catalogName
+	 *            the catalog name, may be null
+	 * @param schemaName
+	 *            the schema name, may be null
+	 * @param tableName
+	 *            the table name
+	 */
+	public void invalidate(DataSource dataSource, String catalogName, String schemaName, String tableName) {
+		synchronized (this.cachedTables) {
+			for (Iterator<TableKey> it = this.cachedTables.keySet().iterator(); it.hasNext();) {
+				TableKey key = it.next();
+				if (key.dataSource == dataSource && equalsIgnoreCase(key.catalogName, catalogName)
+						&& equalsIgnoreCase(key.schemaName, schemaName) && equalsIgnoreCase(key.tableName, tableName)) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove the cached meta data of every table of the given DataSource.
+	 */
+	public void invalidate(DataSource dataSource) {
+		synchronized (this.cachedTables) {
+			for (Iterator<TableKey> it = this.cachedTables.keySet().iterator(); it.hasNext();) {
+				if (it.next().dataSource == dataSource) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove every cached table.
+	 */
+	public void clear() {
+		synchronized (this.cachedTables) {
+			this.cachedTables.clear();
+		}
+	}
+
+	/**
+	 * Get the number of cached tables.
+	 */
+	public int size() {
+		synchronized (this.cachedTables) {
+			return this.cachedTables.size();
+		}
+	}
+
+	/**
+	 * Get the cached table matching the configuration of the given context,
+	 * looking its meta data up if it's not cached yet.
+	 */
+	CachedTable getCachedTable(DataSource dataSource, TableMetaDataContext tableMetaDataContext) {
+		TableKey key = new TableKey(dataSource, tableMetaDataContext);
+		CachedTable cachedTable;
+		synchronized (this.cachedTables) {
+			cachedTable = this.cachedTables.get(key);
+		}
+		if (cachedTable == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Table meta data for [" + key.tableName + "] not cached - looking it up");
+			}
+			CachedTable loadedTable = new CachedTable(tableMetaDataContext.createMetaDataProvider(dataSource),
+					this.maxCompiledStatementsPerTable);
+			synchronized (this.cachedTables) {
+				cachedTable = this.cachedTables.get(key);
+				if (cachedTable == null) {
+					cachedTable = loadedTable;
+					this.cachedTables.put(key, cachedTable);
+				}
+			}
+		}
+		return cachedTable;
+	}
+
+	private static boolean equalsIgnoreCase(String name, String otherName) {
+		return (name == null ? otherName == null : name.equalsIgnoreCase(otherName));
+	}
+
+	/**
+	 * The meta data of a table and the statements compiled for it
+	 */
+	static final class CachedTable {
+
+		private final TableMetaDataProvider metaDataProvider;
+
+		/** Statements compiled for the table by configuration, in access order */
+		private final Map<List<Object>, CompiledStatement> compiledStatements;
+
+		private CachedTable(TableMetaDataProvider metaDataProvider, final int maxCompiledStatements) {
+			this.metaDataProvider = metaDataProvider;
+			this.compiledStatements = new LinkedHashMap<List<Object>, CompiledStatement>(16, 0.75f, true) {
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<List<Object>, CompiledStatement> eldest) {
+					return size() > maxCompiledStatements;
+				}
+			};
+		}
+
+		TableMetaDataProvider getMetaDataProvider() {
+			return this.metaDataProvider;
+		}
+
+		CompiledStatement getCompiledStatement(List<Object> configuration) {
+			synchronized (this.compiledStatements) {
+				return this.compiledStatements.get(configuration);
+			}
+		}
+
+		void putCompiledStatement(List<Object> configuration, CompiledStatement compiledStatement) {
+			synchronized (this.compiledStatements) {
+				this.compiledStatements.put(configuration, compiledStatement);
+			}
+		}
+	}
+
+	/**
+	 * An update statement compiled for a table
+	 */
+	static final class CompiledStatement {
+
+		private final List<String> updatingColumns;
+
+		private final String updateString;
+
+		private final int[] columnTypes;
+
+		CompiledStatement(List<String> updatingColumns, String updateString, int[] columnTypes) {
+			this.updatingColumns = updatingColumns;
+			this.updateString = updateString;
+			this.columnTypes = columnTypes;
+		}
+
+		List<String> getUpdatingColumns() {
+			return this.updatingColumns;
+		}
+
+		String getUpdateString() {
+			return this.updateString;
+		}
+
+		int[] getColumnTypes() {
+			return this.columnTypes.clone();
+		}
+	}
+
+	/**
+	 * Key of a cached table, the DataSource and the loader being compared by
+	 * identity
+	 */
+	private static final class TableKey {
+
+		private final DataSource dataSource;
+
+		private final String catalogName;
+
+		private final String schemaName;
+
+		private final String tableName;
+
+		private final boolean accessTableColumnMetaData;
+
+		private final boolean overrideIncludeSynonymsDefault;
+
+		private final TableMetaDataLoader tableMetaDataLoader;
+
+		private TableKey(DataSource dataSource, TableMetaDataContext tableMetaDataContext) {
+			this.dataSource = dataSource;
+			this.catalogName = tableMetaDataContext.getCatalogName();
+			this.schemaName = tableMetaDataContext.getSchemaName();
+			this.tableName = tableMetaDataContext.getTableName();
+			this.accessTableColumnMetaData = tableMetaDataContext.isAccessTableColumnMetaData();
+			this.overrideIncludeSynonymsDefault = tableMetaDataContext.isOverrideIncludeSynonymsDefault();
+			this.tableMetaDataLoader = tableMetaDataContext.getTableMetaDataLoader();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof TableKey)) {
+				return false;
+			}
+			TableKey otherKey = (TableKey) other;
+			return (this.dataSource == otherKey.dataSource && ObjectUtils.nullSafeEquals(this.catalogName, otherKey.catalogName)
+					&& ObjectUtils.nullSafeEquals(this.schemaName, otherKey.schemaName)
+					&& ObjectUtils.nullSafeEquals(this.tableName, otherKey.tableName)
+					&& this.accessTableColumnMetaData == otherKey.accessTableColumnMetaData
+					&& this.overrideIncludeSynonymsDefault == otherKey.overrideIncludeSynonymsDefault
+					&& this.tableMetaDataLoader == otherKey.tableMetaDataLoader);
+		}
+
+		@Override
+		public int hashCode() {
+			int hashCode = System.identityHashCode(this.dataSource);
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.catalogName);
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.schemaName);
+			hashCode = 31 * hashCode + ObjectUtils.nullSafeHashCode(this.tableName);
+			hashCode = 31 * hashCode + (this.accessTableColumnMetaData ? 1 : 0);
+			hashCode = 31 * hashCode + (this.overrideIncludeSynonymsDefault ? 1 : 0);
+			return 31 * hashCode + System.identityHashCode(this.tableMetaDataLoader);
+		}
+	}
+
+}
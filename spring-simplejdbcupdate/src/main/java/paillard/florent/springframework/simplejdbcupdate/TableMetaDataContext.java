@@ -62,6 +62,15 @@ class TableMetaDataContext {
 	/** NativeJdbcExtractor to be used to retrieve the native connection */
 	private NativeJdbcExtractor nativeJdbcExtractor;
 
+	/** the cache of table meta data shared with other contexts, if any */
+	private TableMetaDataCache tableMetaDataCache;
+
+	/** the loader of the meta data of many tables, if any */
+	private TableMetaDataLoader tableMetaDataLoader;
+
+	/** the cached table the meta data was obtained from, if any */
+	private TableMetaDataCache.CachedTable cachedTable;
+
 	/**
 	 * Set the name of the table for this context.
 	 */
@@ -174,6 +183,49 @@ class TableMetaDataContext {
 		this.nativeJdbcExtractor = nativeJdbcExtractor;
 	}
 
+	/**
+	 * Set the {@link TableMetaDataCache} to obtain the meta data from.
+	 */
+	public void setTableMetaDataCache(TableMetaDataCache tableMetaDataCache) {
+		this.tableMetaDataCache = tableMetaDataCache;
+	}
+
+	/**
+	 * Set the {@link TableMetaDataLoader} to obtain the meta data from.
+	 */
+	public void setTableMetaDataLoader(TableMetaDataLoader tableMetaDataLoader) {
+		this.tableMetaDataLoader = tableMetaDataLoader;
+	}
+
+	/**
+	 * Get the {@link TableMetaDataLoader} to obtain the meta data from, may be
+	 * null.
+	 */
+	public TableMetaDataLoader getTableMetaDataLoader() {
+		return this.tableMetaDataLoader;
+	}
+
+	/**
+	 * Get the cached table the meta data was obtained from, or null if no
+	 * {@link TableMetaDataCache} is used.
+	 */
+	TableMetaDataCache.CachedTable getCachedTable() {
+		return this.cachedTable;
+	}
+
+	/**
+	 * Remove the meta data of the table from the {@link TableMetaDataCache}, if
+	 * any, so that the next processing looks it up again.
+	 * 
+	 * @param dataSource
+	 *            the DataSource being used
+	 */
+	void invalidateCachedMetaData(DataSource dataSource) {
+		if (this.tableMetaDataCache != null) {
+			this.tableMetaDataCache.invalidate(dataSource, catalogName, schemaName, tableName);
+		}
+	}
+
 	/**
 	 * Process the current meta data with the provided configuration options.
 	 * 
@@ -185,6 +237,34 @@ class TableMetaDataContext {
 	 *            name of generated keys
 	 */
 	public void processMetaData(DataSource dataSource) {
+		if (this.tableMetaDataCache != null) {
+			this.cachedTable = this.tableMetaDataCache.getCachedTable(dataSource, this);
+			this.metaDataProvider = this.cachedTable.getMetaDataProvider();
+		}
+		else {
+			this.metaDataProvider = createMetaDataProvider(dataSource);
+		}
+	}
+
+	/**
+	 * Create a provider of the meta data of the table, obtained from the
+	 * {@link TableMetaDataLoader} if it knows the table, otherwise looked up
+	 * through JDBC.
+	 * 
+	 * @param dataSource
+	 *            the DataSource being used
+	 */
+	TableMetaDataProvider createMetaDataProvider(DataSource dataSource) {
+		if (tableMetaDataLoader != null && accessTableColumnMetaData && !overrideIncludeSynonymsDefault) {
+			List<TableParameterMetaData> columnMetaData = tableMetaDataLoader.getColumnMetaData(dataSource, catalogName,
+					schemaName, tableName);
+			if (columnMetaData != null) {
+				return new PreloadedTableMetaDataProvider(columnMetaData);
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Table [" + tableName + "] unknown to the meta data loader - looking it up");
+			}
+		}
 		// TODO: comment to explain this HORRIBLE thing!
 		org.springframework.jdbc.core.metadata.TableMetaDataContext underlyingTableMetaDataContext = new org.springframework.jdbc.core.metadata.TableMetaDataContext();
 		underlyingTableMetaDataContext.setAccessTableColumnMetaData(accessTableColumnMetaData);
@@ -194,7 +274,7 @@ class TableMetaDataContext {
 		underlyingTableMetaDataContext.setSchemaName(schemaName);
 		underlyingTableMetaDataContext.setTableName(tableName);
 
-		this.metaDataProvider = TableMetaDataProviderFactory.createMetaDataProvider(dataSource, underlyingTableMetaDataContext, nativeJdbcExtractor);
+		return TableMetaDataProviderFactory.createMetaDataProvider(dataSource, underlyingTableMetaDataContext, nativeJdbcExtractor);
 	}
 
 	/**
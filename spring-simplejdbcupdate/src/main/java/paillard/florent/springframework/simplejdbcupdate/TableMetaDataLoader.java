@@ -0,0 +1,54 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.metadata.TableParameterMetaData;
+
+/**
+ * Strategy interface providing the column meta data of tables from another
+ * source than a per-table JDBC meta data lookup, typically meta data loaded
+ * for many tables at once.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdate#withTableMetaDataLoader(TableMetaDataLoader)
+ * @see SchemaMetaDataLoader
+ */
+public interface TableMetaDataLoader {
+
+	/**
+	 * Get the meta data of the columns of the given table.
+	 * 
+	 * @param dataSource
+	 *            the DataSource the table belongs to
+	 * @param catalogName
+	 *            the catalog name, may be null
+	 * @param schemaName
+	 *            the schema name, may be null
+	 * @param tableName
+	 *            the table name
+	 * @return the meta data of the columns in table order, or null if the
+	 *         table is unknown to this loader, in which case it is looked up
+	 *         through JDBC
+	 */
+	List<TableParameterMetaData> getColumnMetaData(DataSource dataSource, String catalogName, String schemaName, String tableName);
+
+}
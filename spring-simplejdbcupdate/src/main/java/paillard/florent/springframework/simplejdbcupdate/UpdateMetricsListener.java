@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+/**
+ * Callback interface notified around the compilation and the executions of a
+ * {@link SimpleJdbcUpdate}, typically to record metrics. Implementations are
+ * invoked on the thread executing the update and must be thread-safe and
+ * cheap, as they are called for every statement or batch sent to the
+ * database. An exception thrown by a listener is logged and doesn't affect
+ * the update.
+ * 
+ * <p>
+ * {@link UpdateMetricsRecorder} is the default in-process implementation.
+ * Metrics libraries such as Micrometer are integrated by implementing this
+ * interface, for instance recording a timer tagged with the table name.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see SimpleJdbcUpdate#withMetricsListener(UpdateMetricsListener)
+ */
+public interface UpdateMetricsListener {
+
+	/**
+	 * Called once the update has been compiled.
+	 * 
+	 * @param tableName
+	 *            the name of the updated table, qualified with its schema if
+	 *            any
+	 * @param elapsedNanos
+	 *            the duration of the compilation, meta data lookup included
+	 */
+	void compiled(String tableName, long elapsedNanos);
+
+	/**
+	 * Called once a statement or a batch has been executed.
+	 * 
+	 * @param tableName
+	 *            the name of the updated table, qualified with its schema if
+	 *            any
+	 * @param batchSize
+	 *            the number of statements sent, 1 if not batched
+	 * @param rowsAffected
+	 *            the number of rows affected, as reported by the driver
+	 * @param noOpCount
+	 *            the number of statements which affected no row
+	 * @param elapsedNanos
+	 *            the duration of the execution
+	 */
+	void executed(String tableName, int batchSize, int rowsAffected, int noOpCount, long elapsedNanos);
+
+	/**
+	 * Called when the execution of a statement or a batch failed.
+	 * 
+	 * @param tableName
+	 *            the name of the updated table, qualified with its schema if
+	 *            any
+	 * @param batchSize
+	 *            the number of statements sent, 1 if not batched
+	 * @param elapsedNanos
+	 *            the duration of the execution until it failed
+	 * @param ex
+	 *            the exception thrown
+	 */
+	void failed(String tableName, int batchSize, long elapsedNanos, RuntimeException ex);
+
+}
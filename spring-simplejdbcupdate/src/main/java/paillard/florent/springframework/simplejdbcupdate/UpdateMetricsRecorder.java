@@ -0,0 +1,228 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default {@link UpdateMetricsListener} keeping per-table counters and
+ * latency histograms in memory. Latencies are counted in buckets of powers
+ * of two nanoseconds, so that recording is lock-free and allocation-free, at
+ * the cost of percentiles being upper bounds within a factor of two.
+ * 
+ * <p>
+ * A single recorder is typically shared by all the {@link SimpleJdbcUpdate}
+ * instances of an application and its metrics exposed or logged
+ * periodically.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class UpdateMetricsRecorder implements UpdateMetricsListener {
+
+	private final ConcurrentMap<String, TableMetrics> tableMetrics = new ConcurrentHashMap<String, TableMetrics>();
+
+	public void compiled(String tableName, long elapsedNanos) {
+		getOrCreateTableMetrics(tableName).compileNanos.add(elapsedNanos);
+	}
+
+	public void executed(String tableName, int batchSize, int rowsAffected, int noOpCount, long elapsedNanos) {
+		TableMetrics metrics = getOrCreateTableMetrics(tableName);
+		metrics.executionCount.increment();
+		metrics.statementCount.add(batchSize);
+		metrics.rowsAffected.add(rowsAffected);
+		metrics.noOpCount.add(noOpCount);
+		metrics.recordLatency(elapsedNanos);
+	}
+
+	public void failed(String tableName, int batchSize, long elapsedNanos, RuntimeException ex) {
+		TableMetrics metrics = getOrCreateTableMetrics(tableName);
+		metrics.errorCount.increment();
+		metrics.recordLatency(elapsedNanos);
+	}
+
+	/**
+	 * Get the metrics of the given table, qualified with its schema if the
+	 * updates name one, or null if no update of the table has been recorded.
+	 */
+	public TableMetrics getTableMetrics(String tableName) {
+		return this.tableMetrics.get(tableName);
+	}
+
+	/**
+	 * Get the metrics of every table, sorted by table name.
+	 */
+	public Map<String, TableMetrics> getAllTableMetrics() {
+		return Collections.unmodifiableMap(new TreeMap<String, TableMetrics>(this.tableMetrics));
+	}
+
+	/**
+	 * Forget the metrics recorded so far.
+	 */
+	public void reset() {
+		this.tableMetrics.clear();
+	}
+
+	private TableMetrics getOrCreateTableMetrics(String tableName) {
+		TableMetrics metrics = this.tableMetrics.get(tableName);
+		if (metrics == null) {
+			TableMetrics newMetrics = new TableMetrics();
+			metrics = this.tableMetrics.putIfAbsent(tableName, newMetrics);
+			if (metrics == null) {
+				metrics = newMetrics;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * The metrics recorded for the updates of one table
+	 */
+	public static final class TableMetrics {
+
+		private static final int BUCKET_COUNT = 64;
+
+		private final LongAdder compileNanos = new LongAdder();
+
+		private final LongAdder executionCount = new LongAdder();
+
+		private final LongAdder statementCount = new LongAdder();
+
+		private final LongAdder rowsAffected = new LongAdder();
+
+		private final LongAdder noOpCount = new LongAdder();
+
+		private final LongAdder errorCount = new LongAdder();
+
+		/** Bucket i counts the latencies lower than 2^i nanoseconds */
+		private final AtomicLongArray latencyBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+		private TableMetrics() {
+		}
+
+		private void recordLatency(long elapsedNanos) {
+			int bucket = (elapsedNanos <= 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(elapsedNanos));
+			this.latencyBuckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+		}
+
+		/**
+		 * Get the total time spent compiling, in nanoseconds
+		 */
+		public long getCompileNanos() {
+			return this.compileNanos.sum();
+		}
+
+		/**
+		 * Get the number of successful executions, a batch counting as one
+		 */
+		public long getExecutionCount() {
+			return this.executionCount.sum();
+		}
+
+		/**
+		 * Get the number of statements successfully executed, every statement
+		 * of a batch counting as one
+		 */
+		public long getStatementCount() {
+			return this.statementCount.sum();
+		}
+
+		/**
+		 * Get the number of rows affected
+		 */
+		public long getRowsAffected() {
+			return this.rowsAffected.sum();
+		}
+
+		/**
+		 * Get the number of statements which affected no row
+		 */
+		public long getNoOpCount() {
+			return this.noOpCount.sum();
+		}
+
+		/**
+		 * Get the ratio of statements which affected no row, between 0 and 1
+		 */
+		public double getNoOpRate() {
+			long statements = getStatementCount();
+			return (statements == 0 ? 0 : (double) getNoOpCount() / statements);
+		}
+
+		/**
+		 * Get the number of failed executions
+		 */
+		public long getErrorCount() {
+			return this.errorCount.sum();
+		}
+
+		/**
+		 * Get the latency histogram: element i is the number of executions,
+		 * failed ones included, which lasted less than 2^i nanoseconds and at
+		 * least 2^(i-1) nanoseconds.
+		 */
+		public long[] getLatencyHistogram() {
+			long[] histogram = new long[BUCKET_COUNT];
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				histogram[i] = this.latencyBuckets.get(i);
+			}
+			return histogram;
+		}
+
+		/**
+		 * Get an upper bound of the given percentile of the latencies, in
+		 * nanoseconds, or 0 if nothing has been recorded.
+		 * 
+		 * @param percentile
+		 *            the percentile, between 0 and 100
+		 */
+		public long getLatencyPercentile(double percentile) {
+			long[] histogram = getLatencyHistogram();
+			long total = 0;
+			for (long count : histogram) {
+				total += count;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+			long cumulated = 0;
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				cumulated += histogram[i];
+				if (cumulated >= Math.max(rank, 1)) {
+					return (i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i);
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		public String toString() {
+			return "executions=" + getExecutionCount() + ", statements=" + getStatementCount() + ", rows=" + getRowsAffected()
+					+ ", noOps=" + getNoOpCount() + ", errors=" + getErrorCount() + ", p50=" + getLatencyPercentile(50) + "ns, p99="
+					+ getLatencyPercentile(99) + "ns";
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.Map;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.util.Assert;
+
+/**
+ * The values of one row of a multi-row update: the values to be used in the
+ * 'set' clause and the values to be used in the 'where' clause.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public final class UpdateRow {
+
+	private final SqlParameterSource updatingValues;
+
+	private final SqlParameterSource restrictingValues;
+
+	private UpdateRow(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		Assert.notNull(updatingValues, "Updating values must not be null");
+		Assert.notNull(restrictingValues, "Restricting values must not be null");
+		this.updatingValues = updatingValues;
+		this.restrictingValues = restrictingValues;
+	}
+
+	/**
+	 * Create a row from two {@link SqlParameterSource}s.
+	 * 
+	 * @param updatingValues
+	 *            values to be used in the 'set' clause
+	 * @param restrictingValues
+	 *            values to be used in the 'where' clause
+	 */
+	public static UpdateRow of(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		return new UpdateRow(updatingValues, restrictingValues);
+	}
+
+	/**
+	 * Create a row from two Maps containing column names and corresponding
+	 * values.
+	 * 
+	 * @param updatingValues
+	 *            values to be used in the 'set' clause
+	 * @param restrictingValues
+	 *            values to be used in the 'where' clause
+	 */
+	public static UpdateRow of(Map<String, ?> updatingValues, Map<String, ?> restrictingValues) {
+		return new UpdateRow(new MapSqlParameterSource(updatingValues), new MapSqlParameterSource(restrictingValues));
+	}
+
+	/**
+	 * Get the values to be used in the 'set' clause
+	 */
+	public SqlParameterSource getUpdatingValues() {
+		return this.updatingValues;
+	}
+
+	/**
+	 * Get the values to be used in the 'where' clause
+	 */
+	public SqlParameterSource getRestrictingValues() {
+		return this.restrictingValues;
+	}
+
+}
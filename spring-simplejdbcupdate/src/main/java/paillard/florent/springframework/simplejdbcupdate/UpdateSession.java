@@ -0,0 +1,186 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * A session holding a connection and the prepared update statement of a
+ * {@link SimpleJdbcUpdate}, so that consecutive executions only bind their
+ * parameters instead of preparing the statement again. Obtained through
+ * {@link SimpleJdbcUpdateOperations#openSession()}.
+ * 
+ * <p>
+ * The connection is obtained through {@link DataSourceUtils}, so that a
+ * session opened within a Spring-managed transaction uses the connection of
+ * that transaction. A session is not thread-safe and must be closed once
+ * done with, which closes its statements and releases its connection. At
+ * most {@link AbstractJdbcUpdate#getMaxCachedUpdateShapes()} statements are
+ * kept open, the least recently used being closed first.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class UpdateSession implements Closeable {
+
+	private final AbstractJdbcUpdate jdbcUpdate;
+
+	/** The compilation whose statements this session prepares */
+	private final CompiledUpdate compiledUpdate;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final DataSource dataSource;
+
+	private final Connection connection;
+
+	/** Statements prepared so far by update string, in access order */
+	private final Map<String, PreparedStatement> preparedStatements;
+
+	private boolean closed = false;
+
+	UpdateSession(AbstractJdbcUpdate jdbcUpdate, CompiledUpdate compiledUpdate) {
+		jdbcUpdate.checkNoInListRestriction(compiledUpdate, "update sessions");
+		this.jdbcUpdate = jdbcUpdate;
+		this.compiledUpdate = compiledUpdate;
+		this.jdbcTemplate = jdbcUpdate.getJdbcTemplate();
+		this.dataSource = this.jdbcTemplate.getDataSource();
+		final int maxPreparedStatements = jdbcUpdate.getMaxCachedUpdateShapes();
+		this.preparedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > maxPreparedStatements) {
+					JdbcUtils.closeStatement(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+		this.connection = DataSourceUtils.getConnection(this.dataSource);
+		try {
+			getPreparedStatement(compiledUpdate.getUpdateShape());
+		}
+		catch (RuntimeException ex) {
+			close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Execute the update using the values passed in.
+	 * 
+	 * @param updatingValues
+	 *            Map containing column names and corresponding value
+	 * @param restrictingValues
+	 *            Map containing restricting column names and corresponding
+	 *            value
+	 * @return the number of rows affected as returned by the JDBC driver
+	 */
+	public int execute(Map<String, Object> updatingValues, Map<String, Object> restrictingValues) {
+		BitSet providedColumns = (this.jdbcUpdate.isDynamicUpdatingColumns() ? new BitSet() : null);
+		Object[] values = this.compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return this.jdbcUpdate.checkVersionConflict(executeInternal(this.jdbcUpdate.getUpdateShape(this.compiledUpdate,
+				providedColumns), values));
+	}
+
+	/**
+	 * Execute the update using the values passed in.
+	 * 
+	 * @param updatingValues
+	 *            SqlParameterSource containing values to use for update
+	 * @param restrictingValues
+	 *            SqlParameterSource containing restricting values
+	 * @return the number of rows affected as returned by the JDBC driver
+	 */
+	public int execute(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		BitSet providedColumns = (this.jdbcUpdate.isDynamicUpdatingColumns() ? new BitSet() : null);
+		Object[] values = this.compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		return this.jdbcUpdate.checkVersionConflict(executeInternal(this.jdbcUpdate.getUpdateShape(this.compiledUpdate,
+				providedColumns), values));
+	}
+
+	/**
+	 * Close the statements of this session and release its connection.
+	 */
+	public void close() {
+		if (!this.closed) {
+			this.closed = true;
+			for (PreparedStatement preparedStatement : this.preparedStatements.values()) {
+				JdbcUtils.closeStatement(preparedStatement);
+			}
+			this.preparedStatements.clear();
+			DataSourceUtils.releaseConnection(this.connection, this.dataSource);
+		}
+	}
+
+	private int executeInternal(UpdateShape shape, Object[] values) {
+		Object[] shapeValues = shape.selectValues(values);
+		long startTime = System.nanoTime();
+		try {
+			PreparedStatement preparedStatement = getPreparedStatement(shape);
+			// the remaining time of the current transaction shrinks between executions
+			DataSourceUtils.applyTimeout(preparedStatement, this.dataSource, this.jdbcTemplate.getQueryTimeout());
+			AbstractJdbcUpdate.setParameterValues(preparedStatement, shapeValues, shape.getColumnTypes());
+			int updateCount = preparedStatement.executeUpdate();
+			this.jdbcUpdate.recordExecution(startTime, updateCount);
+			return updateCount;
+		}
+		catch (SQLException ex) {
+			RuntimeException translated = this.jdbcTemplate.getExceptionTranslator().translate("UpdateSession", shape.getUpdateString(), ex);
+			this.jdbcUpdate.recordFailure(startTime, 1, translated);
+			throw translated;
+		}
+		finally {
+			StatementCreatorUtils.cleanupParameters(shapeValues);
+		}
+	}
+
+	private PreparedStatement getPreparedStatement(UpdateShape shape) {
+		if (this.closed) {
+			throw new InvalidDataAccessApiUsageException("Update session is closed");
+		}
+		PreparedStatement preparedStatement = this.preparedStatements.get(shape.getUpdateString());
+		if (preparedStatement == null) {
+			try {
+				preparedStatement = this.connection.prepareStatement(shape.getUpdateString());
+			}
+			catch (SQLException ex) {
+				JdbcUtils.closeStatement(preparedStatement);
+				throw this.jdbcTemplate.getExceptionTranslator().translate("UpdateSession", shape.getUpdateString(), ex);
+			}
+			this.preparedStatements.put(shape.getUpdateString(), preparedStatement);
+		}
+		return preparedStatement;
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+/**
+ * An update statement using a subset of the compiled 'set' columns, along with
+ * the SQL types of its parameters and the positions of its parameters among
+ * the parameters of the compiled update statement.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+class UpdateShape {
+
+	private final String updateString;
+
+	private final int[] columnTypes;
+
+	/** Positions of the parameters in the compiled statement, null if identical */
+	private final int[] parameterPositions;
+
+	UpdateShape(String updateString, int[] columnTypes, int[] parameterPositions) {
+		this.updateString = updateString;
+		this.columnTypes = columnTypes;
+		this.parameterPositions = parameterPositions;
+	}
+
+	/**
+	 * Get the update string of this statement
+	 */
+	String getUpdateString() {
+		return this.updateString;
+	}
+
+	/**
+	 * Get the array of {@link java.sql.Types} of the parameters of this
+	 * statement
+	 */
+	int[] getColumnTypes() {
+		return this.columnTypes;
+	}
+
+	/**
+	 * Get the position in the compiled update statement of the parameter of
+	 * this statement at the given index
+	 */
+	int getParameterPosition(int index) {
+		return (this.parameterPositions != null ? this.parameterPositions[index] : index);
+	}
+
+	/**
+	 * Select the values of the parameters of this statement among the values
+	 * bound to the parameters of the compiled update statement.
+	 */
+	Object[] selectValues(Object[] values) {
+		if (this.parameterPositions == null) {
+			return values;
+		}
+		Object[] selectedValues = new Object[this.parameterPositions.length];
+		for (int i = 0; i < this.parameterPositions.length; i++) {
+			selectedValues[i] = values[this.parameterPositions[i]];
+		}
+		return selectedValues;
+	}
+
+}
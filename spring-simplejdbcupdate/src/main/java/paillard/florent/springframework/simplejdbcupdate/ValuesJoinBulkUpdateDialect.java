@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.util.List;
+
+/**
+ * Base class for {@link BulkUpdateDialect} implementations joining the table
+ * with the updated rows, sent as a <code>VALUES</code> list:
+ * 
+ * <pre class="code">
+ * UPDATE t SET c = v.u0 FROM (VALUES (?, ?), (?, ?)) AS v (u0, r0) WHERE t.k = v.r0
+ * </pre>
+ * 
+ * The values of each row are only sent once, so this form needs fewer
+ * parameters than {@link CaseBulkUpdateDialect}. Subclasses render the join
+ * update syntax of their database, which staged bulk updates also use to join
+ * the staging table.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ * @see H2BulkUpdateDialect
+ * @see PostgresBulkUpdateDialect
+ */
+public abstract class ValuesJoinBulkUpdateDialect extends AbstractBulkUpdateDialect {
+
+	@Override
+	protected int getParameterCountPerRow(int updatingColumnCount, int restrictingColumnCount) {
+		return updatingColumnCount + restrictingColumnCount;
+	}
+
+	public BulkUpdateStatement createBulkUpdateStatement(String tableName, List<String> updatingColumns, List<String> restrictingColumns,
+			int rowCount) {
+		BulkUpdateStatement.Builder statement = new BulkUpdateStatement.Builder();
+		appendJoinUpdate(statement, tableName, updatingColumns, restrictingColumns, null, rowCount);
+		return statement.build();
+	}
+
+	public String createStagedUpdateString(String stagingTableName, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		BulkUpdateStatement.Builder statement = new BulkUpdateStatement.Builder();
+		appendJoinUpdate(statement, tableName, updatingColumns, restrictingColumns, stagingTableName, 0);
+		return statement.build().getSql();
+	}
+
+	/**
+	 * Append the statement updating the table, aliased as
+	 * {@link #TABLE_ALIAS}, from the joined rows appended by
+	 * {@link #appendJoinedRows}.
+	 * 
+	 * @param statement
+	 *            the statement to append to
+	 * @param tableName
+	 *            the name of the table, qualified with its schema if any
+	 * @param updatingColumns
+	 *            the columns of the 'set' clause
+	 * @param restrictingColumns
+	 *            the columns identifying a row, compared for equality
+	 * @param stagingTableName
+	 *            the name of the staging table to join, or null to join a
+	 *            <code>VALUES</code> list
+	 * @param rowCount
+	 *            the number of rows of the <code>VALUES</code> list
+	 */
+	protected abstract void appendJoinUpdate(BulkUpdateStatement.Builder statement, String tableName, List<String> updatingColumns,
+			List<String> restrictingColumns, String stagingTableName, int rowCount);
+
+	/**
+	 * Append the joined rows, aliased as {@link #JOINED_ROWS_ALIAS}: the
+	 * staging table if any, else a <code>VALUES</code> list of the given
+	 * number of rows. Either way, the columns are named by
+	 * {@link #getValueColumnName}.
+	 */
+	protected void appendJoinedRows(BulkUpdateStatement.Builder statement, List<String> updatingColumns,
+			List<String> restrictingColumns, String stagingTableName, int rowCount) {
+		if (stagingTableName != null) {
+			statement.append(getQualifiedStagingTableName(stagingTableName)).append(" ").append(JOINED_ROWS_ALIAS);
+			return;
+		}
+		int updatingColumnCount = updatingColumns.size();
+		int columnCount = updatingColumnCount + restrictingColumns.size();
+		statement.append("(VALUES ");
+		for (int row = 0; row < rowCount; row++) {
+			if (row > 0) {
+				statement.append(", ");
+			}
+			statement.append("(");
+			for (int column = 0; column < columnCount; column++) {
+				if (column > 0) {
+					statement.append(", ");
+				}
+				statement.appendParameter(row, column);
+			}
+			statement.append(")");
+		}
+		statement.append(") AS ").append(JOINED_ROWS_ALIAS).append(" (");
+		for (int column = 0; column < columnCount; column++) {
+			if (column > 0) {
+				statement.append(", ");
+			}
+			statement.append(getValueColumnName(column, updatingColumnCount));
+		}
+		statement.append(")");
+	}
+
+	/**
+	 * Append the assignments of the 'set' clause, from the columns of the
+	 * joined rows
+	 */
+	protected void appendAssignments(BulkUpdateStatement.Builder statement, List<String> updatingColumns) {
+		for (int column = 0; column < updatingColumns.size(); column++) {
+			if (column > 0) {
+				statement.append(", ");
+			}
+			statement.append(updatingColumns.get(column)).append(" = ").append(JOINED_ROWS_ALIAS).append(".")
+					.append(getValueColumnName(column, updatingColumns.size()));
+		}
+	}
+
+	/**
+	 * Append the condition joining the rows of the table with the joined rows
+	 */
+	protected void appendJoinCondition(BulkUpdateStatement.Builder statement, List<String> updatingColumns,
+			List<String> restrictingColumns) {
+		int updatingColumnCount = updatingColumns.size();
+		for (int column = 0; column < restrictingColumns.size(); column++) {
+			if (column > 0) {
+				statement.append(" AND ");
+			}
+			statement.append(TABLE_ALIAS).append(".").append(restrictingColumns.get(column)).append(" = ").append(JOINED_ROWS_ALIAS)
+					.append(".").append(getValueColumnName(updatingColumnCount + column, updatingColumnCount));
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Exception thrown by {@link WriteBehindUpdateBuffer#update} and
+ * {@link WriteBehindUpdateBuffer#flush()} when a background flush failed
+ * since the last call. The failure of the flush is the cause.
+ * 
+ * <p>
+ * The updates of the failed flush have been rolled back and are pending
+ * again, merged with the later updates of the same rows: they are retried by
+ * the next flush, unless {@link WriteBehindUpdateBuffer#discardPending()
+ * discarded}.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+@SuppressWarnings("serial")
+public class WriteBehindFlushException extends DataAccessException {
+
+	/**
+	 * Constructor for WriteBehindFlushException.
+	 * 
+	 * @param msg
+	 *            the detail message
+	 * @param cause
+	 *            the failure of the background flush
+	 */
+	public WriteBehindFlushException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
+
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * A write-behind buffer in front of a {@link SimpleJdbcUpdate}, coalescing the
+ * updates of the same rows before they reach the database. Obtained through
+ * {@link SimpleJdbcUpdateOperations#openWriteBehindBuffer(int, long, int)}.
+ * 
+ * <p>
+ * Pending updates are keyed by their restricting values: a later update of
+ * the same row is merged into the pending one, the last value provided for
+ * each column winning. Only the columns a value was provided for are updated.
+ * Pending updates are flushed as JDBC batches once the flush size is reached
+ * and at the flush interval, by a background thread.
+ * 
+ * <p>
+ * At most <code>capacity</code> rows are pending or being flushed: callers
+ * updating a new row while the buffer is full wait for a flush to complete.
+ * Each flush runs in its own transaction, checking the version column if
+ * any. A failed flush is rolled back and its updates are pending again,
+ * merged with the later updates of the same rows. {@link #flush()} throws the
+ * failure of its own flush; the failure of a background flush is logged and
+ * thrown, as the cause of a {@link WriteBehindFlushException}, by the next
+ * call to {@link #update} or {@link #flush()}, background flushes being
+ * suspended meanwhile. Updates which can't succeed, such as version
+ * conflicts, must then be {@link #discardPending() discarded}. The buffer
+ * must be closed once done with, which flushes the pending updates
+ * synchronously.
+ * 
+ * @author Florent Paillard
+ * @since 1.1.0
+ */
+public class WriteBehindUpdateBuffer implements Closeable {
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final AbstractJdbcUpdate jdbcUpdate;
+
+	/** The compilation the buffered values are bound with */
+	private final CompiledUpdate compiledUpdate;
+
+	private final int flushSize;
+
+	private final int capacity;
+
+	/** Pending updates by restricting values, in order of first update */
+	private Map<List<Object>, PendingUpdate> pendingUpdates = new LinkedHashMap<List<Object>, PendingUpdate>();
+
+	/** Number of updates being flushed */
+	private int flushingCount = 0;
+
+	private boolean flushRequested = false;
+
+	/** Failure of a background flush not thrown yet */
+	private RuntimeException flushFailure;
+
+	private boolean closed = false;
+
+	private final Lock lock = new ReentrantLock();
+
+	private final Condition notFull = this.lock.newCondition();
+
+	/** Lock held while flushing, so that flushes are applied in order */
+	private final Lock flushLock = new ReentrantLock();
+
+	private final ScheduledExecutorService flushExecutor;
+
+	private final Runnable backgroundFlush = new Runnable() {
+
+		public void run() {
+			lock.lock();
+			try {
+				if (flushFailure != null) {
+					// suspended until the failure is thrown
+					flushRequested = false;
+					return;
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+			try {
+				flushInternal();
+			}
+			catch (RuntimeException ex) {
+				logger.error("Write-behind flush of table [" + jdbcUpdate.getTableName()
+						+ "] failed, updates kept pending until the failure is thrown by the next update or flush", ex);
+				lock.lock();
+				try {
+					flushFailure = ex;
+					notFull.signalAll();
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+	};
+
+	WriteBehindUpdateBuffer(AbstractJdbcUpdate jdbcUpdate, CompiledUpdate compiledUpdate, int flushSize, long flushInterval,
+			int capacity) {
+		Assert.isTrue(flushSize > 0, "Flush size must be greater than 0");
+		Assert.isTrue(flushInterval > 0, "Flush interval must be greater than 0");
+		Assert.isTrue(capacity >= flushSize, "Capacity must not be lower than the flush size");
+		jdbcUpdate.checkNoInListRestriction(compiledUpdate, "write-behind buffers");
+		this.jdbcUpdate = jdbcUpdate;
+		this.compiledUpdate = compiledUpdate;
+		this.flushSize = flushSize;
+		this.capacity = capacity;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("SimpleJdbcUpdate-write-behind-");
+		threadFactory.setDaemon(true);
+		this.flushExecutor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		this.flushExecutor.scheduleWithFixedDelay(this.backgroundFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Buffer an update using the values passed in, waiting for a flush if the
+	 * buffer is full.
+	 * 
+	 * @param updatingValues
+	 *            Map containing column names and corresponding value
+	 * @param restrictingValues
+	 *            Map containing restricting column names and corresponding
+	 *            value
+	 */
+	public void update(Map<String, ?> updatingValues, Map<String, ?> restrictingValues) {
+		BitSet providedColumns = new BitSet();
+		Object[] values = this.compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		buffer(values, providedColumns);
+	}
+
+	/**
+	 * Buffer an update using the values passed in, waiting for a flush if the
+	 * buffer is full.
+	 * 
+	 * @param updatingValues
+	 *            SqlParameterSource containing values to use for update
+	 * @param restrictingValues
+	 *            SqlParameterSource containing restricting values
+	 */
+	public void update(SqlParameterSource updatingValues, SqlParameterSource restrictingValues) {
+		BitSet providedColumns = new BitSet();
+		Object[] values = this.compiledUpdate.getBindingPlan().bind(updatingValues, restrictingValues, providedColumns);
+		buffer(values, providedColumns);
+	}
+
+	/**
+	 * Get the number of rows with a pending update
+	 */
+	public int getPendingCount() {
+		this.lock.lock();
+		try {
+			return this.pendingUpdates.size();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Discard the pending updates, such as those kept after a failed flush.
+	 * 
+	 * @return the number of rows whose pending update was discarded
+	 */
+	public int discardPending() {
+		this.lock.lock();
+		try {
+			int discardedCount = this.pendingUpdates.size();
+			this.pendingUpdates = new LinkedHashMap<List<Object>, PendingUpdate>();
+			this.notFull.signalAll();
+			return discardedCount;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Flush the pending updates synchronously.
+	 * 
+	 * @return the number of rows affected, as reported by the JDBC driver
+	 * @throws WriteBehindFlushException
+	 *             if a background flush failed since the last call to
+	 *             {@link #update} or {@link #flush()}, in which case nothing
+	 *             is flushed
+	 */
+	public int flush() {
+		this.lock.lock();
+		try {
+			throwFlushFailure();
+		}
+		finally {
+			this.lock.unlock();
+		}
+		return flushInternal();
+	}
+
+	/**
+	 * Flush the pending updates, restoring them if the flush fails
+	 */
+	private int flushInternal() {
+		this.flushLock.lock();
+		try {
+			Map<List<Object>, PendingUpdate> flushedUpdates;
+			this.lock.lock();
+			try {
+				flushedUpdates = this.pendingUpdates;
+				this.pendingUpdates = new LinkedHashMap<List<Object>, PendingUpdate>();
+				this.flushingCount = flushedUpdates.size();
+				this.flushRequested = false;
+			}
+			finally {
+				this.lock.unlock();
+			}
+			boolean flushed = false;
+			try {
+				int rowsAffected = executeBatches(flushedUpdates);
+				flushed = true;
+				return rowsAffected;
+			}
+			finally {
+				this.lock.lock();
+				try {
+					if (!flushed) {
+						restore(flushedUpdates);
+					}
+					this.flushingCount = 0;
+					this.notFull.signalAll();
+				}
+				finally {
+					this.lock.unlock();
+				}
+			}
+		}
+		finally {
+			this.flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop the background flushes and flush the pending updates synchronously.
+	 * Further updates are refused.
+	 */
+	public void close() {
+		this.lock.lock();
+		try {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			// the final flush retries the updates of a failed flush
+			this.flushFailure = null;
+			this.notFull.signalAll();
+		}
+		finally {
+			this.lock.unlock();
+		}
+		this.flushExecutor.shutdown();
+		flushInternal();
+	}
+
+	private void buffer(Object[] values, BitSet providedColumns) {
+		if (providedColumns.isEmpty()) {
+			throw new InvalidDataAccessApiUsageException("No value provided for any of the updating columns");
+		}
+		int restrictingOffset = this.compiledUpdate.getBindingPlan().getUpdatingColumns().size();
+		List<Object> key = Arrays.asList(Arrays.copyOfRange(values, restrictingOffset, values.length));
+		this.lock.lock();
+		try {
+			PendingUpdate pendingUpdate;
+			while (true) {
+				throwFlushFailure();
+				if (this.closed) {
+					throw new InvalidDataAccessApiUsageException("Write-behind buffer of table [" + this.jdbcUpdate.getTableName()
+							+ "] is closed");
+				}
+				pendingUpdate = this.pendingUpdates.get(key);
+				if (pendingUpdate != null || this.pendingUpdates.size() + this.flushingCount < this.capacity) {
+					break;
+				}
+				requestFlush();
+				this.notFull.awaitUninterruptibly();
+			}
+			if (pendingUpdate != null) {
+				pendingUpdate.merge(values, providedColumns);
+			}
+			else {
+				this.pendingUpdates.put(key, new PendingUpdate(values, providedColumns));
+				if (this.pendingUpdates.size() >= this.flushSize) {
+					requestFlush();
+				}
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Throw the failure of a background flush, if any, once. Must be called
+	 * with the lock held.
+	 */
+	private void throwFlushFailure() {
+		RuntimeException failure = this.flushFailure;
+		if (failure != null) {
+			this.flushFailure = null;
+			throw new WriteBehindFlushException("Write-behind flush of table [" + this.jdbcUpdate.getTableName() + "] failed, "
+					+ this.pendingUpdates.size() + " updates pending", failure);
+		}
+	}
+
+	/**
+	 * Put back the updates of a failed flush in front of the pending updates,
+	 * merging the later updates of the same rows into them. Must be called
+	 * with the lock held.
+	 */
+	private void restore(Map<List<Object>, PendingUpdate> flushedUpdates) {
+		for (Map.Entry<List<Object>, PendingUpdate> entry : this.pendingUpdates.entrySet()) {
+			PendingUpdate flushedUpdate = flushedUpdates.get(entry.getKey());
+			if (flushedUpdate != null) {
+				flushedUpdate.merge(entry.getValue().values, entry.getValue().providedColumns);
+			}
+			else {
+				flushedUpdates.put(entry.getKey(), entry.getValue());
+			}
+		}
+		this.pendingUpdates = flushedUpdates;
+	}
+
+	/**
+	 * Ask the background thread for a flush, unless one is already requested
+	 */
+	private void requestFlush() {
+		if (!this.flushRequested && !this.flushExecutor.isShutdown()) {
+			this.flushRequested = true;
+			this.flushExecutor.execute(this.backgroundFlush);
+		}
+	}
+
+	/**
+	 * Execute the flushed updates in a transaction, one batch per set of
+	 * updated columns
+	 */
+	private int executeBatches(final Map<List<Object>, PendingUpdate> flushedUpdates) {
+		if (flushedUpdates.isEmpty()) {
+			return 0;
+		}
+		TransactionTemplate transactionTemplate = new TransactionTemplate(this.jdbcUpdate.getTransactionManager());
+		int rowsAffected = transactionTemplate.execute(new TransactionCallback<Integer>() {
+
+			public Integer doInTransaction(TransactionStatus status) {
+				return executeBatchesInTransaction(flushedUpdates);
+			}
+		});
+		if (logger.isDebugEnabled()) {
+			logger.debug("Flushed " + flushedUpdates.size() + " write-behind updates of table [" + this.jdbcUpdate.getTableName() + "]");
+		}
+		return rowsAffected;
+	}
+
+	private int executeBatchesInTransaction(Map<List<Object>, PendingUpdate> flushedUpdates) {
+		Map<BitSet, List<Object[]>> batches = new LinkedHashMap<BitSet, List<Object[]>>();
+		for (PendingUpdate pendingUpdate : flushedUpdates.values()) {
+			List<Object[]> batchValues = batches.get(pendingUpdate.providedColumns);
+			if (batchValues == null) {
+				batchValues = new ArrayList<Object[]>();
+				batches.put(pendingUpdate.providedColumns, batchValues);
+			}
+			batchValues.add(pendingUpdate.values);
+		}
+		int rowsAffected = 0;
+		long firstRow = 0;
+		long startTime = System.nanoTime();
+		for (Map.Entry<BitSet, List<Object[]>> batch : batches.entrySet()) {
+			List<BitSet> providedColumns = new ArrayList<BitSet>(batch.getValue().size());
+			for (int i = 0; i < batch.getValue().size(); i++) {
+				providedColumns.add(batch.getKey());
+			}
+			int[] updateCounts = this.jdbcUpdate.executeBatchInternal(this.compiledUpdate, batch.getValue(), providedColumns);
+			try {
+				this.jdbcUpdate.checkVersionConflicts(updateCounts, firstRow);
+			}
+			catch (RuntimeException ex) {
+				// the executed batches are rolled back
+				this.jdbcUpdate.recordFailure(startTime, flushedUpdates.size(), ex);
+				throw ex;
+			}
+			for (int updateCount : updateCounts) {
+				if (updateCount > 0) {
+					rowsAffected += updateCount;
+				}
+			}
+			firstRow += updateCounts.length;
+		}
+		return rowsAffected;
+	}
+
+	/**
+	 * The merged values of the pending update of a row
+	 */
+	private static final class PendingUpdate {
+
+		private final Object[] values;
+
+		private BitSet providedColumns;
+
+		private PendingUpdate(Object[] values, BitSet providedColumns) {
+			this.values = values;
+			this.providedColumns = providedColumns;
+		}
+
+		private void merge(Object[] newValues, BitSet newProvidedColumns) {
+			for (int i = newProvidedColumns.nextSetBit(0); i >= 0; i = newProvidedColumns.nextSetBit(i + 1)) {
+				this.values[i] = newValues[i];
+			}
+			// a new set: the current one may be the key of a batch or a cached
+			// statement
+			BitSet mergedColumns = (BitSet) this.providedColumns.clone();
+			mergedColumns.or(newProvidedColumns);
+			this.providedColumns = mergedColumns;
+		}
+	}
+
+}
@@ -18,17 +18,43 @@ package paillard.florent.springframework.simplejdbcupdate;
 
 import static junit.framework.Assert.*;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.metadata.TableParameterMetaData;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 public class SimpleJdbcUpdateTestCase {
 	private static final String INSERT_SQL =
@@ -143,4 +169,1263 @@ public class SimpleJdbcUpdateTestCase {
 		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, key2);
 		assertEquals(expectedRow, row);
 	}
+
+	@Test
+	public void testBatch() {
+		String key1 = "Batch";
+		jdbcTemplate.update(INSERT_SQL, key1, 1, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 2, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int", "a_bool")
+				.restrictingColumns("key_1", "key_2");
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 1; key2 <= 3; key2++) {
+			rows.add(UpdateRow.of(
+					new MapSqlParameterSource()
+							.addValue("a_string", "Hello " + key2)
+							.addValue("an_int", 42 + key2)
+							.addValue("a_bool", true),
+					new MapSqlParameterSource()
+							.addValue("key_1", key1)
+							.addValue("key_2", key2)));
+		}
+
+		int[] affected = simpleJdbcUpdate.executeBatch(rows);
+		assertEquals(3, affected.length);
+		assertEquals(1, affected[0]);
+		assertEquals(1, affected[1]);
+		assertEquals(0, affected[2]);
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 2);
+		assertEquals("Hello 2", row.get("a_string"));
+		assertEquals(44, row.get("an_int"));
+		assertEquals(true, row.get("a_bool"));
+	}
+
+	@Test
+	public void testStreamingBatch() {
+		String key1 = "Stream";
+		for (int key2 = 1; key2 <= 5; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int", "a_bool")
+				.restrictingColumns("key_1", "key_2");
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 1; key2 <= 5; key2++) {
+			Map<String, Object> updatingValues = new HashMap<String, Object>();
+			updatingValues.put("a_string", "Hello");
+			updatingValues.put("an_int", key2);
+			updatingValues.put("a_bool", true);
+			Map<String, Object> restrictingValues = new HashMap<String, Object>();
+			restrictingValues.put("key_1", key1);
+			restrictingValues.put("key_2", key2);
+			rows.add(UpdateRow.of(updatingValues, restrictingValues));
+		}
+
+		final List<Long> rowsSent = new ArrayList<Long>();
+		long affected = simpleJdbcUpdate.executeBatch(rows.stream(), 2, 1, new BatchProgressCallback() {
+
+			public void batchExecuted(long sent, long rowsAffected, long elapsedTime) {
+				rowsSent.add(sent);
+			}
+		});
+		assertEquals(5, affected);
+		assertEquals(Arrays.asList(2L, 4L, 5L), rowsSent);
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 5);
+		assertEquals("Hello", row.get("a_string"));
+		assertEquals(5, row.get("an_int"));
+	}
+
+	@Test
+	public void testColumnarBatch() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS columnar_table (id BIGINT, price DOUBLE, stock INT, name VARCHAR(50))");
+		for (int id = 1; id <= 5; id++) {
+			jdbcTemplate.update("INSERT INTO columnar_table (id, price, stock, name) VALUES (?, 1.0, 1, 'Item')", id);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("columnar_table")
+				.updatingColumns("price", "stock", "name")
+				.restrictingColumns("id");
+
+		// only the provided columns are updated, the name is kept
+		ColumnarRows rows = ColumnarRows.of(6)
+				.withColumn("id", new long[] { 1, 2, 3, 4, 5, 6 })
+				.withColumn("PRICE", new double[] { 1.5, 2.5, 3.5, 4.5, 5.5, 6.5 })
+				.withColumn("stock", new int[] { 10, 20, 30, 40, 50, 60 });
+		assertEquals(5, simpleJdbcUpdate.executeBatch(rows, 2));
+		Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM columnar_table WHERE id = 4");
+		assertEquals(4.5, row.get("price"));
+		assertEquals(40, row.get("stock"));
+		assertEquals("Item", row.get("name"));
+
+		assertEquals(1, simpleJdbcUpdate.executeBatch(ColumnarRows.of(1)
+				.withColumn("id", new long[] { 5 })
+				.withColumn("name", new Object[] { "Renamed" }), 100));
+		assertEquals("Renamed", jdbcTemplate.queryForObject("SELECT name FROM columnar_table WHERE id = 5", String.class));
+
+		try {
+			simpleJdbcUpdate.executeBatch(ColumnarRows.of(1)
+					.withColumn("id", new long[] { 1 })
+					.withColumn("unknown", new int[] { 1 }), 100);
+			fail("Unknown columns should be refused");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testTableMetaDataCache() {
+		TableMetaDataCache tableMetaDataCache = new TableMetaDataCache();
+
+		SimpleJdbcUpdate simpleJdbcUpdate1 = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.restrictingColumns("key_1", "key_2");
+		simpleJdbcUpdate1.compile();
+
+		SimpleJdbcUpdate simpleJdbcUpdate2 = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.restrictingColumns("key_1", "key_2");
+		simpleJdbcUpdate2.compile();
+
+		assertEquals(1, tableMetaDataCache.size());
+		assertSame(simpleJdbcUpdate1.getUpdateString(), simpleJdbcUpdate2.getUpdateString());
+		assertTrue(Arrays.equals(simpleJdbcUpdate1.getColumnTypes(), simpleJdbcUpdate2.getColumnTypes()));
+
+		// a table served by a loader is cached apart
+		new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.withTableMetaDataLoader(new SchemaMetaDataLoader(dataSource))
+				.restrictingColumns("key_1", "key_2")
+				.compile();
+		assertEquals(2, tableMetaDataCache.size());
+
+		tableMetaDataCache.invalidate(dataSource, null, null, "DUMMY_TABLE");
+		assertEquals(0, tableMetaDataCache.size());
+
+		// a single compiled statement kept per table
+		tableMetaDataCache.setMaxCompiledStatementsPerTable(1);
+		SimpleJdbcUpdate simpleJdbcUpdate3 = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.restrictingColumns("key_1", "key_2");
+		simpleJdbcUpdate3.compile();
+		new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.restrictingColumns("key_1")
+				.compile();
+		SimpleJdbcUpdate simpleJdbcUpdate4 = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.withTableMetaDataCache(tableMetaDataCache)
+				.restrictingColumns("key_1", "key_2");
+		simpleJdbcUpdate4.compile();
+		assertEquals(simpleJdbcUpdate3.getUpdateString(), simpleJdbcUpdate4.getUpdateString());
+		assertNotSame(simpleJdbcUpdate3.getUpdateString(), simpleJdbcUpdate4.getUpdateString());
+	}
+
+	@Test
+	public void testMapColumnNamesAreCaseInsensitive() {
+		String key1 = "Case";
+		int key2 = 1;
+		jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int", "a_bool")
+				.restrictingColumns("key_1", "key_2");
+
+		Map<String, Object> map1 = new HashMap<String, Object>();
+		map1.put("A_String", "Hello");
+		map1.put("AN_INT", 42);
+		map1.put("unknown", "ignored");
+
+		Map<String, Object> map2 = new HashMap<String, Object>();
+		map2.put("Key_1", key1);
+		map2.put("KEY_2", key2);
+
+		int affected = simpleJdbcUpdate.execute(map1, map2);
+		assertEquals(1, affected);
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, key2);
+		assertEquals("Hello", row.get("a_string"));
+		assertEquals(42, row.get("an_int"));
+		assertNull(row.get("a_bool"));
+	}
+
+	@Test
+	public void testBeanPropertySqlParameterSource() {
+		String key1 = "Bean";
+		jdbcTemplate.update(INSERT_SQL, key1, 1, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 2, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("an_int")
+				.restrictingColumns("key_1", "key_2");
+
+		for (int key2 = 1; key2 <= 2; key2++) {
+			SqlParameterSource updatingValues = new MapSqlParameterSource("an_int", 42 + key2);
+			SqlParameterSource restrictingValues = new BeanPropertySqlParameterSource(new DummyKey(key1, key2));
+			assertEquals(1, simpleJdbcUpdate.execute(updatingValues, restrictingValues));
+		}
+
+		assertEquals(43, jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("an_int"));
+		assertEquals(44, jdbcTemplate.queryForMap(SELECT_SQL, key1, 2).get("an_int"));
+	}
+
+	public static class DummyKey {
+		private final String key1;
+		private final int key2;
+
+		public DummyKey(String key1, int key2) {
+			this.key1 = key1;
+			this.key2 = key2;
+		}
+
+		public String getKey1() {
+			return key1;
+		}
+
+		public int getKey2() {
+			return key2;
+		}
+	}
+
+	@Test
+	public void testExecuteBean() {
+		String key1 = "ExecuteBean";
+		jdbcTemplate.update(INSERT_SQL, key1, 1, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 2, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2");
+
+		// getters of public classes are read by generated functions, the others through method handles
+		assertEquals(1, simpleJdbcUpdate.executeBean(new DummyRow(key1, 1, "Hello", 41)));
+		assertEquals(1, simpleJdbcUpdate.executeBean(new PrivateDummyRow(key1, 2, "Bonjour", 42)));
+		assertEquals(0, simpleJdbcUpdate.executeBean(new DummyRow(key1, 3, "Hello", 43)));
+
+		Map<String, Object> row1 = jdbcTemplate.queryForMap(SELECT_SQL, key1, 1);
+		assertEquals("Hello", row1.get("a_string"));
+		assertEquals(41, row1.get("an_int"));
+		Map<String, Object> row2 = jdbcTemplate.queryForMap(SELECT_SQL, key1, 2);
+		assertEquals("Bonjour", row2.get("a_string"));
+		assertEquals(42, row2.get("an_int"));
+	}
+
+	public static class DummyRow extends DummyKey {
+		private final String aString;
+		private final int anInt;
+
+		public DummyRow(String key1, int key2, String aString, int anInt) {
+			super(key1, key2);
+			this.aString = aString;
+			this.anInt = anInt;
+		}
+
+		public String getAString() {
+			return aString;
+		}
+
+		public int getAnInt() {
+			return anInt;
+		}
+	}
+
+	private static class PrivateDummyRow {
+		private final DummyRow row;
+
+		private PrivateDummyRow(String key1, int key2, String aString, int anInt) {
+			this.row = new DummyRow(key1, key2, aString, anInt);
+		}
+
+		public String getKey1() {
+			return row.getKey1();
+		}
+
+		public int getKey2() {
+			return row.getKey2();
+		}
+
+		public String getAString() {
+			return row.getAString();
+		}
+
+		public int getAnInt() {
+			return row.getAnInt();
+		}
+	}
+
+	@Test
+	public void testDynamicUpdatingColumns() {
+		String key1 = "Dynamic";
+		jdbcTemplate.update(INSERT_SQL, key1, 1, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 2, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 3, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int", "a_bool")
+				.restrictingColumns("key_1", "key_2")
+				.withDynamicUpdatingColumns();
+
+		Map<String, Object> map1 = new HashMap<String, Object>();
+		map1.put("a_string", "Hello");
+		Map<String, Object> map2 = new HashMap<String, Object>();
+		map2.put("key_1", key1);
+		map2.put("key_2", 1);
+		assertEquals(1, simpleJdbcUpdate.execute(map1, map2));
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 1);
+		assertEquals("Hello", row.get("a_string"));
+		assertEquals(40, row.get("an_int"));
+
+		int[] affected = simpleJdbcUpdate.executeBatch(
+				UpdateRow.of(new MapSqlParameterSource("an_int", 2),
+						new MapSqlParameterSource("key_1", key1).addValue("key_2", 2)),
+				UpdateRow.of(new MapSqlParameterSource("a_bool", true),
+						new MapSqlParameterSource("key_1", key1).addValue("key_2", 3)));
+		assertEquals(1, affected[0]);
+		assertEquals(1, affected[1]);
+
+		row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 2);
+		assertEquals("Hi", row.get("a_string"));
+		assertEquals(2, row.get("an_int"));
+		row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 3);
+		assertEquals(40, row.get("an_int"));
+		assertEquals(true, row.get("a_bool"));
+	}
+
+	@Test
+	public void testSession() {
+		String key1 = "Session";
+		jdbcTemplate.update(INSERT_SQL, key1, 1, "Hi", 40, false);
+		jdbcTemplate.update(INSERT_SQL, key1, 2, "Hi", 40, false);
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("an_int")
+				.restrictingColumns("key_1", "key_2");
+
+		UpdateSession session = simpleJdbcUpdate.openSession();
+		try {
+			for (int key2 = 1; key2 <= 3; key2++) {
+				Map<String, Object> map1 = new HashMap<String, Object>();
+				map1.put("an_int", 42 + key2);
+				Map<String, Object> map2 = new HashMap<String, Object>();
+				map2.put("key_1", key1);
+				map2.put("key_2", key2);
+				assertEquals(key2 <= 2 ? 1 : 0, session.execute(map1, map2));
+			}
+		}
+		finally {
+			session.close();
+		}
+
+		assertEquals(43, jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("an_int"));
+		assertEquals(44, jdbcTemplate.queryForMap(SELECT_SQL, key1, 2).get("an_int"));
+
+		// a single statement kept open, closed and prepared again as the set columns alternate
+		SimpleJdbcUpdate dynamicUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2")
+				.withDynamicUpdatingColumns();
+		dynamicUpdate.setMaxCachedUpdateShapes(1);
+		session = dynamicUpdate.openSession();
+		try {
+			for (int i = 0; i < 4; i++) {
+				Map<String, Object> map2 = new HashMap<String, Object>();
+				map2.put("key_1", key1);
+				map2.put("key_2", 1);
+				assertEquals(1, session.execute(i % 2 == 0 ? Collections.<String, Object> singletonMap("a_string", "Hello " + i)
+						: Collections.<String, Object> singletonMap("an_int", i), map2));
+			}
+		}
+		finally {
+			session.close();
+		}
+		assertEquals("Hello 2", jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("a_string"));
+		assertEquals(3, jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("an_int"));
+	}
+
+	@Test
+	public void testBulk() {
+		String key1 = "Bulk";
+		for (int key2 = 1; key2 <= 5; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		CaseBulkUpdateDialect bulkUpdateDialect = new CaseBulkUpdateDialect();
+		bulkUpdateDialect.setMaxParametersPerStatement(20);
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2")
+				.withBulkUpdateDialect(bulkUpdateDialect);
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 1; key2 <= 5; key2++) {
+			rows.add(UpdateRow.of(
+					new MapSqlParameterSource("a_string", "Hello " + key2).addValue("an_int", key2),
+					new MapSqlParameterSource("key_1", key1).addValue("key_2", key2)));
+		}
+		// the last of the rows with the same restricting values wins
+		rows.add(0, UpdateRow.of(new MapSqlParameterSource("a_string", "Hi again").addValue("an_int", 0),
+				new MapSqlParameterSource("key_1", key1).addValue("key_2", 1)));
+
+		assertEquals(5, simpleJdbcUpdate.executeBulk(rows));
+		for (int key2 = 1; key2 <= 5; key2++) {
+			Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, key2);
+			assertEquals("Hello " + key2, row.get("a_string"));
+			assertEquals(key2, row.get("an_int"));
+		}
+
+		// the failure of the last statement rolls back the first ones
+		assertTrue(bulkUpdateDialect.getMaxRowsPerStatement(2, 2) < 5);
+		rows.clear();
+		for (int key2 = 1; key2 <= 5; key2++) {
+			String aString = (key2 == 5 ? "Bye, this value is much too long for the column of the table" : "Bye");
+			rows.add(UpdateRow.of(new MapSqlParameterSource("a_string", aString).addValue("an_int", key2),
+					new MapSqlParameterSource("key_1", key1).addValue("key_2", key2)));
+		}
+		try {
+			simpleJdbcUpdate.executeBulk(rows);
+			fail("Bulk update of a too long value should fail");
+		}
+		catch (DataAccessException ex) {
+			// expected
+		}
+		assertEquals("Hello 1", jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("a_string"));
+	}
+
+	@Test
+	public void testStagedBulk() {
+		String key1 = "Staged";
+		for (int key2 = 1; key2 <= 5; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2");
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 1; key2 <= 4; key2++) {
+			rows.add(UpdateRow.of(
+					new MapSqlParameterSource("a_string", "Hello " + key2).addValue("an_int", key2),
+					new MapSqlParameterSource("key_1", key1).addValue("key_2", key2)));
+		}
+
+		// the default dialect doesn't know how to declare a temporary table
+		try {
+			simpleJdbcUpdate.executeBulk(rows, BulkUpdateStrategy.STAGING_TABLE);
+			fail("Staged bulk update should need a dialect of the database");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+
+		simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2")
+				.withBulkUpdateDialect(new HsqlBulkUpdateDialect());
+		assertEquals(4, simpleJdbcUpdate.executeBulk(rows, BulkUpdateStrategy.STAGING_TABLE));
+		// the staging table is dropped, so it can be declared again
+		assertEquals(4, simpleJdbcUpdate.executeBulk(rows, BulkUpdateStrategy.STAGING_TABLE));
+		for (int key2 = 1; key2 <= 4; key2++) {
+			Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, key2);
+			assertEquals("Hello " + key2, row.get("a_string"));
+			assertEquals(key2, row.get("an_int"));
+		}
+		assertEquals("Hi", jdbcTemplate.queryForMap(SELECT_SQL, key1, 5).get("a_string"));
+
+		// staging tables left over on the connection don't clash with later updates
+		final SimpleJdbcUpdate leakingUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2")
+				.withBulkUpdateDialect(new HsqlBulkUpdateDialect() {
+
+					@Override
+					public String createDropStagingTableString(String stagingTableName) {
+						return "DELETE FROM " + getQualifiedStagingTableName(stagingTableName);
+					}
+				});
+		final List<UpdateRow> updateRows = rows;
+		new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(new TransactionCallbackWithoutResult() {
+
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals(4, leakingUpdate.executeBulk(updateRows, BulkUpdateStrategy.STAGING_TABLE));
+				assertEquals(4, leakingUpdate.executeBulk(updateRows, BulkUpdateStrategy.STAGING_TABLE));
+			}
+		});
+	}
+
+	@Test
+	public void testValuesJoinBulk() {
+		DriverManagerDataSource h2DataSource = new DriverManagerDataSource("jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1", "sa", "");
+		JdbcTemplate h2JdbcTemplate = new JdbcTemplate(h2DataSource);
+		h2JdbcTemplate.update("CREATE TABLE IF NOT EXISTS joined_table (key_1 VARCHAR(10), key_2 INT, a_string VARCHAR(50), "
+				+ "a_number DECIMAL(10,2))");
+		for (int key2 = 1; key2 <= 5; key2++) {
+			h2JdbcTemplate.update("INSERT INTO joined_table (key_1, key_2, a_string, a_number) VALUES ('Joined', ?, 'Hi', 0)", key2);
+		}
+
+		H2BulkUpdateDialect bulkUpdateDialect = new H2BulkUpdateDialect();
+		bulkUpdateDialect.setMaxParametersPerStatement(8);
+		assertEquals(2, bulkUpdateDialect.getMaxRowsPerStatement(2, 2));
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(h2DataSource)
+				.withTableName("joined_table")
+				.updatingColumns("a_string", "a_number")
+				.restrictingColumns("key_1", "key_2")
+				.withBulkUpdateDialect(bulkUpdateDialect);
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 1; key2 <= 4; key2++) {
+			rows.add(UpdateRow.of(
+					new MapSqlParameterSource("a_string", "Hello " + key2).addValue("a_number", new BigDecimal(key2 + ".25")),
+					new MapSqlParameterSource("key_1", "Joined").addValue("key_2", key2)));
+		}
+		rows.add(UpdateRow.of(new MapSqlParameterSource("a_string", "Nobody").addValue("a_number", BigDecimal.ONE),
+				new MapSqlParameterSource("key_1", "Joined").addValue("key_2", 6)));
+
+		// 3 statements of at most 2 rows
+		assertEquals(4, simpleJdbcUpdate.executeBulk(rows));
+		for (int key2 = 1; key2 <= 4; key2++) {
+			Map<String, Object> row = h2JdbcTemplate.queryForMap("SELECT * FROM joined_table WHERE key_2 = ?", key2);
+			assertEquals("Hello " + key2, row.get("a_string"));
+			assertEquals(0, new BigDecimal(key2 + ".25").compareTo((BigDecimal) row.get("a_number")));
+		}
+		assertEquals("Hi", h2JdbcTemplate.queryForObject("SELECT a_string FROM joined_table WHERE key_2 = 5", String.class));
+
+		try {
+			simpleJdbcUpdate.executeBulk(rows, BulkUpdateStrategy.STAGING_TABLE);
+			fail("Staged bulk update should not be supported by H2");
+		}
+		catch (InvalidDataAccessApiUsageException ex) {
+			// expected
+		}
+
+		BulkUpdateStatement statement = new PostgresBulkUpdateDialect().createBulkUpdateStatement("joined_table",
+				Arrays.asList("a_string"), Arrays.asList("key_1", "key_2"), 2);
+		assertEquals("UPDATE joined_table AS t SET a_string = v.u0 FROM (VALUES (?, ?, ?), (?, ?, ?)) AS v (u0, r0, r1) "
+				+ "WHERE t.key_1 = v.r0 AND t.key_2 = v.r1", statement.getSql());
+		assertEquals(1, statement.getRowIndex(3));
+		assertEquals(0, statement.getColumnIndex(3));
+	}
+
+	@Test
+	public void testInRestriction() {
+		String key1 = "In";
+		for (int key2 = 1; key2 <= 8; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		Map<String, Operator> restrictingColumns = new LinkedHashMap<String, Operator>();
+		restrictingColumns.put("key_2", Operator.IN);
+		restrictingColumns.put("key_1", Operator.EQUALS);
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string")
+				.restrictingColumns(restrictingColumns)
+				.withMaxInListSize(4);
+
+		Map<String, Object> restrictingValues = new HashMap<String, Object>();
+		restrictingValues.put("key_1", key1);
+		// split into a list of 4 values and a list of 2 values
+		restrictingValues.put("key_2", Arrays.asList(1, 2, 3, 5, 6, 7));
+		assertEquals(6, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Hello"), restrictingValues));
+		// padded to a list of 4 values
+		restrictingValues.put("key_2", new Integer[] { 4, 8, 1 });
+		assertEquals(3, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Bye"), restrictingValues));
+
+		for (int key2 = 1; key2 <= 8; key2++) {
+			String expected = (key2 == 4 || key2 == 8 || key2 == 1 ? "Bye" : "Hello");
+			assertEquals(expected, jdbcTemplate.queryForMap(SELECT_SQL, key1, key2).get("a_string"));
+		}
+	}
+
+	@Test
+	public void testKeyRanges() {
+		String key1 = "Range";
+		for (int key2 = 101; key2 <= 110; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("key_1");
+
+		final List<Long> checkpoints = new ArrayList<Long>();
+		KeyRangeProgressCallback progressCallback = new KeyRangeProgressCallback() {
+
+			public void sliceCommitted(long checkpoint, long rowsAffected) {
+				checkpoints.add(checkpoint);
+			}
+		};
+
+		assertEquals(5, simpleJdbcUpdate.executeInKeyRanges(Collections.<String, Object> singletonMap("a_string", "Hello"),
+				Collections.<String, Object> singletonMap("key_1", key1),
+				KeyRangeSlicing.on("key_2", 3).resumingFrom(106).withProgressCallback(progressCallback)));
+		assertEquals(Arrays.asList(109L, 111L), checkpoints);
+		assertEquals("Hi", jdbcTemplate.queryForMap(SELECT_SQL, key1, 105).get("a_string"));
+		assertEquals("Hello", jdbcTemplate.queryForMap(SELECT_SQL, key1, 106).get("a_string"));
+
+		assertEquals(10, simpleJdbcUpdate.executeInKeyRanges(Collections.<String, Object> singletonMap("a_string", "Bye"),
+				Collections.<String, Object> singletonMap("key_1", key1), KeyRangeSlicing.on("key_2", 4)));
+		for (int key2 = 101; key2 <= 110; key2++) {
+			assertEquals("Bye", jdbcTemplate.queryForMap(SELECT_SQL, key1, key2).get("a_string"));
+		}
+
+		// the last slice includes the highest key without overflowing
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS long_key_table (id BIGINT, a_string VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO long_key_table (id, a_string) VALUES (?, 'Hi'), (?, 'Hi'), (?, 'Hi')", Long.MAX_VALUE - 4,
+				Long.MAX_VALUE - 1, Long.MAX_VALUE);
+		SimpleJdbcUpdate longKeyUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("long_key_table")
+				.updatingColumns("a_string");
+		checkpoints.clear();
+		assertEquals(3, longKeyUpdate.executeInKeyRanges(Collections.<String, Object> singletonMap("a_string", "Hello"),
+				Collections.<String, Object> emptyMap(), KeyRangeSlicing.on("id", 3).withProgressCallback(progressCallback)));
+		assertEquals(Arrays.asList(Long.MAX_VALUE - 1, Long.MAX_VALUE), checkpoints);
+
+		// an interrupt during a pause stops the update at a checkpoint
+		Thread.currentThread().interrupt();
+		try {
+			longKeyUpdate.executeInKeyRanges(Collections.<String, Object> singletonMap("a_string", "Bye"),
+					Collections.<String, Object> emptyMap(), KeyRangeSlicing.on("id", 3).withPause(1000));
+			fail("Interrupted key range update should fail");
+		}
+		catch (KeyRangeUpdateInterruptedException ex) {
+			assertEquals(Long.MAX_VALUE - 1, ex.getCheckpoint());
+			assertEquals(1, ex.getRowsAffected());
+		}
+		finally {
+			Thread.interrupted();
+		}
+		assertEquals("Hello", jdbcTemplate.queryForObject("SELECT a_string FROM long_key_table WHERE id = ?", String.class,
+				Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testParallelBatch() {
+		String key1 = "Parallel";
+		for (int key2 = 1; key2 <= 12; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("key_1", "key_2");
+
+		List<UpdateRow> rows = new ArrayList<UpdateRow>();
+		for (int key2 = 12; key2 >= 1; key2--) {
+			// the value of the 5th row is too long for the column
+			String aString = (key2 == 8 ? "Hello, this value is much too long for the column of the table" : "Hello " + key2);
+			rows.add(UpdateRow.of(new MapSqlParameterSource("a_string", aString),
+					new MapSqlParameterSource("key_1", key1).addValue("key_2", key2)));
+		}
+
+		ParallelBatchResult result = simpleJdbcUpdate.executeBatchInParallel(rows, 3);
+		assertFalse(result.isSuccessful());
+		assertEquals(1, result.getFailures().size());
+		int failedRows = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			int key2 = 12 - i;
+			Object aString = jdbcTemplate.queryForMap(SELECT_SQL, key1, key2).get("a_string");
+			if (result.getUpdateCounts()[i] == Statement.EXECUTE_FAILED) {
+				failedRows++;
+				assertEquals("Hi", aString);
+			}
+			else {
+				assertEquals(1, result.getUpdateCounts()[i]);
+				assertEquals("Hello " + key2, aString);
+			}
+		}
+		assertTrue(failedRows > 0);
+		assertEquals(rows.size() - failedRows, result.getRowsAffected());
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		String key1 = "Async";
+		for (int key2 = 1; key2 <= 3; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		final SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("key_1", "key_2");
+
+		Map<String, Object> restrictingValues = new HashMap<String, Object>();
+		restrictingValues.put("key_1", key1);
+		restrictingValues.put("key_2", 1);
+		CompletableFuture<Integer> future = simpleJdbcUpdate.executeAsync(
+				Collections.<String, Object> singletonMap("a_string", "Hello"), restrictingValues);
+		// the values are bound before returning
+		restrictingValues.put("key_2", 3);
+		assertEquals(Integer.valueOf(1), future.get());
+		assertEquals("Hello", jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("a_string"));
+		assertEquals("Hi", jdbcTemplate.queryForMap(SELECT_SQL, key1, 3).get("a_string"));
+
+		int[] updateCounts = simpleJdbcUpdate.executeBatchAsync(Arrays.asList(
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Bye"), new MapSqlParameterSource("key_1", key1).addValue("key_2", 2)),
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Bye"), new MapSqlParameterSource("key_1", key1).addValue("key_2", 3))))
+				.get();
+		assertEquals(2, updateCounts.length);
+		assertEquals("Bye", jdbcTemplate.queryForMap(SELECT_SQL, key1, 3).get("a_string"));
+
+		try {
+			new TransactionTemplate(new DataSourceTransactionManager(dataSource)).execute(new TransactionCallbackWithoutResult() {
+
+				@Override
+				protected void doInTransactionWithoutResult(TransactionStatus status) {
+					simpleJdbcUpdate.executeAsync(Collections.<String, Object> singletonMap("a_string", "Hello"),
+							Collections.<String, Object> singletonMap("key_1", "Async"));
+				}
+			});
+			fail("Asynchronous update within a transaction should be refused");
+		}
+		catch (IllegalTransactionStateException ex) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWriteBehindBuffer() {
+		String key1 = "Behind";
+		for (int key2 = 1; key2 <= 3; key2++) {
+			jdbcTemplate.update(INSERT_SQL, key1, key2, "Hi", 40, false);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2");
+
+		WriteBehindUpdateBuffer buffer = simpleJdbcUpdate.openWriteBehindBuffer(100, 60000, 100);
+		try {
+			for (int i = 1; i <= 5; i++) {
+				buffer.update(new MapSqlParameterSource("an_int", i), new MapSqlParameterSource("key_1", key1).addValue("key_2", 1));
+			}
+			buffer.update(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("key_1", key1).addValue("key_2", 1));
+			buffer.update(new MapSqlParameterSource("a_string", "Bye"), new MapSqlParameterSource("key_1", key1).addValue("key_2", 2));
+			assertEquals(2, buffer.getPendingCount());
+			assertEquals("Hi", jdbcTemplate.queryForMap(SELECT_SQL, key1, 1).get("a_string"));
+		}
+		finally {
+			buffer.close();
+		}
+		assertEquals(0, buffer.getPendingCount());
+
+		Map<String, Object> row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 1);
+		assertEquals("Hello", row.get("a_string"));
+		assertEquals(5, row.get("an_int"));
+		row = jdbcTemplate.queryForMap(SELECT_SQL, key1, 2);
+		assertEquals("Bye", row.get("a_string"));
+		assertEquals(40, row.get("an_int"));
+		assertEquals("Hi", jdbcTemplate.queryForMap(SELECT_SQL, key1, 3).get("a_string"));
+	}
+
+	@Test
+	public void testVersionColumn() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS versioned_table (id INT, a_string VARCHAR(50), version INT)");
+		for (int id = 1; id <= 3; id++) {
+			jdbcTemplate.update("INSERT INTO versioned_table (id, a_string, version) VALUES (?, 'Hi', 0)", id);
+		}
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("versioned_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withVersionColumn("version");
+
+		Map<String, Object> restrictingValues = new HashMap<String, Object>();
+		restrictingValues.put("id", 1);
+		restrictingValues.put("version", 0);
+		assertEquals(1, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Hello"), restrictingValues));
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT version FROM versioned_table WHERE id = 1", Integer.class).intValue());
+		try {
+			simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Bye"), restrictingValues);
+			fail("Update of an outdated version should fail");
+		}
+		catch (OptimisticLockingFailureException ex) {
+			// expected
+		}
+
+		try {
+			simpleJdbcUpdate.executeBatch(
+					UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 2).addValue("version", 0)),
+					UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 3).addValue("version", 5)));
+			fail("Batch update of an outdated version should fail");
+		}
+		catch (BatchOptimisticLockingFailureException ex) {
+			assertTrue(Arrays.equals(new int[] { 1 }, ex.getConflictingRows()));
+			assertTrue(Arrays.equals(new int[] { 1, 0 }, ex.getUpdateCounts()));
+			assertTrue(Arrays.equals(new long[] { 1 }, ex.getConflictingRowIndexes()));
+		}
+
+		// the third row is the first row of the second batch
+		try {
+			simpleJdbcUpdate.executeBatch(Arrays.asList(
+					UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 3).addValue("version", 0)),
+					UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 3).addValue("version", 1)),
+					UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 3).addValue("version", 0)))
+					.stream(), 2, 1, null);
+			fail("Streaming batch update of an outdated version should fail");
+		}
+		catch (BatchOptimisticLockingFailureException ex) {
+			assertTrue(Arrays.equals(new int[] { 0 }, ex.getConflictingRows()));
+			assertTrue(Arrays.equals(new int[] { 0 }, ex.getUpdateCounts()));
+			assertTrue(Arrays.equals(new long[] { 2 }, ex.getConflictingRowIndexes()));
+		}
+
+		// a conflict rolls back the partition of the parallel batch update
+		int version1 = jdbcTemplate.queryForObject("SELECT version FROM versioned_table WHERE id = 1", Integer.class);
+		ParallelBatchResult result = simpleJdbcUpdate.executeBatchInParallel(Arrays.asList(
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 1).addValue("version", version1)),
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 1).addValue("version", 99))), 1);
+		assertEquals(1, result.getFailures().size());
+		BatchOptimisticLockingFailureException ex = (BatchOptimisticLockingFailureException) result.getFailures().get(0);
+		assertTrue(Arrays.equals(new long[] { 1 }, ex.getConflictingRowIndexes()));
+		assertTrue(Arrays.equals(new int[] { Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, result.getUpdateCounts()));
+		assertEquals(version1, jdbcTemplate.queryForObject("SELECT version FROM versioned_table WHERE id = 1", Integer.class).intValue());
+
+		// an empty IN list matches no row without being a conflict
+		Map<String, Operator> restrictingColumns = new LinkedHashMap<String, Operator>();
+		restrictingColumns.put("id", Operator.IN);
+		SimpleJdbcUpdate inListUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("versioned_table")
+				.updatingColumns("a_string")
+				.restrictingColumns(restrictingColumns)
+				.withVersionColumn("version");
+		restrictingValues.put("id", Collections.emptyList());
+		assertEquals(0, inListUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Bye"), restrictingValues));
+	}
+
+	@Test
+	public void testWriteBehindBufferFailure() throws Exception {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS versioned_behind_table (id INT, a_string VARCHAR(50), version INT)");
+		jdbcTemplate.update("INSERT INTO versioned_behind_table (id, a_string, version) VALUES (1, 'Hi', 0)");
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("versioned_behind_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withVersionColumn("version");
+
+		// each update is flushed in the background, and fails
+		WriteBehindUpdateBuffer buffer = simpleJdbcUpdate.openWriteBehindBuffer(1, 60000, 10);
+		try {
+			WriteBehindFlushException failure = null;
+			for (int i = 0; i < 500 && failure == null; i++) {
+				try {
+					buffer.update(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 1).addValue("version", 5));
+					Thread.sleep(10);
+				}
+				catch (WriteBehindFlushException ex) {
+					failure = ex;
+				}
+			}
+			assertNotNull(failure);
+			assertTrue(failure.getCause() instanceof BatchOptimisticLockingFailureException);
+			// the failed update is kept, and fails again when flushed synchronously
+			assertEquals(1, buffer.getPendingCount());
+			try {
+				buffer.flush();
+				fail("Flush of an outdated version should fail");
+			}
+			catch (BatchOptimisticLockingFailureException ex) {
+				// expected
+			}
+			assertEquals(1, buffer.discardPending());
+		}
+		finally {
+			buffer.close();
+		}
+		assertEquals("Hi", jdbcTemplate.queryForObject("SELECT a_string FROM versioned_behind_table WHERE id = 1", String.class));
+	}
+
+	@Test(timeout = 30000)
+	public void testWriteBehindBufferRestore() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS restored_behind_table (id INT, a_string VARCHAR(50), b_string VARCHAR(50), "
+				+ "c_string VARCHAR(50), version INT)");
+		jdbcTemplate.update("INSERT INTO restored_behind_table (id, version) VALUES (1, 0)");
+		jdbcTemplate.update("INSERT INTO restored_behind_table (id, version) VALUES (2, 0)");
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("restored_behind_table")
+				.updatingColumns("a_string", "b_string", "c_string")
+				.restrictingColumns("id")
+				.withVersionColumn("version")
+				.withDynamicUpdatingColumns();
+		simpleJdbcUpdate.setMaxCachedUpdateShapes(2);
+
+		WriteBehindUpdateBuffer buffer = simpleJdbcUpdate.openWriteBehindBuffer(100, 60000, 100);
+		try {
+			buffer.update(new MapSqlParameterSource("a_string", "Hello"), new MapSqlParameterSource("id", 1).addValue("version", 5));
+			try {
+				buffer.flush();
+				fail("Flush of an outdated version should fail");
+			}
+			catch (BatchOptimisticLockingFailureException ex) {
+				// expected
+			}
+			// the restored update is merged with a wider set of columns
+			buffer.update(new MapSqlParameterSource("b_string", "Hello"), new MapSqlParameterSource("id", 1).addValue("version", 5));
+
+			// more statements than the cache holds evict the one of the failed flush
+			String[][] shapes = { { "b_string" }, { "c_string" }, { "a_string", "c_string" }, { "a_string", "b_string" } };
+			for (int i = 0; i < shapes.length; i++) {
+				MapSqlParameterSource updatingValues = new MapSqlParameterSource();
+				for (String column : shapes[i]) {
+					updatingValues.addValue(column, "Shape " + i);
+				}
+				assertEquals(1, simpleJdbcUpdate.execute(updatingValues, new MapSqlParameterSource("id", 2).addValue("version", i)));
+			}
+			assertEquals(1, buffer.discardPending());
+		}
+		finally {
+			buffer.close();
+		}
+		assertEquals("Shape 3", jdbcTemplate.queryForObject("SELECT b_string FROM restored_behind_table WHERE id = 2", String.class));
+	}
+
+	@Test
+	public void testIfChanged() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS dirty_table (id INT, a_string VARCHAR(50), a_number DECIMAL(10,2))");
+		jdbcTemplate.update("INSERT INTO dirty_table (id, a_string, a_number) VALUES (1, 'Hi', 1.50)");
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dirty_table")
+				.updatingColumns("a_string", "a_number")
+				.restrictingColumns("id");
+		Map<String, Object> snapshot = jdbcTemplate.queryForMap("SELECT * FROM dirty_table WHERE id = 1");
+
+		Map<String, Object> updatingValues = new HashMap<String, Object>();
+		updatingValues.put("a_string", "Hi");
+		updatingValues.put("a_number", new BigDecimal("1.5"));
+		Map<String, Object> restrictingValues = Collections.<String, Object> singletonMap("id", 1);
+		assertEquals(0, simpleJdbcUpdate.executeIfChanged(snapshot, updatingValues, restrictingValues));
+		assertEquals(1, simpleJdbcUpdate.getSkippedUpdateCount());
+		assertEquals(0, simpleJdbcUpdate.getExecutedUpdateCount());
+
+		jdbcTemplate.update("UPDATE dirty_table SET a_number = 2 WHERE id = 1");
+		updatingValues.put("a_string", "Hello");
+		assertEquals(1, simpleJdbcUpdate.executeIfChanged(snapshot, updatingValues, restrictingValues));
+		assertEquals(1, simpleJdbcUpdate.getExecutedUpdateCount());
+		// only the changed column was sent
+		assertEquals(0, new BigDecimal("2").compareTo(
+				jdbcTemplate.queryForObject("SELECT a_number FROM dirty_table WHERE id = 1", BigDecimal.class)));
+		assertEquals("Hello", jdbcTemplate.queryForObject("SELECT a_string FROM dirty_table WHERE id = 1", String.class));
+
+		// wrapped values are compared by their wrapped value
+		snapshot = jdbcTemplate.queryForMap("SELECT * FROM dirty_table WHERE id = 1");
+		updatingValues.put("a_string", new SqlParameterValue(Types.VARCHAR, "Hello"));
+		updatingValues.put("a_number", new SqlParameterValue(Types.DECIMAL, new BigDecimal("2.0")));
+		assertEquals(0, simpleJdbcUpdate.executeIfChanged(snapshot, updatingValues, restrictingValues));
+		assertEquals(2, simpleJdbcUpdate.getSkippedUpdateCount());
+		updatingValues.put("a_string", new SqlParameterValue(Types.VARCHAR, "Hallo"));
+		assertEquals(1, simpleJdbcUpdate.executeIfChanged(snapshot, updatingValues, restrictingValues));
+		assertEquals("Hallo", jdbcTemplate.queryForObject("SELECT a_string FROM dirty_table WHERE id = 1", String.class));
+	}
+
+	@Test
+	public void testMetrics() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS metrics_table (id INT, a_string VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO metrics_table (id, a_string) VALUES (1, 'Hi'), (2, 'Hi')");
+
+		UpdateMetricsRecorder recorder = new UpdateMetricsRecorder();
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("metrics_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withMetricsListener(recorder);
+		simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Measured"),
+				Collections.<String, Object> singletonMap("id", 1));
+		simpleJdbcUpdate.executeBatch(
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Measured"), new MapSqlParameterSource("id", 2)),
+				UpdateRow.of(new MapSqlParameterSource("a_string", "Measured"), new MapSqlParameterSource("id", -1)));
+
+		UpdateMetricsRecorder.TableMetrics metrics = recorder.getTableMetrics("metrics_table");
+		assertNotNull(metrics);
+		assertEquals(2, metrics.getExecutionCount());
+		assertEquals(3, metrics.getStatementCount());
+		assertEquals(2, metrics.getRowsAffected());
+		assertEquals(1, metrics.getNoOpCount());
+		assertEquals(0, metrics.getErrorCount());
+		assertTrue(metrics.getCompileNanos() > 0);
+		assertTrue(metrics.getLatencyPercentile(50) > 0);
+		assertTrue(metrics.getLatencyPercentile(50) <= metrics.getLatencyPercentile(100));
+
+		// metrics are keyed by the qualified table name
+		UpdateMetricsRecorder schemaRecorder = new UpdateMetricsRecorder();
+		new SimpleJdbcUpdate(dataSource)
+				.withSchemaName("PUBLIC")
+				.withTableName("metrics_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withMetricsListener(schemaRecorder)
+				.execute(Collections.<String, Object> singletonMap("a_string", "Measured"), Collections.<String, Object> singletonMap("id", 1));
+		assertNull(schemaRecorder.getTableMetrics("metrics_table"));
+		assertEquals(1, schemaRecorder.getTableMetrics("PUBLIC.metrics_table").getExecutionCount());
+
+		// a failing listener doesn't fail the update
+		UpdateMetricsListener failingListener = new UpdateMetricsListener() {
+
+			public void compiled(String tableName, long elapsedNanos) {
+				throw new IllegalStateException("compiled");
+			}
+
+			public void executed(String tableName, int batchSize, int rowsAffected, int noOpCount, long elapsedNanos) {
+				throw new IllegalStateException("executed");
+			}
+
+			public void failed(String tableName, int batchSize, long elapsedNanos, RuntimeException ex) {
+				throw new IllegalStateException("failed");
+			}
+		};
+		assertEquals(1, new SimpleJdbcUpdate(dataSource)
+				.withTableName("metrics_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withMetricsListener(failingListener)
+				.execute(Collections.<String, Object> singletonMap("a_string", "Unmeasured"), Collections.<String, Object> singletonMap("id", 1)));
+	}
+
+	@Test
+	public void testDirectBinding() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS direct_table (id INT, a_string VARCHAR(50), an_int INT)");
+		jdbcTemplate.update("INSERT INTO direct_table (id, a_string, an_int) VALUES (1, 'Hi', 1)");
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("direct_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("id");
+		// keys spelled in any case, missing columns set to null
+		assertEquals(1, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("A_String", "Hello"),
+				Collections.<String, Object> singletonMap("Id", 1)));
+		assertEquals("Hello", jdbcTemplate.queryForObject("SELECT a_string FROM direct_table WHERE id = 1", String.class));
+		assertNull(jdbcTemplate.queryForObject("SELECT an_int FROM direct_table WHERE id = 1", Integer.class));
+		Map<String, Object> updatingValues = new HashMap<String, Object>();
+		updatingValues.put("a_string", "Hallo");
+		updatingValues.put("An_Int", 3);
+		assertEquals(1, simpleJdbcUpdate.execute(updatingValues, Collections.<String, Object> singletonMap("ID", 1)));
+		assertEquals(3, jdbcTemplate.queryForObject("SELECT an_int FROM direct_table WHERE id = 1", Integer.class).intValue());
+
+		assertEquals(1, simpleJdbcUpdate.execute(new MapSqlParameterSource("A_String", "Bye").addValue("AN_INT", 2),
+				new MapSqlParameterSource("id", 1)));
+		assertEquals("Bye", jdbcTemplate.queryForObject("SELECT a_string FROM direct_table WHERE id = 1", String.class));
+		assertEquals(2, jdbcTemplate.queryForObject("SELECT an_int FROM direct_table WHERE id = 1", Integer.class).intValue());
+
+		// a collection is refused for a single parameter, whether bound directly or not
+		SimpleJdbcUpdate dynamicUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("direct_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("id")
+				.withDynamicUpdatingColumns();
+		for (SimpleJdbcUpdate update : Arrays.asList(simpleJdbcUpdate, dynamicUpdate)) {
+			try {
+				update.execute(Collections.<String, Object> singletonMap("a_string", "Hello"),
+						Collections.<String, Object> singletonMap("id", Arrays.asList(1, 2)));
+				fail("Collection value of a single parameter should be refused");
+			}
+			catch (InvalidDataAccessApiUsageException ex) {
+				// expected
+			}
+		}
+		assertEquals("Bye", jdbcTemplate.queryForObject("SELECT a_string FROM direct_table WHERE id = 1", String.class));
+	}
+
+	@Test
+	public void testRegistry() {
+		SimpleJdbcUpdate goodUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("dummy_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("key_1", "key_2");
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.getBeanFactory().registerSingleton("goodUpdate", goodUpdate);
+		context.registerBeanDefinition("registry", new RootBeanDefinition(SimpleJdbcUpdateRegistry.class));
+		context.refresh();
+		assertTrue(goodUpdate.isCompiled());
+		CompileReport report = context.getBean(SimpleJdbcUpdateRegistry.class).getLastReport();
+		assertTrue(report.isSuccessful());
+		assertEquals(Collections.singleton("goodUpdate"), report.getCompileNanos().keySet());
+		context.close();
+
+		SimpleJdbcUpdateRegistry registry = new SimpleJdbcUpdateRegistry();
+		registry.setValidateStatements(true);
+		registry.setFailOnError(false);
+		registry.register("goodUpdate", goodUpdate);
+		registry.register("badUpdate", new SimpleJdbcUpdate(dataSource)
+				.withTableName("missing_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id"));
+		registry.afterSingletonsInstantiated();
+		report = registry.getLastReport();
+		assertFalse(report.isSuccessful());
+		assertEquals(Collections.singleton("badUpdate"), report.getFailures().keySet());
+		assertEquals(Collections.singleton("goodUpdate"), report.getCompileNanos().keySet());
+	}
+
+	@Test
+	public void testSchemaMetaDataLoader() {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS loader_a (id INT, a_string VARCHAR(50))");
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS loader_b (id INT, a_string VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO loader_a (id, a_string) VALUES (1, 'Hi')");
+		jdbcTemplate.update("INSERT INTO loader_b (id, a_string) VALUES (1, 'Hi')");
+
+		final AtomicInteger loadCount = new AtomicInteger();
+		SchemaMetaDataLoader loader = new SchemaMetaDataLoader(dataSource) {
+
+			@Override
+			protected Map<String, Map<String, List<TableParameterMetaData>>> load() {
+				loadCount.incrementAndGet();
+				return super.load();
+			}
+		};
+		loader.setSchemaName("public");
+		loader.setTableNames("loader_a", "dummy_table");
+		for (String tableName : Arrays.asList("loader_a", "dummy_table", "loader_b")) {
+			new SimpleJdbcUpdate(dataSource)
+					.withTableName(tableName)
+					.withTableMetaDataLoader(loader)
+					.compile();
+		}
+		assertEquals(1, loadCount.get());
+		assertEquals(2, loader.getTableCount());
+
+		// a_string typed from the loaded meta data, loader_b looked up
+		for (String tableName : Arrays.asList("loader_a", "loader_b")) {
+			SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+					.withTableName(tableName)
+					.updatingColumns("a_string")
+					.restrictingColumns("id")
+					.withTableMetaDataLoader(loader);
+			assertEquals(1, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Loaded"),
+					Collections.<String, Object> singletonMap("id", 1)));
+			assertEquals(Types.VARCHAR, simpleJdbcUpdate.getColumnTypes()[0]);
+		}
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testMetaDataSnapshot() throws Exception {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS snapshot_table (id INT, a_string VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO snapshot_table (id, a_string) VALUES (1, 'Hi')");
+		SchemaMetaDataLoader loader = new SchemaMetaDataLoader(dataSource);
+		loader.setSchemaName("public");
+		loader.setTableNames("snapshot_table");
+		StringWriter file = new StringWriter();
+		MetaDataSnapshot.capture(loader).write(file);
+
+		MetaDataSnapshot snapshot = MetaDataSnapshot.read(new StringReader(file.toString()));
+		assertEquals(1, snapshot.getTableCount());
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("snapshot_table")
+				.updatingColumns("a_string")
+				.restrictingColumns("id")
+				.withTableMetaDataLoader(snapshot);
+		assertEquals(1, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Snapshot"),
+				Collections.<String, Object> singletonMap("id", 1)));
+		// "_" is not a wildcard when validating
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS snapshot1table (id INT, other_column INT)");
+		assertEquals("snapshot\\_table", MetaDataSnapshot.escapePattern("snapshot_table", "\\"));
+		assertTrue(snapshot.validate(dataSource).isEmpty());
+
+		try {
+			MetaDataSnapshot.read(new StringReader(file.toString().replace("VARCHAR", "INT").replace("\t12\t", "\t4\t")));
+			fail("Modified snapshot should be rejected");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+
+		jdbcTemplate.update("ALTER TABLE snapshot_table ADD COLUMN an_int INT");
+		try {
+			snapshot.setDriftValidation(true);
+			new SimpleJdbcUpdate(dataSource).withTableName("snapshot_table").withTableMetaDataLoader(snapshot).compile();
+			for (int i = 0; i < 100 && snapshot.getDriftedTables().isEmpty(); i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(Collections.singleton("PUBLIC.SNAPSHOT_TABLE"), snapshot.getDriftedTables());
+		}
+		finally {
+			snapshot.shutdown();
+			jdbcTemplate.update("ALTER TABLE snapshot_table DROP COLUMN an_int");
+		}
+	}
+
+	@Test
+	public void testRecompile() throws Exception {
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS recompile_table (id INT, a_string VARCHAR(50))");
+		jdbcTemplate.update("INSERT INTO recompile_table (id, a_string) VALUES (1, 'Hi')");
+		final SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("recompile_table")
+				.restrictingColumns("id")
+				.withDynamicUpdatingColumns()
+				.withTableMetaDataCache(new TableMetaDataCache());
+		final Map<String, Object> restrictingValues = Collections.<String, Object> singletonMap("id", 1);
+		UpdateSession session = simpleJdbcUpdate.openSession();
+
+		// executions keep going while the update is recompiled
+		List<CompletableFuture<Void>> executions = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < 4; i++) {
+			executions.add(CompletableFuture.runAsync(new Runnable() {
+
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						assertEquals(1, simpleJdbcUpdate.execute(Collections.<String, Object> singletonMap("a_string", "Concurrent"),
+								restrictingValues));
+					}
+				}
+			}));
+		}
+		for (int i = 0; i < 10; i++) {
+			simpleJdbcUpdate.recompile();
+		}
+		for (CompletableFuture<Void> execution : executions) {
+			execution.get();
+		}
+
+		jdbcTemplate.update("ALTER TABLE recompile_table ADD COLUMN a_number INT");
+		simpleJdbcUpdate.recompile();
+		assertTrue(simpleJdbcUpdate.getUpdateString().contains("A_NUMBER"));
+		Map<String, Object> updatingValues = new HashMap<String, Object>();
+		updatingValues.put("a_string", "Recompiled");
+		updatingValues.put("a_number", 42);
+		assertEquals(1, simpleJdbcUpdate.execute(updatingValues, restrictingValues));
+		assertEquals(42, jdbcTemplate.queryForObject("SELECT a_number FROM recompile_table WHERE id = 1", Integer.class).intValue());
+
+		// the session keeps the statement it was opened with
+		try {
+			assertEquals(1, session.execute(Collections.<String, Object> singletonMap("a_string", "Session"), restrictingValues));
+		}
+		finally {
+			session.close();
+		}
+		assertEquals("Session", jdbcTemplate.queryForObject("SELECT a_string FROM recompile_table WHERE id = 1", String.class));
+	}
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package paillard.florent.springframework.simplejdbcupdate;
+
+import static junit.framework.Assert.*;
+
+import java.util.BitSet;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Tests binding the components of records, which can only be declared from
+ * Java 16.
+ */
+public class RecordBindingTestCase {
+
+	private DataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUpDataSource() {
+		dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:recorddb");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.update("CREATE TABLE IF NOT EXISTS record_table (key_1 VARCHAR(50), key_2 INT, a_string VARCHAR(50), an_int INTEGER)");
+	}
+
+	@Test
+	public void testExecuteRecord() {
+		jdbcTemplate.update("INSERT INTO record_table (key_1, key_2, a_string, an_int) VALUES ('Record', 1, 'Hi', 40)");
+		jdbcTemplate.update("INSERT INTO record_table (key_1, key_2, a_string, an_int) VALUES ('Record', 2, 'Hi', 40)");
+
+		SimpleJdbcUpdate simpleJdbcUpdate = new SimpleJdbcUpdate(dataSource)
+				.withTableName("record_table")
+				.updatingColumns("a_string", "an_int")
+				.restrictingColumns("key_1", "key_2")
+				.withDynamicUpdatingColumns();
+
+		// accessors of public records are read by generated functions, the others through method handles
+		assertEquals(1, simpleJdbcUpdate.executeBean(new RecordRow("Record", 1, "Hello", 41)));
+		assertEquals(1, simpleJdbcUpdate.executeBean(new PrivateRecordRow("Record", 2, "Bonjour")));
+
+		Map<String, Object> row1 = jdbcTemplate.queryForMap("SELECT * FROM record_table WHERE key_2 = 1");
+		assertEquals("Hello", row1.get("a_string"));
+		assertEquals(41, row1.get("an_int"));
+		// a column without component isn't updated
+		Map<String, Object> row2 = jdbcTemplate.queryForMap("SELECT * FROM record_table WHERE key_2 = 2");
+		assertEquals("Bonjour", row2.get("a_string"));
+		assertEquals(40, row2.get("an_int"));
+
+		BitSet providedColumns = new BitSet();
+		Object[] values = simpleJdbcUpdate.getCompiledUpdate().getBeanBindingPlan(PrivateRecordRow.class)
+				.bind(new PrivateRecordRow("Record", 3, "Hallo"), providedColumns);
+		assertEquals("Hallo", values[0]);
+		assertEquals(3, values[3]);
+		assertEquals(1, providedColumns.cardinality());
+	}
+
+	public record RecordRow(String key1, int key2, String aString, int anInt) {
+	}
+
+	private record PrivateRecordRow(String key1, int key2, String aString) {
+	}
+
+}